@@ -0,0 +1,94 @@
+package com.example.tangyu.audio;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PcmKernels} 各函数的耗时，结果为每次调用的纳秒数，除以 samples 即每样本（立体声为每帧）的耗时。
+ *
+ * 长度取 20ms（320 样本，实时识别的一帧）与 1s（16000 样本），前者包含调用与边界检查的固定开销。
+ * 运行方式：{@code mvn -P jmh test-compile exec:exec}，可用 {@code -Djmh.args="rms -p samples=320"} 传 JMH 参数。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PcmKernelsBenchmark {
+    @Param({"320", "16000"})
+    public int samples;
+
+    private byte[] mono;
+    private byte[] stereo;
+    private byte[] out;
+    private float[] floats;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        mono = new byte[samples * 2];
+        stereo = new byte[samples * 4];
+        out = new byte[samples * 2];
+        floats = new float[samples];
+        // 语音量级的随机样本，少量接近满幅，让削波与饱和分支都被走到
+        for (int i = 0; i < samples; i++) {
+            short s = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, random.nextGaussian() * 6000));
+            mono[2 * i] = (byte) s;
+            mono[2 * i + 1] = (byte) (s >> 8);
+            stereo[4 * i] = (byte) s;
+            stereo[4 * i + 1] = (byte) (s >> 8);
+            stereo[4 * i + 2] = (byte) ~s;
+            stereo[4 * i + 3] = (byte) (~s >> 8);
+        }
+        PcmKernels.toFloat(mono, 0, mono.length, floats, 0);
+    }
+
+    @Benchmark
+    public double rms() {
+        return PcmKernels.rms(mono, 0, mono.length);
+    }
+
+    @Benchmark
+    public int peak() {
+        return PcmKernels.peak(mono, 0, mono.length);
+    }
+
+    @Benchmark
+    public int clippedSamples() {
+        return PcmKernels.clippedSamples(mono, 0, mono.length, 32767);
+    }
+
+    @Benchmark
+    public int applyGain() {
+        // 增益为 1 时样本不变，多次调用之间输入保持一致
+        return PcmKernels.applyGain(mono, 0, mono.length, 1.0f);
+    }
+
+    @Benchmark
+    public int stereoToMono() {
+        return PcmKernels.stereoToMono(stereo, 0, stereo.length, out, 0);
+    }
+
+    @Benchmark
+    public int toFloat() {
+        return PcmKernels.toFloat(mono, 0, mono.length, floats, 0);
+    }
+
+    @Benchmark
+    public int toPcm16() {
+        return PcmKernels.toPcm16(floats, 0, samples, out, 0);
+    }
+}
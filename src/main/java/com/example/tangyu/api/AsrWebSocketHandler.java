@@ -1,6 +1,7 @@
 package com.example.tangyu.api;
 
-import com.example.tangyu.robot.RobotClient;
+import com.example.tangyu.metrics.TurnTrace;
+import com.example.tangyu.robot.SpeculativeRobotCaller;
 import com.example.tangyu.speech.AsrClient;
 import com.example.tangyu.speech.AsrResultHandler;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -19,20 +20,30 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
-
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 实时识别 WebSocket：客户端推送音频帧，服务端返回中间结果，以及带机器人回复的最终结果。
+ *
+ * 每句话（从最终结果后的第一帧音频到回复发出）对应一个 {@link TurnTrace}，结束时输出各阶段耗时；
+ * 握手请求带 {@code traceparent} 头时，各轮沿用其 trace id。
+ */
 @Component
 public class AsrWebSocketHandler extends BinaryWebSocketHandler {
     private static final Logger LOG = LoggerFactory.getLogger(AsrWebSocketHandler.class);
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final AsrClient asrClient;
-    private final RobotClient robotClient;
+    private final SpeculativeRobotCaller robotCaller;
 
-    public AsrWebSocketHandler(AsrClient asrClient, RobotClient robotClient) {
+    public AsrWebSocketHandler(AsrClient asrClient, SpeculativeRobotCaller robotCaller) {
         this.asrClient = asrClient;
-        this.robotClient = robotClient;
+        this.robotCaller = robotCaller;
     }
 
     @Override
@@ -47,7 +58,10 @@ public class AsrWebSocketHandler extends BinaryWebSocketHandler {
             startRecognition(session, ctx);
         }
         if (ctx.recognition != null) {
-            ctx.recognition.sendAudioFrame(ByteBuffer.wrap(message.getPayload().array()));
+            ctx.currentTurn().mark(TurnTrace.Stage.FIRST_AUDIO);
+            ByteBuffer payload = message.getPayload();
+            asrClient.sendAudioFrame(ctx.recognition, payload.array(), payload.arrayOffset() + payload.position(),
+                    payload.remaining());
         }
     }
 
@@ -67,12 +81,20 @@ public class AsrWebSocketHandler extends BinaryWebSocketHandler {
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
         SessionContext ctx = (SessionContext) session.getAttributes().remove("asrCtx");
         if (ctx != null && ctx.recognition != null) {
-            try {
-                ctx.recognition.stop();
-            } catch (Exception ignore) {
-            }
+            asrClient.stopStreaming(ctx.recognition);
             ctx.recognition = null;
         }
+        if (ctx != null) {
+            TurnTrace unfinished = ctx.turn.getAndSet(null);
+            if (unfinished != null && unfinished.has(TurnTrace.Stage.FIRST_PARTIAL)) {
+                unfinished.finish("closed");
+            }
+            // 客户端已断开，放弃尚未返回的大模型调用
+            ctx.pendingReplies.forEach(reply -> reply.cancel(false));
+            if (ctx.robotSession != null) {
+                ctx.robotSession.cancel();
+            }
+        }
         LOG.info("ASR WS closed, id={}, status={}", session.getId(), status);
     }
 
@@ -86,33 +108,53 @@ public class AsrWebSocketHandler extends BinaryWebSocketHandler {
         int sampleRate = parseInt(first(params.get("sampleRate"), "16000"), 16000);
         String token = first(params.get("token"), null);
         ctx.token = token;
+        ctx.traceparent = session.getHandshakeHeaders().getFirst("traceparent");
+        ctx.robotSession = robotCaller.newSession(token);
 
         AsrResultHandler handler = new AsrResultHandler();
-        handler.setOnPartialResult(text -> sendJson(session, jsonMessage("partial", text, null)));
+        handler.setOnPartialResult(text -> {
+            TurnTrace turn = ctx.currentTurn();
+            turn.mark(TurnTrace.Stage.FIRST_PARTIAL);
+            sendJson(session, jsonMessage("partial", text, null));
+            // 开启提前调用时，中间结果稳定后即开始请求大模型
+            ctx.robotSession.onPartial(text, turn);
+        });
         handler.setOnFinalResult(text -> {
-            // 最终结果调用大模型后再返回，避免分拆两条消息
-            CompletableFuture.supplyAsync(() -> {
-                if (text == null || text.trim().isEmpty()) {
-                    LOG.warn("最终文本为空，跳过大模型调用");
-                    return null;
-                }
-                if (ctx.token == null || ctx.token.isBlank()) {
-                    LOG.warn("token 为空，跳过大模型调用");
-                    return null;
+            // 本轮到此结束收音，之后的音频属于下一轮
+            TurnTrace turn = ctx.takeTurn();
+            turn.mark(TurnTrace.Stage.FINAL);
+            // 最终结果调用大模型后再返回，避免分拆两条消息；异步等待，不占用线程
+            CompletableFuture<String> reply;
+            if (text == null || text.trim().isEmpty()) {
+                LOG.warn("最终文本为空，跳过大模型调用");
+                reply = CompletableFuture.completedFuture(null);
+            } else if (ctx.token == null || ctx.token.isBlank()) {
+                LOG.warn("token 为空，跳过大模型调用");
+                reply = CompletableFuture.completedFuture(null);
+            } else {
+                reply = ctx.robotSession.onFinal(text, turn);
+                ctx.pendingReplies.add(reply);
+                reply.whenComplete((r, e) -> ctx.pendingReplies.remove(reply));
+            }
+            reply.whenComplete((r, e) -> {
+                if (e != null) {
+                    turn.finish(reply.isCancelled() ? "cancelled" : "failed");
                 }
-                try {
-                    return robotClient.sendAndReceive(text, ctx.token);
-                } catch (Exception e) {
+            });
+            reply.exceptionally(e -> {
+                if (!(e instanceof CancellationException)) {
                     LOG.error("调用大模型接口失败", e);
-                    return null;
                 }
+                return null;
             }).thenAccept(robotReply -> {
-                if (robotReply != null && !robotReply.trim().isEmpty()) {
+                boolean answered = robotReply != null && !robotReply.trim().isEmpty();
+                if (answered) {
                     LOG.info("大模型返回结果: {}", robotReply);
                 } else {
                     LOG.warn("大模型返回结果为空");
                 }
                 sendJson(session, jsonMessage("final", text, robotReply));
+                turn.finish(answered ? "ok" : "empty");
             });
         });
 
@@ -162,10 +204,29 @@ public class AsrWebSocketHandler extends BinaryWebSocketHandler {
         com.alibaba.dashscope.audio.asr.recognition.Recognition recognition;
         AsrResultHandler handler;
         String token;
+        String traceparent;
+        final AtomicReference<TurnTrace> turn = new AtomicReference<>();
+        SpeculativeRobotCaller.Session robotSession;
         AtomicBoolean started = new AtomicBoolean(false);
+        final Set<CompletableFuture<String>> pendingReplies = ConcurrentHashMap.newKeySet();
 
         SessionContext(WebSocketSession session) {
             this.session = session;
         }
+
+        /**
+         * 当前正在收音的一轮，没有则新建。
+         */
+        TurnTrace currentTurn() {
+            return turn.updateAndGet(t -> t != null ? t : new TurnTrace(session.getId(), traceparent));
+        }
+
+        /**
+         * 取走当前一轮，交给最终结果处理；下一帧音频开始新的一轮。
+         */
+        TurnTrace takeTurn() {
+            TurnTrace current = turn.getAndSet(null);
+            return current != null ? current : new TurnTrace(session.getId(), traceparent);
+        }
     }
 }
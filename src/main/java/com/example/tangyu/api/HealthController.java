@@ -0,0 +1,30 @@
+package com.example.tangyu.api;
+
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * 健康检查：应用就绪前返回 503，便于负载均衡在启动期间不分配流量。
+ */
+@RestController
+public class HealthController {
+
+    private final ApplicationAvailability availability;
+
+    public HealthController(ApplicationAvailability availability) {
+        this.availability = availability;
+    }
+
+    @GetMapping("/health")
+    public ResponseEntity<Map<String, String>> health() {
+        if (availability.getReadinessState() == ReadinessState.ACCEPTING_TRAFFIC) {
+            return ResponseEntity.ok(Map.of("status", "ok"));
+        }
+        return ResponseEntity.status(503).body(Map.of("status", "warming"));
+    }
+}
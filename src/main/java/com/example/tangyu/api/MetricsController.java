@@ -0,0 +1,20 @@
+package com.example.tangyu.api;
+
+import com.example.tangyu.metrics.SpeechMetrics;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Prometheus 抓取端点，内容与 SpeechApiServer 的 /metrics 相同。
+ */
+@RestController
+public class MetricsController {
+
+    @GetMapping("/metrics")
+    public ResponseEntity<String> metrics() {
+        return ResponseEntity.ok()
+                .header("Content-Type", SpeechMetrics.CONTENT_TYPE)
+                .body(SpeechMetrics.scrape());
+    }
+}
@@ -2,10 +2,16 @@ package com.example.tangyu.api;
 
 import com.example.tangyu.config.CredentialConfig;
 import com.example.tangyu.config.DashScopeConfig;
+import com.example.tangyu.config.TtsCacheConfig;
 import com.example.tangyu.robot.RobotClient;
+import com.example.tangyu.robot.ReplyCacheConfig;
 import com.example.tangyu.robot.RobotConfig;
+import com.example.tangyu.robot.RobotReplyCache;
+import com.example.tangyu.robot.SpeculationConfig;
+import com.example.tangyu.robot.SpeculativeRobotCaller;
 import com.example.tangyu.speech.AsrClient;
 import com.example.tangyu.speech.TokenClient;
+import com.example.tangyu.speech.TtsAudioCache;
 import com.example.tangyu.speech.TtsClient;
 import org.springframework.core.env.Environment;
 import org.springframework.context.annotation.Bean;
@@ -35,8 +41,10 @@ public class SpeechConfig {
     }
 
     @Bean
-    public TtsClient ttsClient(CredentialConfig credentialConfig, TokenClient tokenClient) {
-        return new TtsClient(credentialConfig, tokenClient);
+    public TtsClient ttsClient(CredentialConfig credentialConfig, TokenClient tokenClient, Environment env) {
+        TtsCacheConfig cacheConfig = TtsCacheConfig.fromEnvironment(env);
+        return new TtsClient(credentialConfig, tokenClient,
+                cacheConfig.isEnabled() ? new TtsAudioCache(cacheConfig) : null);
     }
 
     @Bean
@@ -48,4 +56,15 @@ public class SpeechConfig {
     public RobotClient robotClient(RobotConfig robotConfig) {
         return new RobotClient(robotConfig);
     }
+
+    @Bean
+    public RobotReplyCache robotReplyCache(RobotConfig robotConfig, Environment env) {
+        return new RobotReplyCache(ReplyCacheConfig.fromEnvironment(env), robotConfig);
+    }
+
+    @Bean
+    public SpeculativeRobotCaller speculativeRobotCaller(RobotClient robotClient, RobotReplyCache robotReplyCache,
+                                                         Environment env) {
+        return new SpeculativeRobotCaller(robotClient, SpeculationConfig.fromEnvironment(env), robotReplyCache);
+    }
 }
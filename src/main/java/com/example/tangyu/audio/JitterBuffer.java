@@ -0,0 +1,180 @@
+package com.example.tangyu.audio;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 播放端自适应抖动缓冲。
+ *
+ * 生产者（TTS 回调线程）随到随写，不阻塞；消费者（播放线程）在缓冲量达到预缓冲目标后开始读取。
+ * 播放中读空即暂停；若此后在流结束前又收到数据，才计一次欠载（underrun）并把预缓冲目标调大一档，
+ * 读空后紧接着结束（最后一包恰好播完）不算。连续稳定播放一段时间后再逐档调小，使首包延迟与卡顿次数自动折中。
+ * 结束时不足一帧的尾部被丢弃，读出的数据始终按帧对齐。
+ */
+public class JitterBuffer {
+    /** 连续稳定播放这么久后尝试把预缓冲目标调小一档 */
+    private static final long SHRINK_AFTER_MILLIS = 10_000;
+
+    private final int frameSize;
+    private final int bytesPerMilli;
+    private final int minTargetBytes;
+    private final int maxTargetBytes;
+    private final int stepBytes;
+    private byte[] ring;
+    private int head;
+    private int size;
+    private int targetBytes;
+    private boolean playing;
+    private boolean ended;
+    // 播放中读空、尚不知道是欠载还是流即将结束
+    private boolean starved;
+    private long stableBytes;
+    private long underruns;
+    private long stallStartNanos;
+    private long stallNanos;
+
+    /**
+     * @param sampleRate         采样率
+     * @param frameSize          每帧字节数（16 位单声道为 2）
+     * @param prebufferMillis    初始预缓冲时长，0 表示收到数据即播放
+     * @param maxPrebufferMillis 欠载后预缓冲目标的上限
+     */
+    public JitterBuffer(int sampleRate, int frameSize, int prebufferMillis, int maxPrebufferMillis) {
+        if (sampleRate <= 0 || frameSize <= 0) {
+            throw new IllegalArgumentException("Sample rate and frame size must be positive");
+        }
+        this.frameSize = frameSize;
+        this.bytesPerMilli = Math.max(1, sampleRate * frameSize / 1000);
+        this.minTargetBytes = align(Math.max(0, prebufferMillis) * bytesPerMilli);
+        this.maxTargetBytes = Math.max(minTargetBytes, align(maxPrebufferMillis * bytesPerMilli));
+        this.stepBytes = Math.max(frameSize, align(Math.max(20, prebufferMillis / 2) * bytesPerMilli));
+        this.targetBytes = minTargetBytes;
+        this.ring = new byte[Math.max(64 * 1024, maxTargetBytes * 2)];
+    }
+
+    /**
+     * 写入音频；缓冲不足时自动扩容，不丢数据也不阻塞。
+     */
+    public synchronized void write(byte[] data, int offset, int length) {
+        if (ended) {
+            throw new IllegalStateException("Jitter buffer already ended");
+        }
+        ensureCapacity(size + length);
+        int tail = (head + size) % ring.length;
+        int first = Math.min(length, ring.length - tail);
+        System.arraycopy(data, offset, ring, tail, first);
+        System.arraycopy(data, offset + first, ring, 0, length - first);
+        size += length;
+        if (starved) {
+            // 读空后数据还在来，确实是欠载：下一次预缓冲多等一档
+            starved = false;
+            underruns++;
+            targetBytes = Math.min(maxTargetBytes, targetBytes + stepBytes);
+        }
+        notifyAll();
+    }
+
+    /**
+     * 标记输入结束；剩余的整帧会被读完，不再等待预缓冲，不足一帧的尾部丢弃。
+     */
+    public synchronized void end() {
+        ended = true;
+        size -= size % frameSize;
+        if (starved) {
+            // 读空只是因为已经播完，不算欠载，也不计停顿
+            starved = false;
+            stallStartNanos = 0;
+        }
+        notifyAll();
+    }
+
+    /**
+     * 读取最多 length 字节（按帧对齐），必要时等待预缓冲。
+     *
+     * @return 读取的字节数，流结束且缓冲读空时返回 -1
+     */
+    public synchronized int read(byte[] dst, int offset, int length) throws InterruptedException {
+        while (true) {
+            if (!playing) {
+                if (ended && size == 0) {
+                    return -1;
+                }
+                if (size >= Math.max(frameSize, targetBytes) || (ended && size > 0)) {
+                    playing = true;
+                    if (stallStartNanos != 0) {
+                        stallNanos += System.nanoTime() - stallStartNanos;
+                        stallStartNanos = 0;
+                    }
+                } else {
+                    wait();
+                    continue;
+                }
+            }
+            int available = size - size % frameSize;
+            if (available == 0) {
+                if (ended) {
+                    return -1;
+                }
+                // 读空：暂停播放，是否计为欠载由之后先到的 write 或 end 决定
+                playing = false;
+                starved = true;
+                stallStartNanos = System.nanoTime();
+                stableBytes = 0;
+                continue;
+            }
+            int n = Math.min(available, length - length % frameSize);
+            int first = Math.min(n, ring.length - head);
+            System.arraycopy(ring, head, dst, offset, first);
+            System.arraycopy(ring, 0, dst, offset + first, n - first);
+            head = (head + n) % ring.length;
+            size -= n;
+            stableBytes += n;
+            if (stableBytes >= SHRINK_AFTER_MILLIS * bytesPerMilli && targetBytes > minTargetBytes) {
+                targetBytes = Math.max(minTargetBytes, targetBytes - stepBytes);
+                stableBytes = 0;
+            }
+            return n;
+        }
+    }
+
+    public synchronized long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * 欠载导致的累计停顿时长（毫秒）。
+     */
+    public synchronized long getStallMillis() {
+        long total = stallNanos + (stallStartNanos != 0 && !starved ? System.nanoTime() - stallStartNanos : 0);
+        return TimeUnit.NANOSECONDS.toMillis(total);
+    }
+
+    /**
+     * 当前预缓冲目标（毫秒）。
+     */
+    public synchronized int getTargetPrebufferMillis() {
+        return targetBytes / bytesPerMilli;
+    }
+
+    /**
+     * 当前缓冲中的音频时长（毫秒）。
+     */
+    public synchronized int getBufferedMillis() {
+        return size / bytesPerMilli;
+    }
+
+    private int align(int bytes) {
+        return bytes - bytes % frameSize;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ring.length) {
+            return;
+        }
+        byte[] grown = new byte[Math.max(required, ring.length * 2)];
+        int first = Math.min(size, ring.length - head);
+        System.arraycopy(ring, head, grown, 0, first);
+        System.arraycopy(ring, 0, grown, first, size - first);
+        ring = grown;
+        head = 0;
+    }
+}
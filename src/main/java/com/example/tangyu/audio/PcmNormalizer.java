@@ -0,0 +1,181 @@
+package com.example.tangyu.audio;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 识别前的输入格式归一化：把 WAV 或裸 PCM 输入转为目标采样率的 16 位单声道 PCM 流。
+ *
+ * 流开头是 RIFF/WAVE 文件头时按文件头里的采样率与声道数处理，不再依赖调用方声明的参数；裸 PCM 没有文件头，
+ * 只能按声明的采样率、单声道处理。多声道取平均转单声道，采样率不同时经 {@link PolyphaseResampler} 转换。
+ * 所有缓冲在打开时一次分配，读取过程不产生垃圾。关闭本流会关闭底层流。
+ */
+public final class PcmNormalizer extends InputStream {
+    /** 每次从底层流读取的字节数，按声道帧大小向下取整 */
+    private static final int READ_BYTES = 8 * 1024;
+    private static final int SNIFF_BYTES = 12;
+
+    private final InputStream in;
+    private final int sourceRate;
+    private final int channels;
+    private final int targetRate;
+    private final PolyphaseResampler resampler;
+    private final byte[] raw;
+    private final byte[] out;
+    private final byte[] carry;
+    private long remaining;
+    private int pending;
+    private int outPos;
+    private int outLimit;
+    private boolean eof;
+
+    private PcmNormalizer(InputStream in, int sourceRate, int channels, long dataLength, int targetRate) {
+        this.in = in;
+        this.sourceRate = sourceRate;
+        this.channels = channels;
+        this.targetRate = targetRate;
+        this.remaining = dataLength;
+        this.resampler = sourceRate != targetRate ? new PolyphaseResampler(sourceRate, targetRate) : null;
+        int frameBytes = 2 * channels;
+        this.raw = new byte[Math.max(frameBytes, READ_BYTES / frameBytes * frameBytes)];
+        this.out = resampler != null
+                ? new byte[resampler.maxOutputBytes(raw.length / channels) + resampler.maxFlushBytes()]
+                : raw;
+        this.carry = new byte[frameBytes];
+    }
+
+    /**
+     * 能否归一化该格式；压缩格式（如 mp3、opus）原样交给识别服务。
+     */
+    public static boolean supports(String format) {
+        return "pcm".equalsIgnoreCase(format) || "wav".equalsIgnoreCase(format);
+    }
+
+    /**
+     * 探测输入格式并打开归一化流。
+     *
+     * @param declaredRate 调用方声明的采样率，仅对没有文件头的裸 PCM 生效
+     * @param targetRate   识别模型的采样率
+     * @throws IllegalArgumentException 格式不支持，WAV 不是 16 位 PCM，或采样率超出
+     *                                  {@link PolyphaseResampler#checkRate 支持范围}
+     */
+    public static PcmNormalizer open(InputStream in, String format, int declaredRate, int targetRate)
+            throws IOException {
+        if (!supports(format)) {
+            throw new IllegalArgumentException("Unsupported audio format for normalization: " + format);
+        }
+        InputStream source = in.markSupported() ? in : new BufferedInputStream(in, READ_BYTES);
+        byte[] prefix = new byte[SNIFF_BYTES];
+        source.mark(SNIFF_BYTES);
+        int sniffed = source.readNBytes(prefix, 0, SNIFF_BYTES);
+        source.reset();
+        if (!WavHeader.isWav(prefix, sniffed)) {
+            return new PcmNormalizer(source, PolyphaseResampler.checkRate(declaredRate), 1, -1, targetRate);
+        }
+        WavHeader.Info info = WavHeader.read(source);
+        if (info.getBitsPerSample() != 16) {
+            throw new IllegalArgumentException("Unsupported WAV sample size " + info.getBitsPerSample()
+                    + " bit, only 16-bit PCM is supported");
+        }
+        if (info.getChannels() < 1) {
+            throw new IllegalArgumentException("Invalid WAV format: " + info);
+        }
+        PolyphaseResampler.checkRate(info.getSampleRate());
+        // 边录边写的文件数据长度为 0 或占位值，此时读到流结束
+        long dataLength = info.getDataLength() == 0 || info.getDataLength() == WavHeader.UNKNOWN_LENGTH
+                ? -1 : info.getDataLength();
+        return new PcmNormalizer(source, info.getSampleRate(), info.getChannels(), dataLength, targetRate);
+    }
+
+    public int getSourceRate() {
+        return sourceRate;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int getTargetRate() {
+        return targetRate;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (outPos == outLimit && !fill()) {
+            return -1;
+        }
+        return out[outPos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (outPos == outLimit && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, outLimit - outPos);
+        System.arraycopy(out, outPos, b, off, n);
+        outPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return outLimit - outPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * 读入下一块并转换，直到得到输出或输入结束。
+     */
+    private boolean fill() throws IOException {
+        outPos = 0;
+        outLimit = 0;
+        while (outLimit == 0) {
+            if (eof) {
+                return false;
+            }
+            System.arraycopy(carry, 0, raw, 0, pending);
+            int want = raw.length - pending;
+            if (remaining >= 0) {
+                want = (int) Math.min(want, remaining);
+            }
+            int n = want > 0 ? in.readNBytes(raw, pending, want) : 0;
+            if (remaining >= 0) {
+                remaining -= n;
+            }
+            int available = pending + n;
+            if (n < want || remaining == 0) {
+                eof = true;
+            }
+            // 只处理整帧，不足一帧的尾部留到下次；结束时丢弃
+            int frameBytes = 2 * channels;
+            int whole = available / frameBytes * frameBytes;
+            int mono = channels == 1 ? whole : PcmKernels.downmix(raw, 0, whole, channels, raw, 0);
+            if (resampler != null) {
+                outLimit = resampler.process(raw, 0, mono, out, 0);
+                if (eof) {
+                    outLimit += resampler.flush(out, outLimit);
+                }
+            } else {
+                outLimit = mono;
+            }
+            // 不经重采样时 raw 即输出缓冲，残帧先存到别处
+            pending = available - whole;
+            System.arraycopy(raw, whole, carry, 0, pending);
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return sourceRate + "Hz/" + channels + "ch -> " + targetRate + "Hz/1ch";
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.tangyu.audio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 边收边播的 16 位单声道 PCM 播放器。
+ *
+ * {@link #write} 把数据放进 {@link JitterBuffer} 后立即返回，可直接在 TTS 回调线程调用；
+ * 独立的播放线程从抖动缓冲取数据写入 {@link SourceDataLine}。首包到达后只需攒够预缓冲即开始出声，
+ * 不必等整段合成结束。
+ */
+public class PcmPlayer implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(PcmPlayer.class);
+    private static final int FRAME_SIZE = 2;
+    /** 每次写入声卡的时长，同时决定声卡缓冲大小 */
+    private static final int CHUNK_MILLIS = 20;
+    private static final int LINE_BUFFER_MILLIS = 100;
+
+    private final AudioFormat format;
+    private final JitterBuffer jitterBuffer;
+    private final int chunkBytes;
+    private SourceDataLine line;
+    private Thread playbackThread;
+    private volatile long startNanos;
+    private volatile long firstAudioNanos;
+    private volatile long playbackStartNanos;
+    private volatile long playedBytes;
+
+    /**
+     * @param sampleRate         采样率
+     * @param prebufferMillis    开始播放前需要缓冲的时长
+     * @param maxPrebufferMillis 欠载后自适应预缓冲的上限
+     */
+    public PcmPlayer(int sampleRate, int prebufferMillis, int maxPrebufferMillis) {
+        this.format = new AudioFormat(sampleRate, 16, 1, true, false);
+        this.jitterBuffer = new JitterBuffer(sampleRate, FRAME_SIZE, prebufferMillis, maxPrebufferMillis);
+        this.chunkBytes = sampleRate * FRAME_SIZE * CHUNK_MILLIS / 1000;
+    }
+
+    /**
+     * 打开声卡并启动播放线程；延迟统计从此刻开始计时。
+     */
+    public void start() throws LineUnavailableException {
+        line = AudioSystem.getSourceDataLine(format);
+        line.open(format, chunkBytes * LINE_BUFFER_MILLIS / CHUNK_MILLIS);
+        line.start();
+        startNanos = System.nanoTime();
+        playbackThread = new Thread(this::playLoop, "pcm-player");
+        playbackThread.setDaemon(true);
+        playbackThread.start();
+    }
+
+    /**
+     * 追加一段音频；数据会被复制，调用方可复用数组。
+     */
+    public void write(byte[] audioData) {
+        if (audioData.length == 0) {
+            return;
+        }
+        if (firstAudioNanos == 0) {
+            firstAudioNanos = System.nanoTime();
+        }
+        jitterBuffer.write(audioData, 0, audioData.length);
+    }
+
+    /**
+     * 标记音频结束，缓冲中的剩余数据播放完后线程退出。
+     */
+    public void end() {
+        jitterBuffer.end();
+    }
+
+    /**
+     * 等待播放完毕。
+     *
+     * @return 超时返回 false
+     */
+    public boolean awaitCompletion(long timeoutMillis) throws InterruptedException {
+        if (playbackThread == null) {
+            return true;
+        }
+        playbackThread.join(timeoutMillis);
+        return !playbackThread.isAlive();
+    }
+
+    public Stats getStats() {
+        return new Stats(elapsedMillis(firstAudioNanos), elapsedMillis(playbackStartNanos),
+                jitterBuffer.getUnderruns(), jitterBuffer.getStallMillis(),
+                jitterBuffer.getTargetPrebufferMillis(),
+                playedBytes * 1000 / ((long) format.getSampleRate() * FRAME_SIZE));
+    }
+
+    @Override
+    public void close() {
+        end();
+        if (playbackThread != null) {
+            playbackThread.interrupt();
+        }
+        if (line != null) {
+            line.stop();
+            line.close();
+        }
+    }
+
+    private void playLoop() {
+        byte[] chunk = new byte[chunkBytes];
+        try {
+            int n;
+            while ((n = jitterBuffer.read(chunk, 0, chunk.length)) != -1) {
+                if (playbackStartNanos == 0) {
+                    playbackStartNanos = System.nanoTime();
+                }
+                line.write(chunk, 0, n);
+                playedBytes += n;
+            }
+            line.drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            LOG.error("PCM playback failed", e);
+        } finally {
+            line.stop();
+            line.close();
+        }
+    }
+
+    private long elapsedMillis(long nanos) {
+        return nanos == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(nanos - startNanos);
+    }
+
+    /**
+     * 播放统计。所有时间均相对 {@link #start()}，未发生时为 -1。
+     */
+    public static final class Stats {
+        private final long firstAudioMillis;
+        private final long playbackStartMillis;
+        private final long underruns;
+        private final long stallMillis;
+        private final int prebufferMillis;
+        private final long playedMillis;
+
+        Stats(long firstAudioMillis, long playbackStartMillis, long underruns, long stallMillis,
+              int prebufferMillis, long playedMillis) {
+            this.firstAudioMillis = firstAudioMillis;
+            this.playbackStartMillis = playbackStartMillis;
+            this.underruns = underruns;
+            this.stallMillis = stallMillis;
+            this.prebufferMillis = prebufferMillis;
+            this.playedMillis = playedMillis;
+        }
+
+        /** 首包到达耗时 */
+        public long getFirstAudioMillis() {
+            return firstAudioMillis;
+        }
+
+        /** 开始出声耗时 */
+        public long getPlaybackStartMillis() {
+            return playbackStartMillis;
+        }
+
+        public long getUnderruns() {
+            return underruns;
+        }
+
+        /** 欠载累计停顿 */
+        public long getStallMillis() {
+            return stallMillis;
+        }
+
+        /** 当前自适应预缓冲目标 */
+        public int getPrebufferMillis() {
+            return prebufferMillis;
+        }
+
+        /** 已播放音频时长 */
+        public long getPlayedMillis() {
+            return playedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{firstAudio=" + firstAudioMillis + "ms, playbackStart=" + playbackStartMillis
+                    + "ms, underruns=" + underruns + ", stall=" + stallMillis + "ms, prebuffer="
+                    + prebufferMillis + "ms, played=" + playedMillis + "ms}";
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.tangyu.audio;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 16 位单声道 PCM 的有理数比例重采样（多相 FIR），把任意输入采样率转换到目标采样率。
+ *
+ * 采样率之比约分为 L/M 后，按 L 倍上采样、低通、M 倍抽取的等效多相结构计算：每个输出样本只做一次
+ * taps 长的点积。低通为 Kaiser 窗 sinc，截止在较低一侧奈奎斯特频率的 {@value #ROLLOFF} 倍，
+ * 系数表按 (L, M) 在进程内共享，最多缓存 {@value #MAX_CACHED_FILTERS} 组。处理过程只使用构造时分配的缓冲，
+ * 不产生垃圾；输出已扣除滤波器的群延迟，与输入在时间上对齐。实例不是线程安全的，每路音频一个。
+ *
+ * 采样率限定在 {@value #MIN_RATE}~{@value #MAX_RATE} Hz，L、M 与 taps 都有上限：采样率来自请求参数和文件头，
+ * 不设限时一个异常的采样率就能让系数表达到数百万项。
+ */
+public final class PolyphaseResampler {
+    /** 通带占较低采样率奈奎斯特频率的比例 */
+    private static final double ROLLOFF = 0.92;
+    /** 每侧保留的 sinc 过零点个数，决定过渡带宽度与每个输出样本的计算量 */
+    private static final int ZERO_CROSSINGS = 16;
+    private static final double KAISER_BETA = 8.0;
+    /** 支持的最低采样率 */
+    public static final int MIN_RATE = 8_000;
+    /** 支持的最高采样率 */
+    public static final int MAX_RATE = 192_000;
+    /** L 与 M 的上限；常见采样率之间的 L、M 都在几百以内（如 44100 -> 16000 为 160/441），更大的比例多半是采样率填错 */
+    private static final int MAX_PHASES = 4096;
+    /** 每个相位的系数个数上限；采样率在支持范围内时最多约 840 */
+    private static final int MAX_TAPS = 1024;
+    private static final int MAX_CACHED_FILTERS = 16;
+
+    private static final VarHandle SHORT_LE =
+            MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.LITTLE_ENDIAN);
+    // 按访问顺序淘汰的系数表缓存，访问时持有自身的锁
+    private static final Map<Long, float[]> COEFFICIENTS = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, float[]> eldest) {
+            return size() > MAX_CACHED_FILTERS;
+        }
+    };
+
+    private final int inputRate;
+    private final int outputRate;
+    private final int up;
+    private final int down;
+    private final int taps;
+    private final float[] coefficients;
+    private final float[] history;
+    private final int delayOutputs;
+    private final int initialPhase;
+    private int historyPos;
+    private int phase;
+    private int skip;
+
+    /**
+     * @throws IllegalArgumentException 采样率超出支持范围，或二者之比约分后过大
+     */
+    public PolyphaseResampler(int inputRate, int outputRate) {
+        checkRate(inputRate);
+        checkRate(outputRate);
+        int gcd = gcd(inputRate, outputRate);
+        this.inputRate = inputRate;
+        this.outputRate = outputRate;
+        this.up = outputRate / gcd;
+        this.down = inputRate / gcd;
+        if (up > MAX_PHASES || down > MAX_PHASES) {
+            throw new IllegalArgumentException("Unsupported resampling ratio " + inputRate + " -> " + outputRate);
+        }
+        double zeroCrossingSpacing = Math.max(up, down) / ROLLOFF;
+        this.taps = (int) Math.ceil(2 * ZERO_CROSSINGS * zeroCrossingSpacing / up);
+        if (taps > MAX_TAPS) {
+            throw new IllegalArgumentException("Unsupported resampling ratio " + inputRate + " -> " + outputRate);
+        }
+        this.coefficients = coefficients(up, down, taps);
+        this.history = new float[2 * taps];
+        // 原型滤波器中心在上采样域的 (L*taps-1)/2（取整）处：整数个输出样本的部分在开头丢弃，余数由起始相位补上
+        int center = (up * taps - 1) / 2;
+        this.delayOutputs = center / down;
+        this.initialPhase = center % down;
+        reset();
+    }
+
+    /**
+     * 检查采样率是否在 {@value #MIN_RATE}~{@value #MAX_RATE} Hz 之内。
+     *
+     * @return rate 本身
+     * @throws IllegalArgumentException 超出范围
+     */
+    public static int checkRate(int rate) {
+        if (rate < MIN_RATE || rate > MAX_RATE) {
+            throw new IllegalArgumentException("Sample rate must be between " + MIN_RATE + " and " + MAX_RATE
+                    + " Hz, got: " + rate);
+        }
+        return rate;
+    }
+
+    public int getInputRate() {
+        return inputRate;
+    }
+
+    public int getOutputRate() {
+        return outputRate;
+    }
+
+    /**
+     * 处理 {@code inputBytes} 字节输入时最多产生的输出字节数，用于预先分配输出缓冲。
+     */
+    public int maxOutputBytes(int inputBytes) {
+        long samples = inputBytes / 2;
+        return (int) ((samples * up + down - 1) / down + 1) * 2;
+    }
+
+    /**
+     * {@link #flush} 最多产生的输出字节数。
+     */
+    public int maxFlushBytes() {
+        return maxOutputBytes(taps * 2);
+    }
+
+    /**
+     * 重采样一段输入；输入长度须为偶数，可以是任意大小的分块，跨块状态自动衔接。
+     *
+     * @return 写入 out 的字节数，不超过 {@link #maxOutputBytes(int)}
+     */
+    public int process(byte[] in, int offset, int length, byte[] out, int outOffset) {
+        if (offset < 0 || length < 0 || offset + length > in.length || (length & 1) != 0) {
+            throw new IllegalArgumentException("Invalid PCM range: offset=" + offset + ", length=" + length);
+        }
+        if (outOffset < 0 || outOffset + maxOutputBytes(length) > out.length) {
+            throw new IllegalArgumentException("Output buffer too small for " + length + " input bytes");
+        }
+        int written = outOffset;
+        for (int i = offset, end = offset + length; i < end; i += 2) {
+            written = push((short) SHORT_LE.get(in, i) / PcmKernels.FULL_SCALE, out, written);
+        }
+        return written - outOffset;
+    }
+
+    /**
+     * 输入结束时调用，补零把滤波器中尚未输出的尾部送出。
+     *
+     * @return 写入 out 的字节数，不超过 {@link #maxFlushBytes()}
+     */
+    public int flush(byte[] out, int outOffset) {
+        if (outOffset < 0 || outOffset + maxFlushBytes() > out.length) {
+            throw new IllegalArgumentException("Output buffer too small for flush");
+        }
+        int written = outOffset;
+        for (int i = 0; i < (taps + 1) / 2; i++) {
+            written = push(0f, out, written);
+        }
+        return written - outOffset;
+    }
+
+    /**
+     * 清空滤波器状态，开始处理一段新的音频。
+     */
+    public void reset() {
+        Arrays.fill(history, 0f);
+        historyPos = 0;
+        phase = initialPhase;
+        skip = delayOutputs;
+    }
+
+    private int push(float sample, byte[] out, int written) {
+        // history[historyPos + j] 为倒数第 j 个输入样本；写两份使窗口始终连续
+        historyPos = historyPos == 0 ? taps - 1 : historyPos - 1;
+        history[historyPos] = sample;
+        history[historyPos + taps] = sample;
+        while (phase < up) {
+            int base = phase * taps;
+            float acc = 0f;
+            for (int j = 0; j < taps; j++) {
+                acc += coefficients[base + j] * history[historyPos + j];
+            }
+            phase += down;
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            int s = Math.round(acc * PcmKernels.FULL_SCALE);
+            SHORT_LE.set(out, written, (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, s)));
+            written += 2;
+        }
+        phase -= up;
+        return written;
+    }
+
+    private static float[] coefficients(int up, int down, int taps) {
+        long key = ((long) up << 32) | down;
+        synchronized (COEFFICIENTS) {
+            float[] cached = COEFFICIENTS.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // 设计在锁外进行，并发首次创建时可能重复计算一次，结果相同
+        float[] designed = design(up, down, taps);
+        synchronized (COEFFICIENTS) {
+            float[] cached = COEFFICIENTS.putIfAbsent(key, designed);
+            return cached != null ? cached : designed;
+        }
+    }
+
+    /**
+     * 设计原型低通并拆成多相：系数 [p * taps + j] 作用于倒数第 j 个输入样本，对应原型的第 p + j*L 个系数。
+     */
+    private static float[] design(int up, int down, int taps) {
+        int length = up * taps;
+        // 中心取整数位置，长度为偶数时最后一个系数为 0，滤波器仍对称、群延迟为整数
+        int center = (length - 1) / 2;
+        double cutoff = ROLLOFF / (2.0 * Math.max(up, down));
+        double[] prototype = new double[length];
+        double sum = 0;
+        double i0Beta = besselI0(KAISER_BETA);
+        for (int i = 0; i <= 2 * center; i++) {
+            double x = i - center;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double r = x / (center + 1);
+            double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - r * r))) / i0Beta;
+            prototype[i] = sinc * window;
+            sum += prototype[i];
+        }
+        // 上采样插入了 L-1 个零，直流增益需补到 L，每个相位的系数和因此约为 1
+        double scale = up / sum;
+        float[] polyphase = new float[length];
+        for (int p = 0; p < up; p++) {
+            for (int j = 0; j < taps; j++) {
+                polyphase[p * taps + j] = (float) (prototype[p + j * up] * scale);
+            }
+        }
+        return polyphase;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+}
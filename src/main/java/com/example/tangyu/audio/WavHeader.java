@@ -0,0 +1,152 @@
+package com.example.tangyu.audio;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 44 字节标准 PCM WAV 文件头的读写工具；读取时也接受带 LIST 等附加块与 WAVE_FORMAT_EXTENSIBLE 的文件。
+ */
+public final class WavHeader {
+    public static final int SIZE = 44;
+    /** 长度未知（边合成边输出）时写入的占位值 */
+    public static final long UNKNOWN_LENGTH = 0xFFFFFFFFL;
+
+    private static final int FORMAT_PCM = 1;
+    private static final int FORMAT_EXTENSIBLE = 0xFFFE;
+    /** 附加块（LIST、fact 等）大小的上限，超过视为损坏的文件 */
+    private static final long MAX_SKIPPED_CHUNK = 1 << 20;
+
+    private WavHeader() {
+    }
+
+    /**
+     * 生成 PCM WAV 文件头。
+     *
+     * @param sampleRate    采样率
+     * @param channels      声道数
+     * @param bitsPerSample 位深（通常为 16）
+     * @param dataLength    数据区字节数，未知时传 {@link #UNKNOWN_LENGTH}
+     */
+    public static ByteBuffer create(int sampleRate, int channels, int bitsPerSample, long dataLength) {
+        int blockAlign = channels * bitsPerSample / 8;
+        ByteBuffer header = ByteBuffer.allocate(SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'});
+        header.putInt((int) (dataLength == UNKNOWN_LENGTH ? UNKNOWN_LENGTH : dataLength + 36));
+        header.put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '});
+        header.putInt(16);
+        header.putShort((short) 1);
+        header.putShort((short) channels);
+        header.putInt(sampleRate);
+        header.putInt(sampleRate * blockAlign);
+        header.putShort((short) blockAlign);
+        header.putShort((short) bitsPerSample);
+        header.put(new byte[] {'d', 'a', 't', 'a'});
+        header.putInt((int) dataLength);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * 判断开头的字节是否为 RIFF/WAVE 文件头。
+     */
+    public static boolean isWav(byte[] prefix, int length) {
+        return length >= 12 && prefix[0] == 'R' && prefix[1] == 'I' && prefix[2] == 'F' && prefix[3] == 'F'
+                && prefix[8] == 'W' && prefix[9] == 'A' && prefix[10] == 'V' && prefix[11] == 'E';
+    }
+
+    /**
+     * 读取 WAV 文件头，读完后流正好停在音频数据的开头。
+     *
+     * @throws IllegalArgumentException 不是 PCM WAV，或文件头不完整
+     */
+    public static Info read(InputStream in) throws IOException {
+        ByteBuffer riff = readFully(in, 12);
+        if (!isWav(riff.array(), 12)) {
+            throw new IllegalArgumentException("Not a RIFF/WAVE stream");
+        }
+        Info info = null;
+        while (true) {
+            ByteBuffer chunk = readFully(in, 8);
+            String id = new String(chunk.array(), 0, 4, StandardCharsets.US_ASCII);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            if (id.equals("fmt ")) {
+                if (size < 16 || size > 64) {
+                    throw new IllegalArgumentException("Invalid WAV fmt chunk size: " + size);
+                }
+                ByteBuffer fmt = readFully(in, (int) (size + (size & 1)));
+                int format = fmt.getShort(0) & 0xFFFF;
+                if (format == FORMAT_EXTENSIBLE && size >= 26) {
+                    // 扩展格式的子格式 GUID 前两个字节即格式码
+                    format = fmt.getShort(24) & 0xFFFF;
+                }
+                if (format != FORMAT_PCM) {
+                    throw new IllegalArgumentException("Unsupported WAV encoding " + format + ", only PCM is supported");
+                }
+                info = new Info(fmt.getInt(4), fmt.getShort(2) & 0xFFFF, fmt.getShort(14) & 0xFFFF, 0);
+            } else if (id.equals("data")) {
+                if (info == null) {
+                    throw new IllegalArgumentException("WAV data chunk before fmt chunk");
+                }
+                return new Info(info.sampleRate, info.channels, info.bitsPerSample, size);
+            } else {
+                long skip = size + (size & 1);
+                if (skip > MAX_SKIPPED_CHUNK) {
+                    throw new IllegalArgumentException("WAV chunk '" + id + "' too large: " + size);
+                }
+                in.readNBytes((int) skip);
+            }
+        }
+    }
+
+    private static ByteBuffer readFully(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("WAV header ended unexpectedly");
+        }
+        return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 从文件头读出的音频格式。
+     */
+    public static final class Info {
+        private final int sampleRate;
+        private final int channels;
+        private final int bitsPerSample;
+        private final long dataLength;
+
+        Info(int sampleRate, int channels, int bitsPerSample, long dataLength) {
+            this.sampleRate = sampleRate;
+            this.channels = channels;
+            this.bitsPerSample = bitsPerSample;
+            this.dataLength = dataLength;
+        }
+
+        public int getSampleRate() {
+            return sampleRate;
+        }
+
+        public int getChannels() {
+            return channels;
+        }
+
+        public int getBitsPerSample() {
+            return bitsPerSample;
+        }
+
+        /** 数据区字节数；边录边写的文件可能为 0 或 {@link #UNKNOWN_LENGTH} */
+        public long getDataLength() {
+            return dataLength;
+        }
+
+        @Override
+        public String toString() {
+            return sampleRate + "Hz/" + channels + "ch/" + bitsPerSample + "bit";
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.tangyu.config;
+
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration for asynchronous batch transcription jobs (journal, spool directory and worker pool).
+ */
+public class AsrJobConfig {
+    private static final int DEFAULT_CONCURRENCY = 2;
+    private static final int DEFAULT_MAX_FILES = 100;
+    private static final long DEFAULT_MAX_FILE_MB = 200;
+    private static final long DEFAULT_RETENTION_HOURS = 24;
+
+    private final Path dir;
+    private final int concurrency;
+    private final int maxFilesPerJob;
+    private final long maxFileBytes;
+    private final long retentionHours;
+    private final Path inputDir;
+
+    /**
+     * @param dir            holds the job journal and the spooled uploads
+     * @param concurrency    files transcribed at once, i.e. concurrent DashScope recognitions used by jobs
+     * @param maxFilesPerJob files accepted in one submission
+     * @param maxFileBytes   largest accepted upload per file
+     * @param retentionHours finished jobs are dropped from the journal after this long
+     * @param inputDir       server-side directory manifest paths may point into, null disables manifests
+     */
+    public AsrJobConfig(Path dir, int concurrency, int maxFilesPerJob, long maxFileBytes, long retentionHours,
+                        Path inputDir) {
+        this.dir = dir != null ? dir : Path.of(System.getProperty("java.io.tmpdir"), "tangyu-asr-jobs");
+        this.concurrency = concurrency > 0 ? concurrency : DEFAULT_CONCURRENCY;
+        this.maxFilesPerJob = maxFilesPerJob > 0 ? maxFilesPerJob : DEFAULT_MAX_FILES;
+        this.maxFileBytes = maxFileBytes > 0 ? maxFileBytes : DEFAULT_MAX_FILE_MB * 1024 * 1024;
+        this.retentionHours = retentionHours > 0 ? retentionHours : DEFAULT_RETENTION_HOURS;
+        this.inputDir = inputDir;
+    }
+
+    public static AsrJobConfig fromEnvironment() {
+        return fromEnvironment(null);
+    }
+
+    /**
+     * Build config from Spring Environment (application.yml/application.properties), with env/system fallback.
+     */
+    public static AsrJobConfig fromEnvironment(Environment env) {
+        String dir = optional(env, "ASR_JOBS_DIR", "asr.jobs.dir", null);
+        int concurrency = Integer.parseInt(optional(env, "ASR_JOBS_CONCURRENCY", "asr.jobs.concurrency", String.valueOf(DEFAULT_CONCURRENCY)));
+        int maxFiles = Integer.parseInt(optional(env, "ASR_JOBS_MAX_FILES", "asr.jobs.maxFiles", String.valueOf(DEFAULT_MAX_FILES)));
+        long maxFileMb = Long.parseLong(optional(env, "ASR_JOBS_MAX_FILE_MB", "asr.jobs.maxFileMb", String.valueOf(DEFAULT_MAX_FILE_MB)));
+        long retention = Long.parseLong(optional(env, "ASR_JOBS_RETENTION_HOURS", "asr.jobs.retentionHours", String.valueOf(DEFAULT_RETENTION_HOURS)));
+        String inputDir = optional(env, "ASR_JOBS_INPUT_DIR", "asr.jobs.inputDir", null);
+        return new AsrJobConfig(dir != null ? Path.of(dir) : null, concurrency, maxFiles, maxFileMb * 1024 * 1024,
+                retention, inputDir != null ? Path.of(inputDir) : null);
+    }
+
+    private static String optional(Environment env, String envName, String propertyName, String defaultValue) {
+        String value = env != null ? env.getProperty(propertyName) : null;
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getMaxFilesPerJob() {
+        return maxFilesPerJob;
+    }
+
+    public long getMaxFileBytes() {
+        return maxFileBytes;
+    }
+
+    public long getRetentionHours() {
+        return retentionHours;
+    }
+
+    public Path getInputDir() {
+        return inputDir;
+    }
+}
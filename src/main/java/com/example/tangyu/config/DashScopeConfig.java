@@ -12,17 +12,28 @@ public class DashScopeConfig {
     private static final String DEFAULT_BASE_URL = "wss://dashscope.aliyuncs.com/api-ws/v1/inference";
     private static final String DEFAULT_MODEL = "fun-asr-realtime";
     private static final String DEFAULT_LANGUAGE_HINTS = "zh,en";
+    private static final int DEFAULT_SAMPLE_RATE = 16000;
 
     private final String apiKey;
     private final String baseWebsocketUrl;
     private final String model;
     private final String[] languageHints;
+    private final int sampleRate;
 
     public DashScopeConfig(String apiKey, String baseWebsocketUrl, String model, String[] languageHints) {
+        this(apiKey, baseWebsocketUrl, model, languageHints, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * @param sampleRate native sample rate of the model; PCM and WAV input is resampled to it before recognition
+     */
+    public DashScopeConfig(String apiKey, String baseWebsocketUrl, String model, String[] languageHints,
+                           int sampleRate) {
         this.apiKey = Objects.requireNonNull(apiKey, "DashScope API Key is required");
         this.baseWebsocketUrl = Objects.requireNonNullElse(baseWebsocketUrl, DEFAULT_BASE_URL);
         this.model = Objects.requireNonNullElse(model, DEFAULT_MODEL);
         this.languageHints = languageHints != null ? languageHints : parseHints(DEFAULT_LANGUAGE_HINTS);
+        this.sampleRate = sampleRate > 0 ? sampleRate : DEFAULT_SAMPLE_RATE;
     }
 
     public static DashScopeConfig fromEnvironment() {
@@ -30,7 +41,8 @@ public class DashScopeConfig {
         String baseUrl = optional("DASHSCOPE_BASE_URL", "dashscope.baseUrl", DEFAULT_BASE_URL);
         String model = optional("DASHSCOPE_ASR_MODEL", "dashscope.asr.model", DEFAULT_MODEL);
         String hints = optional("DASHSCOPE_ASR_LANGUAGE_HINTS", "dashscope.asr.languageHints", DEFAULT_LANGUAGE_HINTS);
-        return new DashScopeConfig(apiKey, baseUrl, model, parseHints(hints));
+        int sampleRate = Integer.parseInt(optional("DASHSCOPE_ASR_SAMPLE_RATE", "dashscope.asr.sampleRate", String.valueOf(DEFAULT_SAMPLE_RATE)));
+        return new DashScopeConfig(apiKey, baseUrl, model, parseHints(hints), sampleRate);
     }
 
     /**
@@ -41,7 +53,8 @@ public class DashScopeConfig {
         String baseUrl = optional(env, "DASHSCOPE_BASE_URL", "dashscope.baseUrl", DEFAULT_BASE_URL);
         String model = optional(env, "DASHSCOPE_ASR_MODEL", "dashscope.asr.model", DEFAULT_MODEL);
         String hints = optional(env, "DASHSCOPE_ASR_LANGUAGE_HINTS", "dashscope.asr.languageHints", DEFAULT_LANGUAGE_HINTS);
-        return new DashScopeConfig(apiKey, baseUrl, model, parseHints(hints));
+        int sampleRate = Integer.parseInt(optional(env, "DASHSCOPE_ASR_SAMPLE_RATE", "dashscope.asr.sampleRate", String.valueOf(DEFAULT_SAMPLE_RATE)));
+        return new DashScopeConfig(apiKey, baseUrl, model, parseHints(hints), sampleRate);
     }
 
     private static String require(String envName, String propertyName) {
@@ -107,4 +120,8 @@ public class DashScopeConfig {
     public String[] getLanguageHints() {
         return languageHints;
     }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
 }
@@ -0,0 +1,85 @@
+package com.example.tangyu.config;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * Worker pool and load-shedding settings for the standalone speech HTTP server.
+ */
+public class ServerPoolConfig {
+    private static final int DEFAULT_WORKER_THREADS = 16;
+    private static final int DEFAULT_QUEUE_CAPACITY = 32;
+    private static final long DEFAULT_QUEUE_TIMEOUT_MILLIS = 2_000;
+    private static final int DEFAULT_RETRY_AFTER_SECONDS = 1;
+
+    private final int workerThreads;
+    private final int queueCapacity;
+    private final long queueTimeoutMillis;
+    private final boolean virtualThreads;
+    private final int retryAfterSeconds;
+
+    /**
+     * @param workerThreads      requests handled concurrently
+     * @param queueCapacity      accepted requests that may wait for a worker; beyond this they are rejected at once
+     * @param queueTimeoutMillis longest a request may wait for a worker before it is rejected instead of served
+     * @param virtualThreads     run workers on virtual threads when the JVM supports them
+     * @param retryAfterSeconds  value of the Retry-After header on rejected requests
+     */
+    public ServerPoolConfig(int workerThreads, int queueCapacity, long queueTimeoutMillis, boolean virtualThreads,
+                            int retryAfterSeconds) {
+        this.workerThreads = workerThreads > 0 ? workerThreads : DEFAULT_WORKER_THREADS;
+        this.queueCapacity = queueCapacity >= 0 ? queueCapacity : DEFAULT_QUEUE_CAPACITY;
+        this.queueTimeoutMillis = queueTimeoutMillis > 0 ? queueTimeoutMillis : DEFAULT_QUEUE_TIMEOUT_MILLIS;
+        this.virtualThreads = virtualThreads;
+        this.retryAfterSeconds = retryAfterSeconds > 0 ? retryAfterSeconds : DEFAULT_RETRY_AFTER_SECONDS;
+    }
+
+    public static ServerPoolConfig fromEnvironment() {
+        return fromEnvironment(null);
+    }
+
+    /**
+     * Build config from Spring Environment (application.yml/application.properties), with env/system fallback.
+     */
+    public static ServerPoolConfig fromEnvironment(Environment env) {
+        int workers = Integer.parseInt(optional(env, "SPEECH_SERVER_WORKERS", "speech.server.workerThreads", String.valueOf(DEFAULT_WORKER_THREADS)));
+        int queue = Integer.parseInt(optional(env, "SPEECH_SERVER_QUEUE", "speech.server.queueCapacity", String.valueOf(DEFAULT_QUEUE_CAPACITY)));
+        long queueTimeout = Long.parseLong(optional(env, "SPEECH_SERVER_QUEUE_TIMEOUT_MS", "speech.server.queueTimeoutMillis", String.valueOf(DEFAULT_QUEUE_TIMEOUT_MILLIS)));
+        boolean virtual = Boolean.parseBoolean(optional(env, "SPEECH_SERVER_VIRTUAL_THREADS", "speech.server.virtualThreads", "false"));
+        int retryAfter = Integer.parseInt(optional(env, "SPEECH_SERVER_RETRY_AFTER_SECONDS", "speech.server.retryAfterSeconds", String.valueOf(DEFAULT_RETRY_AFTER_SECONDS)));
+        return new ServerPoolConfig(workers, queue, queueTimeout, virtual, retryAfter);
+    }
+
+    private static String optional(Environment env, String envName, String propertyName, String defaultValue) {
+        String value = env != null ? env.getProperty(propertyName) : null;
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    public int getWorkerThreads() {
+        return workerThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public long getQueueTimeoutMillis() {
+        return queueTimeoutMillis;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.tangyu.config;
+
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration for the TTS audio cache (heap LRU tier + optional on-disk tier).
+ */
+public class TtsCacheConfig {
+    private static final long DEFAULT_HEAP_MB = 32;
+    private static final long DEFAULT_DISK_MB = 512;
+    private static final int DEFAULT_MAX_TEXT_LENGTH = 64;
+    private static final int DEFAULT_ADMIT_AFTER = 2;
+
+    private final boolean enabled;
+    private final long heapMaxBytes;
+    private final Path diskDir;
+    private final long diskMaxBytes;
+    private final int maxTextLength;
+    private final int admitAfter;
+
+    /**
+     * @param enabled       whether caching is enabled at all
+     * @param heapMaxBytes  byte budget of the heap tier
+     * @param diskDir       directory of the disk tier, null disables it
+     * @param diskMaxBytes  byte budget of the disk tier
+     * @param maxTextLength texts up to this length are cached on first sight
+     * @param admitAfter    longer texts are cached only after this many misses
+     */
+    public TtsCacheConfig(boolean enabled, long heapMaxBytes, Path diskDir, long diskMaxBytes,
+                          int maxTextLength, int admitAfter) {
+        this.enabled = enabled;
+        this.heapMaxBytes = heapMaxBytes > 0 ? heapMaxBytes : DEFAULT_HEAP_MB * 1024 * 1024;
+        this.diskDir = diskDir;
+        this.diskMaxBytes = diskMaxBytes > 0 ? diskMaxBytes : DEFAULT_DISK_MB * 1024 * 1024;
+        this.maxTextLength = maxTextLength > 0 ? maxTextLength : DEFAULT_MAX_TEXT_LENGTH;
+        this.admitAfter = Math.max(1, admitAfter);
+    }
+
+    public static TtsCacheConfig fromEnvironment() {
+        boolean enabled = Boolean.parseBoolean(optional("DASHSCOPE_TTS_CACHE_ENABLED", "dashscope.tts.cache.enabled", "true"));
+        long heapMb = Long.parseLong(optional("DASHSCOPE_TTS_CACHE_HEAP_MB", "dashscope.tts.cache.heapMb", String.valueOf(DEFAULT_HEAP_MB)));
+        String dir = optional("DASHSCOPE_TTS_CACHE_DIR", "dashscope.tts.cache.dir", null);
+        long diskMb = Long.parseLong(optional("DASHSCOPE_TTS_CACHE_DISK_MB", "dashscope.tts.cache.diskMb", String.valueOf(DEFAULT_DISK_MB)));
+        int maxText = Integer.parseInt(optional("DASHSCOPE_TTS_CACHE_MAX_TEXT", "dashscope.tts.cache.maxTextLength", String.valueOf(DEFAULT_MAX_TEXT_LENGTH)));
+        int admitAfter = Integer.parseInt(optional("DASHSCOPE_TTS_CACHE_ADMIT_AFTER", "dashscope.tts.cache.admitAfter", String.valueOf(DEFAULT_ADMIT_AFTER)));
+        return new TtsCacheConfig(enabled, heapMb * 1024 * 1024, dir != null ? Path.of(dir) : null,
+                diskMb * 1024 * 1024, maxText, admitAfter);
+    }
+
+    /**
+     * Build config from Spring Environment (application.yml/application.properties), with env/system fallback.
+     */
+    public static TtsCacheConfig fromEnvironment(Environment env) {
+        boolean enabled = Boolean.parseBoolean(optional(env, "DASHSCOPE_TTS_CACHE_ENABLED", "dashscope.tts.cache.enabled", "true"));
+        long heapMb = Long.parseLong(optional(env, "DASHSCOPE_TTS_CACHE_HEAP_MB", "dashscope.tts.cache.heapMb", String.valueOf(DEFAULT_HEAP_MB)));
+        String dir = optional(env, "DASHSCOPE_TTS_CACHE_DIR", "dashscope.tts.cache.dir", null);
+        long diskMb = Long.parseLong(optional(env, "DASHSCOPE_TTS_CACHE_DISK_MB", "dashscope.tts.cache.diskMb", String.valueOf(DEFAULT_DISK_MB)));
+        int maxText = Integer.parseInt(optional(env, "DASHSCOPE_TTS_CACHE_MAX_TEXT", "dashscope.tts.cache.maxTextLength", String.valueOf(DEFAULT_MAX_TEXT_LENGTH)));
+        int admitAfter = Integer.parseInt(optional(env, "DASHSCOPE_TTS_CACHE_ADMIT_AFTER", "dashscope.tts.cache.admitAfter", String.valueOf(DEFAULT_ADMIT_AFTER)));
+        return new TtsCacheConfig(enabled, heapMb * 1024 * 1024, dir != null ? Path.of(dir) : null,
+                diskMb * 1024 * 1024, maxText, admitAfter);
+    }
+
+    private static String optional(Environment env, String envName, String propertyName, String defaultValue) {
+        String value = env != null ? env.getProperty(propertyName) : null;
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    private static String optional(String envName, String propertyName, String defaultValue) {
+        String value = System.getenv(envName);
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getHeapMaxBytes() {
+        return heapMaxBytes;
+    }
+
+    public Path getDiskDir() {
+        return diskDir;
+    }
+
+    public long getDiskMaxBytes() {
+        return diskMaxBytes;
+    }
+
+    public int getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    public int getAdmitAfter() {
+        return admitAfter;
+    }
+}
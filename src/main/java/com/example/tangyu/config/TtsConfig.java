@@ -1,5 +1,7 @@
 package com.example.tangyu.config;
 
+import org.springframework.core.env.Environment;
+
 import java.util.Objects;
 
 /**
@@ -11,6 +13,12 @@ public class TtsConfig {
     private static final String DEFAULT_VOICE = "zh-CN-XiaoyiNeural";
     private static final int DEFAULT_SAMPLE_RATE = 24000;
     private static final String DEFAULT_FORMAT = "pcm";
+    private static final int DEFAULT_POOL_MAX_IDLE = 4;
+    private static final int DEFAULT_POOL_IDLE_TIMEOUT_SECONDS = 60;
+    private static final int DEFAULT_PING_INTERVAL_SECONDS = 20;
+    private static final int DEFAULT_SEGMENT_THRESHOLD = 150;
+    private static final int DEFAULT_SEGMENT_PARALLELISM = 3;
+    private static final boolean DEFAULT_POOL_REUSE_SESSIONS = false;
 
     private final String apiKey;
     private final String baseWebsocketUrl;
@@ -18,15 +26,50 @@ public class TtsConfig {
     private final String voice;
     private final int sampleRate;
     private final String format;
+    private final int poolMaxIdle;
+    private final int poolIdleTimeoutSeconds;
+    private final int pingIntervalSeconds;
+    private final int segmentThreshold;
+    private final int segmentParallelism;
+    private final boolean poolReuseSessions;
 
     public TtsConfig(String apiKey, String baseWebsocketUrl, String model, 
                      String voice, int sampleRate, String format) {
+        this(apiKey, baseWebsocketUrl, model, voice, sampleRate, format,
+                DEFAULT_POOL_MAX_IDLE, DEFAULT_POOL_IDLE_TIMEOUT_SECONDS, DEFAULT_PING_INTERVAL_SECONDS);
+    }
+
+    public TtsConfig(String apiKey, String baseWebsocketUrl, String model,
+                     String voice, int sampleRate, String format,
+                     int poolMaxIdle, int poolIdleTimeoutSeconds, int pingIntervalSeconds) {
+        this(apiKey, baseWebsocketUrl, model, voice, sampleRate, format, poolMaxIdle, poolIdleTimeoutSeconds,
+                pingIntervalSeconds, DEFAULT_SEGMENT_THRESHOLD, DEFAULT_SEGMENT_PARALLELISM);
+    }
+
+    public TtsConfig(String apiKey, String baseWebsocketUrl, String model,
+                     String voice, int sampleRate, String format,
+                     int poolMaxIdle, int poolIdleTimeoutSeconds, int pingIntervalSeconds,
+                     int segmentThreshold, int segmentParallelism) {
+        this(apiKey, baseWebsocketUrl, model, voice, sampleRate, format, poolMaxIdle, poolIdleTimeoutSeconds,
+                pingIntervalSeconds, segmentThreshold, segmentParallelism, DEFAULT_POOL_REUSE_SESSIONS);
+    }
+
+    public TtsConfig(String apiKey, String baseWebsocketUrl, String model,
+                     String voice, int sampleRate, String format,
+                     int poolMaxIdle, int poolIdleTimeoutSeconds, int pingIntervalSeconds,
+                     int segmentThreshold, int segmentParallelism, boolean poolReuseSessions) {
         this.apiKey = Objects.requireNonNull(apiKey, "DashScope API Key is required");
         this.baseWebsocketUrl = Objects.requireNonNullElse(baseWebsocketUrl, DEFAULT_BASE_URL);
         this.model = Objects.requireNonNullElse(model, DEFAULT_MODEL);
         this.voice = Objects.requireNonNullElse(voice, DEFAULT_VOICE);
         this.sampleRate = sampleRate > 0 ? sampleRate : DEFAULT_SAMPLE_RATE;
         this.format = Objects.requireNonNullElse(format, DEFAULT_FORMAT);
+        this.poolMaxIdle = poolMaxIdle >= 0 ? poolMaxIdle : DEFAULT_POOL_MAX_IDLE;
+        this.poolIdleTimeoutSeconds = poolIdleTimeoutSeconds > 0 ? poolIdleTimeoutSeconds : DEFAULT_POOL_IDLE_TIMEOUT_SECONDS;
+        this.pingIntervalSeconds = pingIntervalSeconds > 0 ? pingIntervalSeconds : DEFAULT_PING_INTERVAL_SECONDS;
+        this.segmentThreshold = segmentThreshold > 0 ? segmentThreshold : DEFAULT_SEGMENT_THRESHOLD;
+        this.segmentParallelism = segmentParallelism > 0 ? segmentParallelism : DEFAULT_SEGMENT_PARALLELISM;
+        this.poolReuseSessions = poolReuseSessions;
     }
 
     public static TtsConfig fromEnvironment() {
@@ -36,7 +79,34 @@ public class TtsConfig {
         String voice = optional("DASHSCOPE_TTS_VOICE", "dashscope.tts.voice", DEFAULT_VOICE);
         int sampleRate = Integer.parseInt(optional("DASHSCOPE_TTS_SAMPLE_RATE", "dashscope.tts.sampleRate", String.valueOf(DEFAULT_SAMPLE_RATE)));
         String format = optional("DASHSCOPE_TTS_FORMAT", "dashscope.tts.format", DEFAULT_FORMAT);
-        return new TtsConfig(apiKey, baseUrl, model, voice, sampleRate, format);
+        int poolMaxIdle = Integer.parseInt(optional("DASHSCOPE_TTS_POOL_MAX_IDLE", "dashscope.tts.pool.maxIdle", String.valueOf(DEFAULT_POOL_MAX_IDLE)));
+        int poolIdleTimeout = Integer.parseInt(optional("DASHSCOPE_TTS_POOL_IDLE_TIMEOUT", "dashscope.tts.pool.idleTimeoutSeconds", String.valueOf(DEFAULT_POOL_IDLE_TIMEOUT_SECONDS)));
+        int pingInterval = Integer.parseInt(optional("DASHSCOPE_TTS_PING_INTERVAL", "dashscope.tts.pool.pingIntervalSeconds", String.valueOf(DEFAULT_PING_INTERVAL_SECONDS)));
+        int segmentThreshold = Integer.parseInt(optional("DASHSCOPE_TTS_SEGMENT_THRESHOLD", "dashscope.tts.segment.threshold", String.valueOf(DEFAULT_SEGMENT_THRESHOLD)));
+        int segmentParallelism = Integer.parseInt(optional("DASHSCOPE_TTS_SEGMENT_PARALLELISM", "dashscope.tts.segment.parallelism", String.valueOf(DEFAULT_SEGMENT_PARALLELISM)));
+        boolean poolReuse = Boolean.parseBoolean(optional("DASHSCOPE_TTS_POOL_REUSE", "dashscope.tts.pool.reuseSessions", String.valueOf(DEFAULT_POOL_REUSE_SESSIONS)));
+        return new TtsConfig(apiKey, baseUrl, model, voice, sampleRate, format, poolMaxIdle, poolIdleTimeout, pingInterval,
+                segmentThreshold, segmentParallelism, poolReuse);
+    }
+
+    /**
+     * Build config from Spring Environment (application.yml/application.properties), with env/system fallback.
+     */
+    public static TtsConfig fromEnvironment(Environment env) {
+        String apiKey = require(env, "DASHSCOPE_API_KEY", "dashscope.apiKey");
+        String baseUrl = optional(env, "DASHSCOPE_TTS_BASE_URL", "dashscope.tts.baseUrl", DEFAULT_BASE_URL);
+        String model = optional(env, "DASHSCOPE_TTS_MODEL", "dashscope.tts.model", DEFAULT_MODEL);
+        String voice = optional(env, "DASHSCOPE_TTS_VOICE", "dashscope.tts.voice", DEFAULT_VOICE);
+        int sampleRate = Integer.parseInt(optional(env, "DASHSCOPE_TTS_SAMPLE_RATE", "dashscope.tts.sampleRate", String.valueOf(DEFAULT_SAMPLE_RATE)));
+        String format = optional(env, "DASHSCOPE_TTS_FORMAT", "dashscope.tts.format", DEFAULT_FORMAT);
+        int poolMaxIdle = Integer.parseInt(optional(env, "DASHSCOPE_TTS_POOL_MAX_IDLE", "dashscope.tts.pool.maxIdle", String.valueOf(DEFAULT_POOL_MAX_IDLE)));
+        int poolIdleTimeout = Integer.parseInt(optional(env, "DASHSCOPE_TTS_POOL_IDLE_TIMEOUT", "dashscope.tts.pool.idleTimeoutSeconds", String.valueOf(DEFAULT_POOL_IDLE_TIMEOUT_SECONDS)));
+        int pingInterval = Integer.parseInt(optional(env, "DASHSCOPE_TTS_PING_INTERVAL", "dashscope.tts.pool.pingIntervalSeconds", String.valueOf(DEFAULT_PING_INTERVAL_SECONDS)));
+        int segmentThreshold = Integer.parseInt(optional(env, "DASHSCOPE_TTS_SEGMENT_THRESHOLD", "dashscope.tts.segment.threshold", String.valueOf(DEFAULT_SEGMENT_THRESHOLD)));
+        int segmentParallelism = Integer.parseInt(optional(env, "DASHSCOPE_TTS_SEGMENT_PARALLELISM", "dashscope.tts.segment.parallelism", String.valueOf(DEFAULT_SEGMENT_PARALLELISM)));
+        boolean poolReuse = Boolean.parseBoolean(optional(env, "DASHSCOPE_TTS_POOL_REUSE", "dashscope.tts.pool.reuseSessions", String.valueOf(DEFAULT_POOL_REUSE_SESSIONS)));
+        return new TtsConfig(apiKey, baseUrl, model, voice, sampleRate, format, poolMaxIdle, poolIdleTimeout, pingInterval,
+                segmentThreshold, segmentParallelism, poolReuse);
     }
 
     private static String require(String envName, String propertyName) {
@@ -47,6 +117,28 @@ public class TtsConfig {
         return value;
     }
 
+    private static String require(Environment env, String envName, String propertyName) {
+        String value = optional(env, envName, propertyName, null);
+        if (value == null || value.isBlank()) {
+            throw new IllegalStateException("Missing required configuration for " + envName + " or property " + propertyName);
+        }
+        return value;
+    }
+
+    private static String optional(Environment env, String envName, String propertyName, String defaultValue) {
+        String value = env != null ? env.getProperty(propertyName) : null;
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
     private static String optional(String envName, String propertyName, String defaultValue) {
         String value = System.getenv(envName);
         if (value == null || value.isBlank()) {
@@ -81,5 +173,41 @@ public class TtsConfig {
     public String getFormat() {
         return format;
     }
-}
 
+    /**
+     * Maximum number of warm sessions kept per (model, voice, sampleRate, format); 0 disables pooling.
+     */
+    public int getPoolMaxIdle() {
+        return poolMaxIdle;
+    }
+
+    public int getPoolIdleTimeoutSeconds() {
+        return poolIdleTimeoutSeconds;
+    }
+
+    public int getPingIntervalSeconds() {
+        return pingIntervalSeconds;
+    }
+
+    /**
+     * Whether a session that finished a synthesis goes back to the pool for the next one. Off by
+     * default: only enable it once the service is known to accept more than one commit per session.
+     */
+    public boolean isPoolReuseSessions() {
+        return poolReuseSessions;
+    }
+
+    /**
+     * Texts longer than this many characters are split and synthesized in parallel segments.
+     */
+    public int getSegmentThreshold() {
+        return segmentThreshold;
+    }
+
+    /**
+     * Maximum number of segments synthesized concurrently per client; 1 disables segmentation.
+     */
+    public int getSegmentParallelism() {
+        return segmentParallelism;
+    }
+}
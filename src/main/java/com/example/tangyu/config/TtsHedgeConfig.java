@@ -0,0 +1,129 @@
+package com.example.tangyu.config;
+
+import org.springframework.core.env.Environment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration for hedged TTS requests across the NLS and realtime engines.
+ */
+public class TtsHedgeConfig {
+    private static final double DEFAULT_PERCENTILE = 0.95;
+    private static final long DEFAULT_INITIAL_DELAY_MILLIS = 300;
+    private static final long DEFAULT_MIN_DELAY_MILLIS = 50;
+    private static final int DEFAULT_MIN_SAMPLES = 20;
+    private static final String DEFAULT_NLS_VOICE = "xiaoyun";
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long initialDelayMillis;
+    private final long minDelayMillis;
+    private final int minSamples;
+    private final String nlsVoice;
+    private final Map<String, String> nlsVoiceMap;
+
+    /**
+     * @param enabled            whether requests are hedged at all
+     * @param percentile         time-to-first-audio percentile of the primary engine after which the hedge is sent
+     * @param initialDelayMillis hedge delay used until an engine has enough samples
+     * @param minDelayMillis     lower bound of the hedge delay
+     * @param minSamples         samples needed before an engine's histogram drives routing
+     * @param nlsVoice           voice used by the NLS engine when the request names none
+     */
+    public TtsHedgeConfig(boolean enabled, double percentile, long initialDelayMillis, long minDelayMillis,
+                          int minSamples, String nlsVoice) {
+        this(enabled, percentile, initialDelayMillis, minDelayMillis, minSamples, nlsVoice, Map.of());
+    }
+
+    /**
+     * @param nlsVoiceMap requested (realtime) voice name to the NLS voice of the same speaker
+     */
+    public TtsHedgeConfig(boolean enabled, double percentile, long initialDelayMillis, long minDelayMillis,
+                          int minSamples, String nlsVoice, Map<String, String> nlsVoiceMap) {
+        this.enabled = enabled;
+        this.percentile = percentile > 0 && percentile < 1 ? percentile : DEFAULT_PERCENTILE;
+        this.initialDelayMillis = initialDelayMillis > 0 ? initialDelayMillis : DEFAULT_INITIAL_DELAY_MILLIS;
+        this.minDelayMillis = minDelayMillis >= 0 ? minDelayMillis : DEFAULT_MIN_DELAY_MILLIS;
+        this.minSamples = minSamples > 0 ? minSamples : DEFAULT_MIN_SAMPLES;
+        this.nlsVoice = nlsVoice != null && !nlsVoice.isBlank() ? nlsVoice : DEFAULT_NLS_VOICE;
+        this.nlsVoiceMap = nlsVoiceMap != null ? Map.copyOf(nlsVoiceMap) : Map.of();
+    }
+
+    public static TtsHedgeConfig fromEnvironment() {
+        return fromEnvironment(null);
+    }
+
+    /**
+     * Build config from Spring Environment (application.yml/application.properties), with env/system fallback.
+     */
+    public static TtsHedgeConfig fromEnvironment(Environment env) {
+        boolean enabled = Boolean.parseBoolean(optional(env, "TTS_HEDGE_ENABLED", "tts.hedge.enabled", "false"));
+        double percentile = Double.parseDouble(optional(env, "TTS_HEDGE_PERCENTILE", "tts.hedge.percentile", String.valueOf(DEFAULT_PERCENTILE)));
+        long initialDelay = Long.parseLong(optional(env, "TTS_HEDGE_INITIAL_DELAY_MS", "tts.hedge.initialDelayMillis", String.valueOf(DEFAULT_INITIAL_DELAY_MILLIS)));
+        long minDelay = Long.parseLong(optional(env, "TTS_HEDGE_MIN_DELAY_MS", "tts.hedge.minDelayMillis", String.valueOf(DEFAULT_MIN_DELAY_MILLIS)));
+        int minSamples = Integer.parseInt(optional(env, "TTS_HEDGE_MIN_SAMPLES", "tts.hedge.minSamples", String.valueOf(DEFAULT_MIN_SAMPLES)));
+        String nlsVoice = optional(env, "TTS_HEDGE_NLS_VOICE", "tts.hedge.nlsVoice", DEFAULT_NLS_VOICE);
+        String voiceMap = optional(env, "TTS_HEDGE_NLS_VOICE_MAP", "tts.hedge.nlsVoiceMap", "");
+        return new TtsHedgeConfig(enabled, percentile, initialDelay, minDelay, minSamples, nlsVoice,
+                parseVoiceMap(voiceMap));
+    }
+
+    /**
+     * Parse "realtimeVoice=nlsVoice,..." pairs.
+     */
+    private static Map<String, String> parseVoiceMap(String value) {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String pair : value.split(",")) {
+            String[] kv = pair.split("=", 2);
+            if (kv.length == 2 && !kv[0].isBlank() && !kv[1].isBlank()) {
+                map.put(kv[0].trim(), kv[1].trim());
+            } else if (!pair.isBlank()) {
+                throw new IllegalArgumentException("Invalid TTS_HEDGE_NLS_VOICE_MAP entry: " + pair);
+            }
+        }
+        return map;
+    }
+
+    private static String optional(Environment env, String envName, String propertyName, String defaultValue) {
+        String value = env != null ? env.getProperty(propertyName) : null;
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public String getNlsVoice() {
+        return nlsVoice;
+    }
+
+    public Map<String, String> getNlsVoiceMap() {
+        return nlsVoiceMap;
+    }
+}
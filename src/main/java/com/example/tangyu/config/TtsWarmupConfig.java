@@ -0,0 +1,93 @@
+package com.example.tangyu.config;
+
+import org.springframework.core.env.Environment;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration for synthesizing fixed phrases into the TTS cache at startup.
+ */
+public class TtsWarmupConfig {
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final long DEFAULT_DEADLINE_SECONDS = 30;
+
+    private final List<String> phrases;
+    private final Path file;
+    private final String voice;
+    private final int parallelism;
+    private final long deadlineSeconds;
+
+    /**
+     * @param phrases         phrases to warm
+     * @param file            phrase catalog, one phrase per line; null for none
+     * @param voice           voice to warm, null for the TTS default
+     * @param parallelism     number of concurrent syntheses
+     * @param deadlineSeconds the server reports ready after this long even if warming is unfinished
+     */
+    public TtsWarmupConfig(List<String> phrases, Path file, String voice, int parallelism, long deadlineSeconds) {
+        this.phrases = phrases != null ? List.copyOf(phrases) : List.of();
+        this.file = file;
+        this.voice = voice != null && !voice.isBlank() ? voice : null;
+        this.parallelism = parallelism > 0 ? parallelism : DEFAULT_PARALLELISM;
+        this.deadlineSeconds = deadlineSeconds >= 0 ? deadlineSeconds : DEFAULT_DEADLINE_SECONDS;
+    }
+
+    public static TtsWarmupConfig fromEnvironment() {
+        return fromEnvironment(null);
+    }
+
+    /**
+     * Build config from Spring Environment (application.yml/application.properties), with env/system fallback.
+     * Phrases given inline are separated by '|'.
+     */
+    public static TtsWarmupConfig fromEnvironment(Environment env) {
+        String phrases = optional(env, "DASHSCOPE_TTS_WARMUP_PHRASES", "dashscope.tts.warmup.phrases", "");
+        String file = optional(env, "DASHSCOPE_TTS_WARMUP_FILE", "dashscope.tts.warmup.file", null);
+        String voice = optional(env, "DASHSCOPE_TTS_WARMUP_VOICE", "dashscope.tts.warmup.voice", null);
+        int parallelism = Integer.parseInt(optional(env, "DASHSCOPE_TTS_WARMUP_PARALLELISM", "dashscope.tts.warmup.parallelism", String.valueOf(DEFAULT_PARALLELISM)));
+        long deadline = Long.parseLong(optional(env, "DASHSCOPE_TTS_WARMUP_DEADLINE_SECONDS", "dashscope.tts.warmup.deadlineSeconds", String.valueOf(DEFAULT_DEADLINE_SECONDS)));
+        List<String> list = new ArrayList<>();
+        for (String phrase : phrases.split("\\|")) {
+            if (!phrase.isBlank()) {
+                list.add(phrase.trim());
+            }
+        }
+        return new TtsWarmupConfig(list, file != null ? Path.of(file) : null, voice, parallelism, deadline);
+    }
+
+    private static String optional(Environment env, String envName, String propertyName, String defaultValue) {
+        String value = env != null ? env.getProperty(propertyName) : null;
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        if (value == null || value.isBlank()) {
+            value = System.getProperty(propertyName);
+        }
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        return value;
+    }
+
+    public List<String> getPhrases() {
+        return phrases;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public String getVoice() {
+        return voice;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getDeadlineSeconds() {
+        return deadlineSeconds;
+    }
+}
@@ -1,24 +1,30 @@
 package com.example.tangyu.demo;
 
 import com.alibaba.dashscope.audio.asr.recognition.Recognition;
+import com.example.tangyu.audio.PcmPlayer;
 import com.example.tangyu.config.CredentialConfig;
 import com.example.tangyu.config.DashScopeConfig;
 import com.example.tangyu.config.TtsConfig;
+import com.example.tangyu.metrics.TurnTrace;
 import com.example.tangyu.robot.RobotClient;
 import com.example.tangyu.robot.RobotConfig;
 import com.example.tangyu.server.PcmHttpServer;
+import com.example.tangyu.server.SpeechApiServer;
 import com.example.tangyu.speech.AsrClient;
 import com.example.tangyu.speech.AsrResultHandler;
+import com.example.tangyu.speech.FileTtsSink;
 import com.example.tangyu.speech.TokenClient;
 import com.example.tangyu.speech.TtsClient;
+import com.example.tangyu.speech.TtsOutputSink;
 import com.example.tangyu.speech.TtsRealtimeClient;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import javax.sound.sampled.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 
 /**
@@ -26,14 +32,17 @@ import java.util.concurrent.CountDownLatch;
  *
  * 使用示例：
  *  ASR（同步）：java -jar target/tangyu-aliyun-speech-0.1.0.jar asr sample.pcm pcm 16000
- *  ASR（流式）：java -jar target/tangyu-aliyun-speech-0.1.0.jar asr-stream pcm 16000
+ *  ASR（流式）：java -jar target/tangyu-aliyun-speech-0.1.0.jar asr-stream pcm 16000 [--play]
+ *  TTS（边合成边播放）：java -jar target/tangyu-aliyun-speech-0.1.0.jar tts-play "你好"
  *  TTS：java -jar target/tangyu-aliyun-speech-0.1.0.jar tts "你好" xiaoyun wav 16000 output.wav
  *  （ASR 依赖 DASHSCOPE_API_KEY；TTS 依赖 AccessKey + AppKey）
  */
 public class DemoMain {
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private static RobotClient robotClient;
-    private static final int[] FALLBACK_SAMPLE_RATES = new int[] {44100, 16000};
+    private static TtsRealtimeClient ttsRealtimeClient;
+    private static final Path PCM_OUTPUT_DIR = Path.of(System.getProperty("java.io.tmpdir"));
+    private static final String PLAY_FLAG = "--play";
+    private static final long PLAYBACK_TIMEOUT_MILLIS = 10 * 60 * 1000;
 
     public static void main(String[] args) {
         if (args.length == 0) {
@@ -46,6 +55,7 @@ public class DemoMain {
             case "asr-stream" -> runAsrStream(args);
             case "tts" -> runTts(args);
             case "tts-realtime" -> runTtsRealtime(args);
+            case "tts-play" -> runTtsPlay(args);
             case "serve" -> runServer(args);
             case "serve-http" -> runHttpServer(args);
             default -> {
@@ -66,25 +76,28 @@ public class DemoMain {
         int sampleRate = Integer.parseInt(args[3]);
         String token = args.length > 4 ? args[4] : getTokenWithDefault();
         AsrClient client = new AsrClient(dashScopeConfig);
-        String response = transcribeWithFallback(client, audio, format, sampleRate);
+        // WAV 按文件头的实际采样率转换，一次识别即可，无需换采样率重试
+        String text = client.transcribeWithHandler(audio, format, sampleRate, new AsrResultHandler());
         System.out.println("完整识别结果:");
-        System.out.println(response);
+        System.out.println(text);
 
-        String text = extractText(response);
         String robotReply = callRobot(text, token);
         if (robotReply != null) {
             System.out.println("大模型回复:");
             System.out.println(robotReply);
-            streamTtsReply(robotReply);
+            streamTtsReply(robotReply, null);
         } else {
             System.err.println("大模型调用失败或未返回内容");
         }
     }
 
-    private static void runAsrStream(String[] args) {
+    private static void runAsrStream(String[] rawArgs) {
+        List<String> argList = new ArrayList<>(Arrays.asList(rawArgs));
+        boolean play = argList.remove(PLAY_FLAG);
+        String[] args = argList.toArray(new String[0]);
         if (args.length < 3) {
-            System.err.println("Usage: asr-stream <format> <sampleRate> [token]");
-            System.err.println("Example: asr-stream pcm 16000 my-token");
+            System.err.println("Usage: asr-stream <format> <sampleRate> [token] [--play]");
+            System.err.println("Example: asr-stream pcm 16000 my-token --play");
             System.exit(1);
         }
         String format = args[1];
@@ -94,6 +107,9 @@ public class DemoMain {
         DashScopeConfig dashScopeConfig = DashScopeConfig.fromEnvironment();
         AsrClient client = new AsrClient(dashScopeConfig);
         AsrResultHandler handler = new AsrResultHandler();
+        // 录音结束后对全文的那一轮：从第一帧音频到回复播放完毕
+        TurnTrace trace = new TurnTrace("asr-stream");
+        handler.setOnPartialResult(text -> trace.mark(TurnTrace.Stage.FIRST_PARTIAL));
         handler.setOnFinalResult(text -> {
             System.out.println("最终识别文本: " + text);
             String reply = callRobot(text, token);
@@ -118,6 +134,7 @@ public class DemoMain {
             int bytesRead;
             while ((bytesRead = microphone.read(buffer, 0, buffer.length)) != -1) {
                 if (bytesRead > 0) {
+                    trace.mark(TurnTrace.Stage.FIRST_AUDIO);
                     client.sendAudioFrame(recognition, buffer, 0, bytesRead);
                 }
                 if (handler.isCompleted()) {
@@ -141,14 +158,21 @@ public class DemoMain {
             }
         }
 
+        trace.mark(TurnTrace.Stage.FINAL);
         System.out.println("\n最终识别文本: " + handler.getFullText());
-        String robotReply = callRobot(handler.getFullText(), token);
+        String robotReply = callRobot(handler.getFullText(), token, trace);
         if (robotReply != null) {
             System.out.println("大模型回复:");
             System.out.println(robotReply);
-            streamTtsReply(robotReply);
+            if (play) {
+                playTtsReply(robotReply, null, trace);
+            } else {
+                streamTtsReply(robotReply, trace);
+            }
+            trace.finish("ok");
         } else {
             System.err.println("大模型调用失败或未返回内容");
+            trace.finish("empty");
         }
     }
 
@@ -180,20 +204,35 @@ public class DemoMain {
         Path output = Path.of(args[2]);
         String voice = args.length > 3 ? args[3] : null;
         
-        TtsRealtimeClient client = new TtsRealtimeClient(ttsConfig);
-        client.synthesizeToFile(text, voice, output);
+        try (TtsRealtimeClient client = new TtsRealtimeClient(ttsConfig)) {
+            client.synthesizeToFile(text, voice, output);
+        }
         System.out.printf("Audio written to %s%n", output.toAbsolutePath());
     }
 
+    private static void runTtsPlay(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: tts-play <text> [voice]");
+            System.err.println("Example: tts-play \"你好，欢迎使用实时语音合成\"");
+            System.exit(1);
+        }
+        String voice = args.length > 2 ? args[2] : null;
+        try {
+            playTtsReply(args[1], voice, null);
+        } finally {
+            ttsRealtimeClient().close();
+        }
+    }
+
     private static void printHelp() {
         System.out.println("Usage:");
         System.out.println("  asr <audioPath> <format> <sampleRate> [token]");
         System.out.println("    同步识别音频文件");
         System.out.println("    Example: asr sample.pcm pcm 16000 my-token");
         System.out.println();
-        System.out.println("  asr-stream <format> <sampleRate> [token]");
-        System.out.println("    流式识别（从麦克风实时识别）");
-        System.out.println("    Example: asr-stream pcm 16000 my-token");
+        System.out.println("  asr-stream <format> <sampleRate> [token] [--play]");
+        System.out.println("    流式识别（从麦克风实时识别），--play 时大模型回复直接边合成边播放");
+        System.out.println("    Example: asr-stream pcm 16000 my-token --play");
         System.out.println();
         System.out.println("  tts <text> <voice> <format> <sampleRate> <outputFile>");
         System.out.println("    文本转语音（旧版NLS接口）");
@@ -203,12 +242,23 @@ public class DemoMain {
         System.out.println("    实时文本转语音（DashScope Qwen TTS Realtime）");
         System.out.println("    Example: tts-realtime \"你好\" output.pcm");
         System.out.println();
+        System.out.println("  tts-play <text> [voice]");
+        System.out.println("    实时文本转语音并直接播放（需 pcm 格式），结束后打印首包/出声延迟与欠载统计");
+        System.out.println("    Example: tts-play \"你好\"");
+        System.out.println();
         System.out.println("  serve [port]");
         System.out.println("    启动 HTTP 接口服务 (默认端口 8080)");
+        System.out.println("    SPEECH_SERVER_WORKERS / SPEECH_SERVER_QUEUE 设置工作线程数与排队上限 (默认 16 / 32)，");
+        System.out.println("    排队超过 SPEECH_SERVER_QUEUE_TIMEOUT_MS (默认 2000) 或已满时返回 503 + Retry-After；");
+        System.out.println("    SPEECH_SERVER_VIRTUAL_THREADS=true 在 Java 21+ 上使用虚拟线程");
+        System.out.println("    批量识别任务写入 ASR_JOBS_DIR (默认临时目录下 tangyu-asr-jobs)，重启后继续；");
+        System.out.println("    ASR_JOBS_CONCURRENCY 限制并发识别数 (默认 2)，ASR_JOBS_INPUT_DIR 允许清单引用服务器上的文件");
         System.out.println("    Example: serve 8080");
         System.out.println();
         System.out.println("  serve-http [port] [dir]");
         System.out.println("    启动极简 HTTP 文件服务，默认端口8080，目录为系统临时目录");
+        System.out.println("    支持 Range 与 ETag 条件请求；PCM_HTTP_WORKERS 设置工作线程数 (默认 8)");
+        System.out.println("    写入中的文件加 &follow=true 可边写边取");
         System.out.println("    Example: serve-http 8080 /tmp");
         System.out.println();
         System.out.println("ASR uses DashScope API Key (Fun-ASR):");
@@ -224,6 +274,22 @@ public class DemoMain {
         System.out.println("  DASHSCOPE_TTS_VOICE (optional, default zh-CN-XiaoyiNeural)");
         System.out.println("  DASHSCOPE_TTS_SAMPLE_RATE (optional, default 24000)");
         System.out.println("  DASHSCOPE_TTS_FORMAT (optional, default pcm)");
+        System.out.println("  DASHSCOPE_TTS_POOL_MAX_IDLE (optional, warm sessions kept per voice, default 4)");
+        System.out.println("  DASHSCOPE_TTS_POOL_IDLE_TIMEOUT (optional, seconds, default 60)");
+        System.out.println("  DASHSCOPE_TTS_PING_INTERVAL (optional, seconds, default 20)");
+        System.out.println("  DASHSCOPE_TTS_POOL_REUSE (optional, return used sessions to the pool, default false)");
+        System.out.println("  DASHSCOPE_TTS_SEGMENT_THRESHOLD (optional, chars above which text is synthesized in parallel segments, default 150)");
+        System.out.println("  DASHSCOPE_TTS_SEGMENT_PARALLELISM (optional, concurrent segments, 1 disables, default 3)");
+        System.out.println("  DASHSCOPE_TTS_CACHE_ENABLED (optional, default true)");
+        System.out.println("  DASHSCOPE_TTS_CACHE_HEAP_MB (optional, default 32)");
+        System.out.println("  DASHSCOPE_TTS_CACHE_DIR (optional, enables the on-disk cache tier)");
+        System.out.println("  DASHSCOPE_TTS_CACHE_DISK_MB (optional, default 512)");
+        System.out.println("  TTS_HEDGE_ENABLED (optional, server: hedge streaming TTS across realtime and NLS, default false)");
+        System.out.println("  TTS_HEDGE_PERCENTILE (optional, first-audio percentile that triggers the hedge, default 0.95)");
+        System.out.println("  TTS_HEDGE_NLS_VOICE (optional, NLS voice used when hedging, default xiaoyun)");
+        System.out.println("  TTS_HEDGE_NLS_VOICE_MAP (optional, realtime=NLS voice pairs for requested voices, e.g. Cherry=xiaoyun)");
+        System.out.println("  TTS_PLAY_PREBUFFER_MS (optional, tts-play / --play prebuffer, default 60)");
+        System.out.println("  TTS_PLAY_MAX_PREBUFFER_MS (optional, adaptive prebuffer ceiling after underruns, default 500)");
         System.out.println();
         System.out.println("TTS (旧版) uses AccessKey/AppKey + temporary token:");
         System.out.println("  ALIBABA_CLOUD_ACCESS_KEY_ID (required)");
@@ -235,6 +301,15 @@ public class DemoMain {
         System.out.println("  ROBOT_PERSONA_ID");
         System.out.println("  ROBOT_SCENE");
         System.out.println("  ROBOT_INPUT_TYPE");
+        System.out.println("  ROBOT_PERSISTENT (default true)");
+        System.out.println("  ROBOT_IDLE_TIMEOUT_SECONDS (default 120)");
+        System.out.println("  ROBOT_MAX_CONNECTIONS_PER_TOKEN (default 4)");
+        System.out.println("  ROBOT_MAX_ATTEMPTS (default 3)");
+        System.out.println("  ROBOT_ATTEMPT_TIMEOUT_SECONDS (default 120)");
+        System.out.println("  ROBOT_DEADLINE_SECONDS (default 150)");
+        System.out.println("  ROBOT_RETRY_BACKOFF_MS / ROBOT_RETRY_MAX_BACKOFF_MS (default 200 / 5000)");
+        System.out.println("  ROBOT_BREAKER_FAILURES (default 5)");
+        System.out.println("  ROBOT_BREAKER_OPEN_SECONDS (default 30)");
         System.out.println("  ROBOT_TOKEN (可作为 token 默认值)");
     }
 
@@ -247,7 +322,9 @@ public class DemoMain {
         Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
         System.out.printf("Speech API server is running on port %d%n", port);
         System.out.println("Health: GET  /health");
+        System.out.println("Metrics:GET  /metrics");
         System.out.println("ASR:    POST /api/asr?format=pcm&sampleRate=16000 (body: audio bytes)");
+        System.out.println("Jobs:   POST /api/asr/jobs (multipart 音频文件或 JSON 清单), GET /api/asr/jobs/{id}[/results]");
         System.out.println("TTS:    POST /api/tts (body: {\"text\":\"你好\",\"voice\":\"xiaoyun\",\"format\":\"wav\",\"sampleRate\":16000})");
         try {
             new CountDownLatch(1).await();
@@ -256,44 +333,6 @@ public class DemoMain {
         }
     }
 
-    private static String extractText(String response) {
-        try {
-            JsonNode node = OBJECT_MAPPER.readTree(response);
-            if (node.hasNonNull("text")) {
-                return node.get("text").asText();
-            }
-        } catch (Exception ignore) {
-        }
-        return response;
-    }
-
-    /**
-     * 同步识别，若主采样率无结果则尝试备用采样率（44100、16000）。
-     */
-    private static String transcribeWithFallback(AsrClient client, Path audio, String format, int primaryRate) {
-        String response = client.transcribe(audio, format, primaryRate);
-        String text = extractText(response);
-        if (text != null && !text.isBlank()) {
-            return response;
-        }
-        for (int rate : FALLBACK_SAMPLE_RATES) {
-            if (rate == primaryRate) {
-                continue;
-            }
-            try {
-                String resp = client.transcribe(audio, format, rate);
-                String txt = extractText(resp);
-                if (txt != null && !txt.isBlank()) {
-                    System.out.printf("使用备用采样率 %d 取得结果%n", rate);
-                    return resp;
-                }
-            } catch (Exception e) {
-                System.err.printf("备用采样率 %d 识别失败: %s%n", rate, e.getMessage());
-            }
-        }
-        return response;
-    }
-
     private static String getTokenFromEnv() {
         String token = System.getenv("ROBOT_TOKEN");
         if (token == null || token.isBlank()) {
@@ -321,7 +360,21 @@ public class DemoMain {
         return robotClient;
     }
 
+    /**
+     * 复用同一个实时 TTS 客户端，使多轮回复共享已建立的会话连接。
+     */
+    private static synchronized TtsRealtimeClient ttsRealtimeClient() {
+        if (ttsRealtimeClient == null) {
+            ttsRealtimeClient = new TtsRealtimeClient(TtsConfig.fromEnvironment());
+        }
+        return ttsRealtimeClient;
+    }
+
     private static String callRobot(String text, String token) {
+        return callRobot(text, token, null);
+    }
+
+    private static String callRobot(String text, String token, TurnTrace trace) {
         if (text == null || text.isBlank()) {
             return null;
         }
@@ -329,19 +382,28 @@ public class DemoMain {
             System.out.println("未提供 token，跳过大模型调用");
             return null;
         }
-        return robotClient().sendAndReceive(text, token);
+        return robotClient().sendAndReceive(text, token, trace);
     }
 
     /**
      * 将大模型回复通过实时 TTS 合成为临时 pcm 文件。
+     *
+     * @param trace 所属对话轮次，可为 null
      */
-    private static void streamTtsReply(String reply) {
+    private static void streamTtsReply(String reply, TurnTrace trace) {
         try {
-            TtsRealtimeClient client = new TtsRealtimeClient(TtsConfig.fromEnvironment());
+            TtsRealtimeClient client = ttsRealtimeClient();
             Files.createDirectories(PCM_OUTPUT_DIR);
             String fileName = "reply-" + System.currentTimeMillis() + ".pcm";
             Path out = PCM_OUTPUT_DIR.resolve(fileName);
-            client.synthesizeToFile(reply, out);
+            System.out.printf("合成中，可通过 serve-http 边写边取: GET /pcm?name=%s&follow=true%n", fileName);
+            if (trace != null) {
+                TtsConfig ttsConfig = TtsConfig.fromEnvironment();
+                FileTtsSink sink = FileTtsSink.open(out, ttsConfig.getFormat(), ttsConfig.getSampleRate());
+                client.synthesize(reply, null, TtsOutputSink.traced(sink, trace));
+            } else {
+                client.synthesizeToFile(reply, out);
+            }
             System.out.printf("大模型回复已转语音（pcm）：%s%n", out.toAbsolutePath());
             System.out.println("前端可从该目录读取文件，或通过自定义文件服务对外提供访问");
         } catch (Exception e) {
@@ -349,12 +411,49 @@ public class DemoMain {
         }
     }
 
+    /**
+     * 将实时 TTS 的增量音频经抖动缓冲直接送入声卡播放，首包攒够预缓冲即出声。
+     */
+    private static void playTtsReply(String text, String voice, TurnTrace trace) {
+        TtsConfig ttsConfig = TtsConfig.fromEnvironment();
+        if (!"pcm".equalsIgnoreCase(ttsConfig.getFormat())) {
+            System.err.println("播放需要 pcm 格式，当前 DASHSCOPE_TTS_FORMAT=" + ttsConfig.getFormat());
+            return;
+        }
+        int prebuffer = Integer.parseInt(System.getenv().getOrDefault("TTS_PLAY_PREBUFFER_MS", "60"));
+        int maxPrebuffer = Integer.parseInt(System.getenv().getOrDefault("TTS_PLAY_MAX_PREBUFFER_MS", "500"));
+        try (PcmPlayer player = new PcmPlayer(ttsConfig.getSampleRate(), prebuffer, maxPrebuffer)) {
+            player.start();
+            TtsOutputSink sink = new TtsOutputSink() {
+                @Override
+                public void write(byte[] audioData) {
+                    player.write(audioData);
+                }
+
+                @Override
+                public void close() {
+                    player.end();
+                }
+            };
+            ttsRealtimeClient().synthesize(text, voice, trace != null ? TtsOutputSink.traced(sink, trace) : sink);
+            if (!player.awaitCompletion(PLAYBACK_TIMEOUT_MILLIS)) {
+                System.err.println("播放超时");
+            }
+            System.out.println("播放统计: " + player.getStats());
+        } catch (LineUnavailableException e) {
+            System.err.println("无法打开音频输出设备: " + e.getMessage());
+        } catch (Exception e) {
+            System.err.println("TTS 播放失败: " + e.getMessage());
+        }
+    }
+
     private static void runHttpServer(String[] args) {
         int port = args.length > 1
                 ? Integer.parseInt(args[1])
                 : 8080;
         Path baseDir = args.length > 2 ? Path.of(args[2]) : Path.of(System.getProperty("java.io.tmpdir"));
-        PcmHttpServer server = new PcmHttpServer(port, baseDir);
+        int workers = Integer.parseInt(System.getenv().getOrDefault("PCM_HTTP_WORKERS", "8"));
+        PcmHttpServer server = new PcmHttpServer(port, baseDir, workers);
         server.start();
         System.out.printf("HTTP 文件服务已启动: GET http://localhost:%d/pcm?name=xxx  (目录=%s)%n", port, baseDir.toAbsolutePath());
         try {
@@ -0,0 +1,34 @@
+package com.example.tangyu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one audio frame handed to the recognition SDK; the event duration is the send call itself.
+ * Disabled unless turned on by a recording configuration such as {@code jfr/tangyu-speech.jfc}.
+ */
+@Name("com.example.tangyu.AsrFrameSent")
+@Label("ASR Frame Sent")
+@Category({"Tangyu Speech", "ASR"})
+@Description("Audio frame sent to streaming recognition")
+@Enabled(false)
+@StackTrace(false)
+public final class AsrFrameSentEvent extends jdk.jfr.Event {
+    @Label("Session")
+    public String sessionId;
+
+    @Label("Bytes")
+    @DataAmount
+    public int bytes;
+
+    @Label("Queue Delay")
+    @Description("Time from the audio reaching the caller until it was sent, e.g. while buffered for keyword spotting")
+    @Timespan
+    public long queueDelay;
+}
@@ -0,0 +1,34 @@
+package com.example.tangyu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for a recognition result delivered by the SDK; the event duration covers text extraction,
+ * de-duplication and the result callbacks.
+ */
+@Name("com.example.tangyu.AsrResult")
+@Label("ASR Result")
+@Category({"Tangyu Speech", "ASR"})
+@Description("Partial or final recognition result handled")
+@Enabled(false)
+@StackTrace(false)
+public final class AsrResultEvent extends jdk.jfr.Event {
+    @Label("Session")
+    public String sessionId;
+
+    @Label("Final")
+    public boolean finalResult;
+
+    @Label("Text Length")
+    public int textLength;
+
+    @Label("Dedup Time")
+    @Timespan
+    public long dedupTime;
+}
@@ -0,0 +1,29 @@
+package com.example.tangyu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one robot turn, from the request to the complete reply with retries included.
+ */
+@Name("com.example.tangyu.RobotCall")
+@Label("Robot Call")
+@Category({"Tangyu Speech", "Robot"})
+@Description("Robot request until its reply completed, failed or was cancelled")
+@Enabled(false)
+@StackTrace(false)
+public final class RobotCallEvent extends jdk.jfr.Event {
+    @Label("Trace Id")
+    @Description("W3C trace id of the turn, when traced")
+    public String traceId;
+
+    @Label("Attempts")
+    public int attempts;
+
+    @Label("Outcome")
+    public String outcome;
+}
@@ -0,0 +1,38 @@
+package com.example.tangyu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event marking a speech session changing state, so other events in a recording can be attributed to a session.
+ */
+@Name("com.example.tangyu.SessionLifecycle")
+@Label("Session Lifecycle")
+@Category({"Tangyu Speech"})
+@Description("Speech session opened, ended or closed")
+@Enabled(false)
+@StackTrace(false)
+public final class SessionLifecycleEvent extends jdk.jfr.Event {
+    @Label("Session")
+    public String sessionId;
+
+    @Label("Phase")
+    @Description("e.g. start, end, abort, stop for ASR sessions; open, close for recognitions")
+    public String phase;
+
+    /**
+     * Record an instant transition.
+     */
+    public static void emit(String sessionId, String phase) {
+        SessionLifecycleEvent event = new SessionLifecycleEvent();
+        if (event.isEnabled()) {
+            event.sessionId = sessionId;
+            event.phase = phase;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.tangyu.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import io.prometheus.client.exporter.common.TextFormat;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Process-wide metrics for the ASR, TTS and robot stages, kept in one Prometheus registry that both
+ * {@code SpeechApiServer} and the Spring app expose at {@code /metrics}.
+ *
+ * Latencies are timers with client-side percentiles (p50/p90/p95/p99) plus percentile histogram buckets, so they can
+ * be read directly or aggregated across instances with {@code histogram_quantile}. Components that already keep a
+ * {@code Stats} snapshot are bound with {@link #counter} and {@link #gauge} instead of counting twice; those meters
+ * hold their source weakly.
+ */
+public final class SpeechMetrics {
+    /** Content type of {@link #scrape()} */
+    public static final String CONTENT_TYPE = TextFormat.CONTENT_TYPE_004;
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.95, 0.99};
+    private static final PrometheusMeterRegistry REGISTRY = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private static final AtomicInteger ACTIVE_ASR_SESSIONS = REGISTRY.gauge("speech.asr.sessions.active",
+            new AtomicInteger());
+    private static final DistributionSummary ASR_FRAMES = DistributionSummary.builder("speech.asr.frames")
+            .description("Audio frames sent to recognition; count is frames, sum is bytes")
+            .baseUnit("bytes")
+            .publishPercentiles(PERCENTILES)
+            .register(REGISTRY);
+    private static final Timer ASR_FIRST_PARTIAL = latencyTimer("speech.asr.first.partial.latency",
+            "First audio frame to first recognition result");
+    private static final Timer ASR_FINAL = latencyTimer("speech.asr.final.latency",
+            "Last audio frame before a sentence to its final result");
+
+    private SpeechMetrics() {
+    }
+
+    public static MeterRegistry registry() {
+        return REGISTRY;
+    }
+
+    /**
+     * Everything registered so far, in Prometheus text format.
+     */
+    public static String scrape() {
+        return REGISTRY.scrape();
+    }
+
+    public static void asrSessionStarted() {
+        ACTIVE_ASR_SESSIONS.incrementAndGet();
+    }
+
+    public static void asrSessionEnded() {
+        ACTIVE_ASR_SESSIONS.decrementAndGet();
+    }
+
+    public static void asrFrameSent(int bytes) {
+        ASR_FRAMES.record(bytes);
+    }
+
+    public static void asrFirstPartial(long nanos) {
+        ASR_FIRST_PARTIAL.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public static void asrFinal(long nanos) {
+        ASR_FINAL.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param outcome "success", "failure" or "cancelled"
+     */
+    public static void robotReply(long nanos, String outcome) {
+        Timer.builder("speech.robot.latency")
+                .description("Robot turn from request to complete reply, retries included")
+                .tag("outcome", outcome)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(REGISTRY)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param engine "realtime" or "nls"
+     * @param source "service" for a synthesis, "cache" for a replay
+     */
+    public static void ttsFirstAudio(String engine, String source, long nanos) {
+        Timer.builder("speech.tts.first.audio")
+                .description("Synthesis start to first audio chunk")
+                .tag("engine", engine)
+                .tag("source", source)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(REGISTRY)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Record one segment of a conversational turn, see {@link TurnTrace.Segment}.
+     */
+    public static void turnSegment(String segment, long nanos) {
+        Timer.builder("speech.turn.stage")
+                .description("Time spent in each stage of a conversational turn")
+                .tag("segment", segment)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(60))
+                .register(REGISTRY)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Count a failed call to an upstream service, tagged with the exception type.
+     *
+     * @param upstream "asr", "tts", "tts_nls" or "robot"
+     */
+    public static void upstreamError(String upstream, Throwable error) {
+        Counter.builder("speech.upstream.errors")
+                .description("Failed calls to upstream services")
+                .tag("upstream", upstream)
+                .tag("type", error != null ? error.getClass().getSimpleName() : "unknown")
+                .register(REGISTRY)
+                .increment();
+    }
+
+    /**
+     * Expose a monotonically increasing value kept by {@code source}.
+     *
+     * @param tags alternating tag keys and values
+     */
+    public static <T> void counter(String name, String description, T source, ToDoubleFunction<T> value,
+                                   String... tags) {
+        FunctionCounter.builder(name, source, value)
+                .description(description)
+                .tags(tags)
+                .register(REGISTRY);
+    }
+
+    /**
+     * Expose a current value kept by {@code source}.
+     *
+     * @param tags alternating tag keys and values
+     */
+    public static <T> void gauge(String name, String description, T source, ToDoubleFunction<T> value,
+                                 String... tags) {
+        Gauge.builder(name, source, value)
+                .description(description)
+                .tags(tags)
+                .register(REGISTRY);
+    }
+
+    private static Timer latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(REGISTRY);
+    }
+}
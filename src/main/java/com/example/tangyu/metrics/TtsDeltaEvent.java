@@ -0,0 +1,33 @@
+package com.example.tangyu.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one synthesized audio delta; the event duration is the time the listener took to consume it.
+ */
+@Name("com.example.tangyu.TtsDelta")
+@Label("TTS Delta")
+@Category({"Tangyu Speech", "TTS"})
+@Description("Audio delta received from realtime synthesis")
+@Enabled(false)
+@StackTrace(false)
+public final class TtsDeltaEvent extends jdk.jfr.Event {
+    @Label("Session")
+    public String sessionId;
+
+    @Label("Bytes")
+    @DataAmount
+    public int bytes;
+
+    @Label("Decode Time")
+    @Description("Parsing the server event and decoding its base64 audio")
+    @Timespan
+    public long decodeTime;
+}
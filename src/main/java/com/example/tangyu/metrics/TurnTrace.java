@@ -0,0 +1,206 @@
+package com.example.tangyu.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Timeline of one conversational turn: user audio in, transcript, robot reply, synthesized audio out.
+ *
+ * Each component stamps the {@link Stage} it owns with {@link #mark(Stage)}; {@link #finish(String)} then writes one
+ * {@code key=value} log line with the time spent in each {@link Segment} and records the segments as
+ * {@code speech.turn.stage} timers. Stamps may come from any thread and missing ones simply leave their segments out,
+ * so a turn answered from cache or without TTS still reports what it has.
+ *
+ * The trace also carries a W3C trace context ({@link #traceparent()}) so robot backend spans join the same trace.
+ */
+public final class TurnTrace {
+    private static final Logger LOG = LoggerFactory.getLogger(TurnTrace.class);
+    private static final Pattern TRACEPARENT = Pattern.compile("00-([0-9a-f]{32})-([0-9a-f]{16})-([0-9a-f]{2})");
+    private static final String INVALID_TRACE_ID = "0".repeat(32);
+    private static final String INVALID_SPAN_ID = "0".repeat(16);
+
+    public enum Stage {
+        FIRST_AUDIO,
+        FIRST_PARTIAL,
+        FINAL,
+        ROBOT_START,
+        ROBOT_FIRST_CHUNK,
+        ROBOT_DONE,
+        TTS_FIRST_AUDIO,
+        TTS_DONE
+    }
+
+    /**
+     * Intervals reported per turn. With speculative robot calls ROBOT_START can precede FINAL; robot_wait is the part
+     * of the robot call the user actually waited for.
+     */
+    public enum Segment {
+        ASR_FIRST_PARTIAL(Stage.FIRST_AUDIO, Stage.FIRST_PARTIAL),
+        ASR_FINAL(Stage.FIRST_AUDIO, Stage.FINAL),
+        ROBOT_FIRST_CHUNK(Stage.ROBOT_START, Stage.ROBOT_FIRST_CHUNK),
+        ROBOT_CALL(Stage.ROBOT_START, Stage.ROBOT_DONE),
+        ROBOT_WAIT(Stage.FINAL, Stage.ROBOT_DONE),
+        TTS_FIRST_AUDIO(Stage.ROBOT_DONE, Stage.TTS_FIRST_AUDIO),
+        TTS_STREAM(Stage.TTS_FIRST_AUDIO, Stage.TTS_DONE);
+
+        private final Stage from;
+        private final Stage to;
+
+        Segment(Stage from, Stage to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public String tag() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String sessionId;
+    private final String traceId;
+    private final String spanId;
+    private final String flags;
+    private final AtomicLongArray stamps = new AtomicLongArray(Stage.values().length);
+    private final Map<String, String> notes = new ConcurrentSkipListMap<>();
+    private final AtomicBoolean finished = new AtomicBoolean(false);
+
+    public TurnTrace(String sessionId) {
+        this(sessionId, null);
+    }
+
+    /**
+     * @param parentTraceparent incoming W3C traceparent to continue, or null to start a new trace
+     */
+    public TurnTrace(String sessionId, String parentTraceparent) {
+        this.sessionId = sessionId;
+        Matcher parent = parentTraceparent != null ? TRACEPARENT.matcher(parentTraceparent.trim()) : null;
+        if (parent != null && parent.matches() && !parent.group(1).equals(INVALID_TRACE_ID)
+                && !parent.group(2).equals(INVALID_SPAN_ID)) {
+            this.traceId = parent.group(1);
+            this.flags = parent.group(3);
+        } else {
+            this.traceId = randomHex(2);
+            this.flags = "01";
+        }
+        this.spanId = randomHex(1);
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /**
+     * W3C traceparent naming this turn as the parent span.
+     */
+    public String traceparent() {
+        return "00-" + traceId + "-" + spanId + "-" + flags;
+    }
+
+    /**
+     * Stamp a stage now; the first stamp wins.
+     */
+    public void mark(Stage stage) {
+        stamps.compareAndSet(stage.ordinal(), 0, System.nanoTime());
+    }
+
+    /**
+     * Clear stamps so a later attempt can set them again, e.g. when a speculative robot call is replaced.
+     */
+    public void reset(Stage... stages) {
+        for (Stage stage : stages) {
+            stamps.set(stage.ordinal(), 0);
+        }
+    }
+
+    public boolean has(Stage stage) {
+        return stamps.get(stage.ordinal()) != 0;
+    }
+
+    /**
+     * Attach a detail to the log line, e.g. how the robot reply was obtained.
+     */
+    public void note(String key, String value) {
+        if (value != null) {
+            notes.put(key, value);
+        }
+    }
+
+    /**
+     * @return time spent in the segment, never negative, or -1 when either end was not stamped
+     */
+    public long nanos(Segment segment) {
+        long from = stamps.get(segment.from.ordinal());
+        long to = stamps.get(segment.to.ordinal());
+        if (from == 0 || to == 0) {
+            return -1;
+        }
+        return Math.max(0, to - from);
+    }
+
+    /**
+     * Log the breakdown and record segment timers, plus {@code response}: final transcript to the first audio, or to
+     * the robot reply when nothing was synthesized. Only the first call has an effect.
+     *
+     * @param outcome e.g. "ok", "empty", "failed", "cancelled"
+     */
+    public void finish(String outcome) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("turn trace_id=").append(traceId)
+                .append(" session=").append(sessionId)
+                .append(" outcome=").append(outcome);
+        for (Segment segment : Segment.values()) {
+            long nanos = nanos(segment);
+            if (nanos >= 0) {
+                SpeechMetrics.turnSegment(segment.tag(), nanos);
+                line.append(' ').append(segment.tag()).append("_ms=").append(TimeUnit.NANOSECONDS.toMillis(nanos));
+            }
+        }
+        long response = responseNanos();
+        if (response >= 0) {
+            SpeechMetrics.turnSegment("response", response);
+            line.append(" response_ms=").append(TimeUnit.NANOSECONDS.toMillis(response));
+        }
+        notes.forEach((key, value) -> line.append(' ').append(key).append('=').append(value));
+        LOG.info(line.toString());
+    }
+
+    /**
+     * Final transcript to the first thing the user gets back: synthesized audio, or the reply text without TTS.
+     */
+    private long responseNanos() {
+        long finalNanos = stamps.get(Stage.FINAL.ordinal());
+        long end = stamps.get(Stage.TTS_FIRST_AUDIO.ordinal());
+        if (end == 0) {
+            end = stamps.get(Stage.ROBOT_DONE.ordinal());
+        }
+        if (finalNanos == 0 || end == 0) {
+            return -1;
+        }
+        return Math.max(0, end - finalNanos);
+    }
+
+    private static String randomHex(int longs) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder hex = new StringBuilder(longs * 16);
+        for (int i = 0; i < longs; i++) {
+            long value;
+            do {
+                value = random.nextLong();
+            } while (value == 0);
+            hex.append(String.format("%016x", value));
+        }
+        return hex.toString();
+    }
+}
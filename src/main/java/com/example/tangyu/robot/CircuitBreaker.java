@@ -0,0 +1,100 @@
+package com.example.tangyu.robot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 机器人服务的熔断器。
+ *
+ * 连续失败达到阈值后打开，打开期间直接拒绝调用；冷却时间过后进入半开状态，只放行一个探测请求，
+ * 探测成功则关闭，失败则重新打开。
+ */
+public final class CircuitBreaker {
+    private static final Logger LOG = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+    private long openCount;
+
+    /**
+     * @param failureThreshold 连续失败多少次后打开
+     * @param openMillis       打开后多久进入半开状态
+     */
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        if (failureThreshold < 1 || openMillis <= 0) {
+            throw new IllegalArgumentException("Failure threshold and open duration must be positive");
+        }
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1_000_000L;
+    }
+
+    /**
+     * 申请一次调用。返回 true 时调用方必须随后调用 {@link #onSuccess()}、{@link #onFailure()}
+     * 或 {@link #release()} 之一。
+     *
+     * @return false 表示熔断中，应直接失败
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAtNanos < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            LOG.info("Robot circuit half-open, probing backend");
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            LOG.info("Robot circuit closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            LOG.warn("Robot circuit opened after {} consecutive failures", consecutiveFailures);
+            state = State.OPEN;
+            openedAtNanos = System.nanoTime();
+            openCount++;
+        }
+        probeInFlight = false;
+    }
+
+    /**
+     * 调用被取消，不计成功也不计失败。
+     */
+    public synchronized void release() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAtNanos >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * 累计打开次数。
+     */
+    public synchronized long getOpenCount() {
+        return openCount;
+    }
+}
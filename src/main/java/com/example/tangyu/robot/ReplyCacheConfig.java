@@ -0,0 +1,145 @@
+package com.example.tangyu.robot;
+
+import org.springframework.core.env.Environment;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 机器人回复缓存配置。
+ *
+ * 只在 scenes 明确列出的场景启用，未配置场景时不缓存任何内容。条目默认按用户 token 隔离：同一句“好的”
+ * 在不同用户的对话里回复可能完全不同，跨用户共享会把一个人的回复发给另一个人。只有 sharedPhrases
+ * 列出的固定问答（归一化后整句匹配）才跨用户共享。回复随时间变化的问题（如“几点了”）依靠 TTL 控制陈旧程度。
+ */
+public class ReplyCacheConfig {
+    private static final long DEFAULT_TTL_SECONDS = 300;
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+    private static final int DEFAULT_MAX_TEXT_LENGTH = 32;
+
+    private final boolean enabled;
+    private final long ttlSeconds;
+    private final int maxEntries;
+    private final int maxTextLength;
+    private final Set<String> scenes;
+    private final Set<String> excludedScenes;
+    private final Set<String> sharedPhrases;
+
+    /**
+     * @param enabled        是否开启
+     * @param ttlSeconds     条目有效期
+     * @param maxEntries     最多缓存条目数，超出按最久未用淘汰
+     * @param maxTextLength  归一化后超过此长度的问题不缓存
+     * @param scenes         允许缓存的场景，空表示不缓存
+     * @param excludedScenes 不缓存的场景，优先于 scenes
+     */
+    public ReplyCacheConfig(boolean enabled, long ttlSeconds, int maxEntries, int maxTextLength,
+                            Set<String> scenes, Set<String> excludedScenes) {
+        this(enabled, ttlSeconds, maxEntries, maxTextLength, scenes, excludedScenes, Set.of());
+    }
+
+    /**
+     * @param sharedPhrases 跨用户共享回复的固定问题，按归一化后的文本匹配；其余问题按用户分别缓存
+     */
+    public ReplyCacheConfig(boolean enabled, long ttlSeconds, int maxEntries, int maxTextLength,
+                            Set<String> scenes, Set<String> excludedScenes, Set<String> sharedPhrases) {
+        this.enabled = enabled;
+        this.ttlSeconds = ttlSeconds > 0 ? ttlSeconds : DEFAULT_TTL_SECONDS;
+        this.maxEntries = maxEntries > 0 ? maxEntries : DEFAULT_MAX_ENTRIES;
+        this.maxTextLength = maxTextLength > 0 ? maxTextLength : DEFAULT_MAX_TEXT_LENGTH;
+        this.scenes = scenes != null ? Set.copyOf(scenes) : Set.of();
+        this.excludedScenes = excludedScenes != null ? Set.copyOf(excludedScenes) : Set.of();
+        this.sharedPhrases = sharedPhrases != null
+                ? sharedPhrases.stream()
+                        .map(TranscriptNormalizer::normalize)
+                        .filter(s -> !s.isEmpty())
+                        .collect(Collectors.toUnmodifiableSet())
+                : Set.of();
+    }
+
+    public static ReplyCacheConfig fromEnvironment(Environment env) {
+        return new ReplyCacheConfig(
+                env.getProperty("robot.replyCache.enabled", Boolean.class, false),
+                env.getProperty("robot.replyCache.ttlSeconds", Long.class, DEFAULT_TTL_SECONDS),
+                env.getProperty("robot.replyCache.maxEntries", Integer.class, DEFAULT_MAX_ENTRIES),
+                env.getProperty("robot.replyCache.maxTextLength", Integer.class, DEFAULT_MAX_TEXT_LENGTH),
+                parseScenes(env.getProperty("robot.replyCache.scenes", "")),
+                parseScenes(env.getProperty("robot.replyCache.excludeScenes", "")),
+                parseScenes(env.getProperty("robot.replyCache.sharedPhrases", "")));
+    }
+
+    /**
+     * 从系统属性/环境变量构建配置，供 CLI 使用。
+     */
+    public static ReplyCacheConfig fromSystemEnv() {
+        return new ReplyCacheConfig(
+                Boolean.parseBoolean(setting("robot.replyCache.enabled", "ROBOT_REPLY_CACHE_ENABLED", "false")),
+                Long.parseLong(setting("robot.replyCache.ttlSeconds", "ROBOT_REPLY_CACHE_TTL_SECONDS",
+                        String.valueOf(DEFAULT_TTL_SECONDS))),
+                Integer.parseInt(setting("robot.replyCache.maxEntries", "ROBOT_REPLY_CACHE_MAX_ENTRIES",
+                        String.valueOf(DEFAULT_MAX_ENTRIES))),
+                Integer.parseInt(setting("robot.replyCache.maxTextLength", "ROBOT_REPLY_CACHE_MAX_TEXT",
+                        String.valueOf(DEFAULT_MAX_TEXT_LENGTH))),
+                parseScenes(setting("robot.replyCache.scenes", "ROBOT_REPLY_CACHE_SCENES", "")),
+                parseScenes(setting("robot.replyCache.excludeScenes", "ROBOT_REPLY_CACHE_EXCLUDE_SCENES", "")),
+                parseScenes(setting("robot.replyCache.sharedPhrases", "ROBOT_REPLY_CACHE_SHARED_PHRASES", "")));
+    }
+
+    private static Set<String> parseScenes(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    private static String setting(String property, String envName, String defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    /**
+     * 该场景是否允许缓存；只有 scenes 列出且未被排除的场景允许。
+     */
+    public boolean allowsScene(String scene) {
+        return enabled && scenes.contains(scene) && !excludedScenes.contains(scene);
+    }
+
+    /**
+     * 归一化后的文本是否为跨用户共享的固定问题。
+     */
+    public boolean isSharedPhrase(String normalized) {
+        return sharedPhrases.contains(normalized);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public int getMaxTextLength() {
+        return maxTextLength;
+    }
+
+    public Set<String> getScenes() {
+        return scenes;
+    }
+
+    public Set<String> getExcludedScenes() {
+        return excludedScenes;
+    }
+
+    public Set<String> getSharedPhrases() {
+        return sharedPhrases;
+    }
+}
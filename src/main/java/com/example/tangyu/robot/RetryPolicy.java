@@ -0,0 +1,75 @@
+package com.example.tangyu.robot;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 机器人调用的重试策略：单次超时、总截止时间，以及带抖动的指数退避。
+ *
+ * 第 n 次失败后等待 min(maxBackoff, initialBackoff * 2^(n-1)) 的 50%~100%（随机），
+ * 避免大量调用方在后端恢复瞬间同时重试。
+ */
+public final class RetryPolicy {
+    private final int maxAttempts;
+    private final long attemptTimeoutMillis;
+    private final long deadlineMillis;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+
+    /**
+     * @param maxAttempts          最多尝试次数（含首次）
+     * @param attemptTimeoutMillis 单次尝试等待回复的超时
+     * @param deadlineMillis       整轮调用（含重试与退避）的截止时间
+     * @param initialBackoffMillis 首次重试前的退避
+     * @param maxBackoffMillis     退避上限
+     */
+    public RetryPolicy(int maxAttempts, long attemptTimeoutMillis, long deadlineMillis,
+                       long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1 || attemptTimeoutMillis <= 0 || deadlineMillis <= 0) {
+            throw new IllegalArgumentException("Attempts, attempt timeout and deadline must be positive");
+        }
+        this.maxAttempts = maxAttempts;
+        this.attemptTimeoutMillis = attemptTimeoutMillis;
+        this.deadlineMillis = deadlineMillis;
+        this.initialBackoffMillis = Math.max(0, initialBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.initialBackoffMillis, maxBackoffMillis);
+    }
+
+    /**
+     * 默认：最多 3 次、单次 120 秒、总计 150 秒、退避 200ms 起最多 5 秒。
+     */
+    public static RetryPolicy defaults() {
+        return new RetryPolicy(3, 120_000, 150_000, 200, 5_000);
+    }
+
+    /**
+     * 第 attempt 次尝试失败后的退避时长（已加抖动）。
+     */
+    public long backoffMillis(int attempt) {
+        if (initialBackoffMillis == 0) {
+            return 0;
+        }
+        long base = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long half = base / 2;
+        return half + ThreadLocalRandom.current().nextLong(base - half + 1);
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getAttemptTimeoutMillis() {
+        return attemptTimeoutMillis;
+    }
+
+    public long getDeadlineMillis() {
+        return deadlineMillis;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.tangyu.robot;
 
+import com.example.tangyu.metrics.RobotCallEvent;
+import com.example.tangyu.metrics.SpeechMetrics;
+import com.example.tangyu.metrics.TurnTrace;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -11,138 +14,380 @@ import okhttp3.WebSocketListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.CountDownLatch;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * 通过 WebSocket 将识别文本发送给机器人服务，并等待回复的简单客户端。
+ *
+ * 默认同一 token 的多轮对话复用长连接（见 {@link RobotConnection}），省去每轮的握手开销。每个 token
+ * 最多 {@link RobotConfig#getMaxConnectionsPerToken()} 条：服务端不回带 requestId 时一条连接同时只跑一轮，
+ * 并发的轮次各占一条，池满时临时新建单次连接。长连接空闲超过 {@link RobotConfig#getIdleTimeoutSeconds()}
+ * 后关闭。{@code robot.persistent=false} 时回到每轮新建连接的方式。
+ *
+ * 传入 {@link TurnTrace} 时，请求消息带上 W3C {@code traceparent} 字段（单次连接时同时作为握手请求头），
+ * 并记录请求开始、首个 chunk 与回复完成的时间。每轮调用可记录为 JFR {@link RobotCallEvent}（含尝试次数）。
  */
 public class RobotClient {
     private static final Logger LOG = LoggerFactory.getLogger(RobotClient.class);
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final RobotConfig config;
+    private final RetryPolicy retryPolicy;
+    private final CircuitBreaker breaker;
     private final OkHttpClient httpClient;
+    // 每个 token 的连接池，增删在列表自身的锁内进行
+    private final Map<String, List<RobotConnection>> connections = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService idleEvictor;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
 
     public RobotClient(RobotConfig config) {
         this.config = config;
+        this.retryPolicy = config.getRetryPolicy();
+        this.breaker = new CircuitBreaker(config.getBreakerFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(config.getBreakerOpenSeconds()));
         this.httpClient = new OkHttpClient.Builder()
                 .readTimeout(30, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
                 .build();
+        if (config.isPersistent()) {
+            long period = Math.min(30, config.getIdleTimeoutSeconds());
+            this.idleEvictor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "robot-idle-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+            this.idleEvictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.SECONDS);
+        } else {
+            this.idleEvictor = null;
+        }
+        bindMetrics();
+    }
+
+    private void bindMetrics() {
+        String description = "Robot calls by event";
+        SpeechMetrics.counter("speech.robot.calls", description, this, c -> c.requests.sum(), "event", "request");
+        SpeechMetrics.counter("speech.robot.calls", description, this, c -> c.attempts.sum(), "event", "attempt");
+        SpeechMetrics.counter("speech.robot.calls", description, this, c -> c.retries.sum(), "event", "retry");
+        SpeechMetrics.counter("speech.robot.calls", description, this, c -> c.failures.sum(), "event", "failure");
+        SpeechMetrics.counter("speech.robot.calls", description, this, c -> c.rejected.sum(), "event", "rejected");
+        SpeechMetrics.gauge("speech.robot.breaker.state", "0 closed, 1 open, 2 half-open", breaker,
+                b -> b.getState().ordinal());
     }
 
     /**
      * 发送文本并尽量获取流式返回的有效内容；等待期间累积 chunk 文本，最终返回最后的非空文本或累积文本。
+     * 阻塞直到回复完成，失败返回 null；见 {@link #sendAsync}。
      */
     public String sendAndReceive(String voiceText, String token) {
+        return sendAndReceive(voiceText, token, null);
+    }
+
+    /**
+     * 同 {@link #sendAndReceive(String, String)}，并把本轮的时间点记入 {@code trace}（可为 null）。
+     */
+    public String sendAndReceive(String voiceText, String token, TurnTrace trace) {
+        CompletableFuture<String> reply = sendAsync(voiceText, token, null, trace);
+        try {
+            return reply.get();
+        } catch (InterruptedException e) {
+            reply.cancel(false);
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 异步发送一轮对话，不占用调用线程。
+     *
+     * 超时、重试与退避按 {@link RobotConfig#getRetryPolicy()}；已经回调过 chunk 的轮次不再重试，以免重复输出。
+     * 后端连续失败时熔断，熔断期间直接失败而不再发请求。取消返回的 future 会放弃本轮，之后到达的回包被丢弃。
+     *
+     * @param onChunk 每收到一段流式文本（增量）回调一次，可为 null；在连接读线程上执行，不应阻塞
+     * @return 完成时为完整回复文本；文本为空时立即以 null 完成，重试用尽、超过截止时间或熔断时异常完成
+     */
+    public CompletableFuture<String> sendAsync(String voiceText, String token, Consumer<String> onChunk) {
+        return sendAsync(voiceText, token, onChunk, null);
+    }
+
+    /**
+     * 同 {@link #sendAsync(String, String, Consumer)}，并把本轮的时间点记入 {@code trace}。
+     *
+     * @param trace 所属对话轮次，可为 null；再次调用会覆盖上一次请求记下的机器人时间点
+     */
+    public CompletableFuture<String> sendAsync(String voiceText, String token, Consumer<String> onChunk,
+                                               TurnTrace trace) {
         if (voiceText == null || voiceText.isBlank()) {
             LOG.warn("Voice text is empty, skip robot call");
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
+        requests.increment();
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(retryPolicy.getDeadlineMillis());
+        RobotCallEvent event = new RobotCallEvent();
+        event.begin();
+        reply.whenComplete((text, error) -> {
+            String outcome = error == null ? "success" : reply.isCancelled() ? "cancelled" : "failure";
+            SpeechMetrics.robotReply(System.nanoTime() - startNanos, outcome);
+            event.end();
+            if (event.shouldCommit()) {
+                event.traceId = trace != null ? trace.getTraceId() : null;
+                event.outcome = outcome;
+                event.commit();
+            }
+        });
+        if (trace != null) {
+            trace.reset(TurnTrace.Stage.ROBOT_START, TurnTrace.Stage.ROBOT_FIRST_CHUNK, TurnTrace.Stage.ROBOT_DONE);
+            trace.mark(TurnTrace.Stage.ROBOT_START);
+            reply.whenComplete((text, error) -> {
+                if (error == null) {
+                    trace.mark(TurnTrace.Stage.ROBOT_DONE);
+                }
+            });
+        }
+        attempt(voiceText, token, onChunk, trace, event, reply, 1, deadlineNanos);
+        return reply;
+    }
 
-        Throwable lastError = null;
-        for (int attempt = 1; attempt <= 3; attempt++) {
-            CountDownLatch latch = new CountDownLatch(1);
-            AtomicReference<String> responseHolder = new AtomicReference<>();
-            AtomicReference<Throwable> errorHolder = new AtomicReference<>();
-            StringBuilder chunkBuffer = new StringBuilder();
-
-            try {
-                String wsUrl = appendToken(config.getWsUrl(), token);
-                Request request = new Request.Builder()
-                        .url(wsUrl)
-                        .build();
-
-                WebSocket webSocket = httpClient.newWebSocket(request, new WebSocketListener() {
-                    @Override
-                    public void onOpen(WebSocket webSocket, Response response) {
-                        try {
-                            ObjectNode payload = OBJECT_MAPPER.createObjectNode();
-                            payload.put("voice", voiceText);
-                            payload.put("scene", config.getScene());
-                            payload.put("inputType", config.getInputType());
-                            payload.put("token", token);
-                            payload.put("personaId", config.getPersonaId());
-                            webSocket.send(OBJECT_MAPPER.writeValueAsString(payload));
-                        } catch (Exception e) {
-                            errorHolder.set(e);
-                            latch.countDown();
-                            webSocket.close(1001, "payload_error");
-                        }
-                    }
+    public Stats getStats() {
+        return new Stats(requests.sum(), attempts.sum(), retries.sum(), failures.sum(), rejected.sum(),
+                breaker.getState(), breaker.getOpenCount());
+    }
 
-                    @Override
-                    public void onMessage(WebSocket webSocket, String text) {
-                        try {
-                            JsonNode node = OBJECT_MAPPER.readTree(text);
-                            String type = node.path("type").asText("");
-                            boolean done = "done".equalsIgnoreCase(type) || (node.has("done") && node.get("done").asBoolean(false));
-
-                            String extracted = extractText(node, text);
-                            if (extracted != null && !extracted.isBlank()) {
-                                if ("chunk".equalsIgnoreCase(type)) {
-                                    chunkBuffer.append(extracted);
-                                    responseHolder.set(chunkBuffer.toString());
-                                } else {
-                                    responseHolder.set(extracted);
-                                }
-                            }
-
-                            if (done) {
-                                // 如果没有单独的 chunk 文本，则尝试用最后一次提取的内容
-                                if (chunkBuffer.length() > 0) {
-                                    responseHolder.set(chunkBuffer.toString());
-                                }
-                                latch.countDown();
-                            }
-                        } catch (Exception e) {
-                            if (text != null && !text.isBlank()) {
-                                responseHolder.set(text);
-                            }
-                        }
-                    }
+    private void attempt(String voiceText, String token, Consumer<String> onChunk, TurnTrace trace,
+                         RobotCallEvent event, CompletableFuture<String> reply, int attempt, long deadlineNanos) {
+        if (reply.isDone()) {
+            return;
+        }
+        long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+        if (remainingMillis <= 0) {
+            reply.completeExceptionally(new RuntimeException("Robot call deadline exceeded"));
+            return;
+        }
+        if (!breaker.tryAcquire()) {
+            rejected.increment();
+            LOG.warn("Robot circuit open, failing fast");
+            reply.completeExceptionally(new IllegalStateException("Robot service circuit open"));
+            return;
+        }
+        attempts.increment();
+        event.attempts = attempt;
+        String requestId = UUID.randomUUID().toString();
+        TurnState turn = new TurnState(onChunk, trace);
+        RobotConnection connection = null;
+        WebSocket webSocket = null;
+        try {
+            String traceparent = trace != null ? trace.traceparent() : null;
+            String payload = buildPayload(voiceText, token, requestId, traceparent);
+            if (config.isPersistent()) {
+                connection = sendOnConnection(token, requestId, payload, turn);
+            }
+            if (connection == null) {
+                webSocket = openOneShot(token, payload, traceparent, turn);
+            }
+        } catch (Exception e) {
+            turn.onFailure(e);
+        }
+        reply.whenComplete((text, error) -> {
+            if (reply.isCancelled()) {
+                turn.result.cancel(false);
+            }
+        });
 
-                    @Override
-                    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-                        errorHolder.set(t);
-                        latch.countDown();
-                    }
+        RobotConnection usedConnection = connection;
+        WebSocket usedWebSocket = webSocket;
+        long timeoutMillis = Math.min(retryPolicy.getAttemptTimeoutMillis(), remainingMillis);
+        turn.result.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((text, error) -> {
+            if (usedConnection != null) {
+                if (error != null) {
+                    usedConnection.abandon(requestId);
+                }
+            } else {
+                webSocketCloseSilently(usedWebSocket);
+            }
+            if (error == null) {
+                breaker.onSuccess();
+                reply.complete(text);
+                return;
+            }
+            if (error instanceof CancellationException) {
+                breaker.release();
+                return;
+            }
+            breaker.onFailure();
+            failures.increment();
+            SpeechMetrics.upstreamError("robot", error);
+            if (reply.isDone()) {
+                return;
+            }
+            int maxAttempts = retryPolicy.getMaxAttempts();
+            if (error instanceof TimeoutException) {
+                LOG.warn("Robot WS call timed out (attempt {}/{})", attempt, maxAttempts);
+                error = new RuntimeException("timeout");
+            } else {
+                LOG.warn("Robot WS call failed (attempt {}/{}): {}", attempt, maxAttempts, error.getMessage());
+            }
+            long backoffMillis = retryPolicy.backoffMillis(attempt);
+            long remainingNanos = deadlineNanos - System.nanoTime();
+            if (attempt < maxAttempts && !turn.hasEmitted()
+                    && TimeUnit.MILLISECONDS.toNanos(backoffMillis) < remainingNanos) {
+                retries.increment();
+                CompletableFuture.delayedExecutor(backoffMillis, TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt(voiceText, token, onChunk, trace, event, reply, attempt + 1,
+                                deadlineNanos));
+            } else {
+                LOG.warn("Robot WS call failed after retries: {}", error.getMessage());
+                reply.completeExceptionally(error);
+            }
+        });
+    }
 
-                    @Override
-                    public void onClosing(WebSocket webSocket, int code, String reason) {
-                        latch.countDown();
-                    }
-                });
+    /**
+     * 关闭所有长连接，进行中的轮次按失败返回。
+     */
+    public void close() {
+        if (idleEvictor != null) {
+            idleEvictor.shutdownNow();
+        }
+        for (List<RobotConnection> pool : connections.values()) {
+            synchronized (pool) {
+                pool.forEach(RobotConnection::close);
+            }
+        }
+        connections.clear();
+    }
 
-                boolean completed = latch.await(120, TimeUnit.SECONDS);
-                webSocketCloseSilently(webSocket);
+    private String buildPayload(String voiceText, String token, String requestId, String traceparent)
+            throws Exception {
+        ObjectNode payload = OBJECT_MAPPER.createObjectNode();
+        payload.put("voice", voiceText);
+        payload.put("scene", config.getScene());
+        payload.put("inputType", config.getInputType());
+        payload.put("token", token);
+        payload.put("personaId", config.getPersonaId());
+        payload.put("requestId", requestId);
+        if (traceparent != null) {
+            // 长连接上多轮共用一次握手，追踪上下文只能随每条消息传递
+            payload.put("traceparent", traceparent);
+        }
+        return OBJECT_MAPPER.writeValueAsString(payload);
+    }
 
-                if (!completed) {
-                    LOG.warn("Robot WS call timed out (attempt {}/{})", attempt, 3);
-                    lastError = new RuntimeException("timeout");
+    /**
+     * 在该 token 的连接池上发送：优先已连上的空闲连接，其次其他可用连接，再次新建一条，最后才用仍在排空已放弃轮次的
+     * 连接；都不行时返回 null，由调用方改用单次连接。
+     */
+    private RobotConnection sendOnConnection(String token, String requestId, String payload, TurnState turn) {
+        String key = token == null ? "" : token;
+        while (true) {
+            List<RobotConnection> pool = connections.computeIfAbsent(key, k -> new ArrayList<>());
+            synchronized (pool) {
+                if (connections.get(key) != pool) {
+                    // 刚被空闲回收整体移除
                     continue;
                 }
-                if (errorHolder.get() != null) {
-                    LOG.warn("Robot WS call failed (attempt {}/{}): {}", attempt, 3, errorHolder.get().getMessage());
-                    lastError = errorHolder.get();
-                    continue;
+                pool.removeIf(RobotConnection::isRetired);
+                RobotConnection chosen = null;
+                RobotConnection draining = null;
+                for (RobotConnection connection : pool) {
+                    if (connection.isIdleOpen()) {
+                        chosen = connection;
+                        break;
+                    }
+                    if (!connection.isAvailable()) {
+                        continue;
+                    }
+                    if (connection.isDraining()) {
+                        draining = draining != null ? draining : connection;
+                    } else if (chosen == null) {
+                        chosen = connection;
+                    }
+                }
+                if (chosen == null && pool.size() < config.getMaxConnectionsPerToken()) {
+                    chosen = new RobotConnection(httpClient, appendToken(config.getWsUrl(), token),
+                            "#" + Integer.toHexString(key.hashCode()) + "/" + pool.size());
+                    pool.add(chosen);
+                }
+                if (chosen == null) {
+                    chosen = draining;
+                }
+                if (chosen == null) {
+                    LOG.debug("Robot connection pool for token #{} is full, using a one-shot connection",
+                            Integer.toHexString(key.hashCode()));
+                    return null;
+                }
+                if (chosen.send(requestId, payload, turn)) {
+                    return chosen;
                 }
-                return responseHolder.get();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                return null;
-            } catch (Exception e) {
-                lastError = e;
-                LOG.warn("Robot WS call error (attempt {}/{}): {}", attempt, 3, e.getMessage());
             }
         }
+    }
+
+    private WebSocket openOneShot(String token, String payload, String traceparent, TurnState turn) {
+        Request.Builder request = new Request.Builder()
+                .url(appendToken(config.getWsUrl(), token));
+        if (traceparent != null) {
+            request.header("traceparent", traceparent);
+        }
+        return httpClient.newWebSocket(request.build(), new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                webSocket.send(payload);
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                JsonNode node = null;
+                try {
+                    node = OBJECT_MAPPER.readTree(text);
+                } catch (Exception ignore) {
+                }
+                turn.onMessage(node, text, node != null && RobotConnection.isDone(node));
+            }
+
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                turn.onFailure(t);
+            }
+
+            @Override
+            public void onClosing(WebSocket webSocket, int code, String reason) {
+                turn.onClosed();
+            }
+        });
+    }
 
-        if (lastError != null) {
-            LOG.warn("Robot WS call failed after retries: {}", lastError.getMessage());
+    private void evictIdle() {
+        long idleNanos = TimeUnit.SECONDS.toNanos(config.getIdleTimeoutSeconds());
+        for (Map.Entry<String, List<RobotConnection>> entry : connections.entrySet()) {
+            List<RobotConnection> pool = entry.getValue();
+            synchronized (pool) {
+                pool.removeIf(connection -> connection.retireIfIdle(idleNanos));
+                // 在池的锁内移除，正在发送的线程据此判断池是否还有效
+                if (pool.isEmpty()) {
+                    connections.remove(entry.getKey(), pool);
+                }
+            }
         }
-        return null;
     }
 
     /**
@@ -217,4 +462,135 @@ public class RobotClient {
         } catch (Exception ignore) {
         }
     }
+
+    /**
+     * 一轮对话的结果收集。chunk 文本增量追加，只在结束时生成一次完整字符串。
+     */
+    private final class TurnState implements RobotConnection.TurnListener {
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        private final Consumer<String> onChunk;
+        private final TurnTrace trace;
+        private final StringBuilder chunkBuffer = new StringBuilder();
+        private String lastText;
+        private boolean lastWasChunk;
+        private volatile boolean emitted;
+
+        TurnState(Consumer<String> onChunk, TurnTrace trace) {
+            this.onChunk = onChunk;
+            this.trace = trace;
+        }
+
+        @Override
+        public void onMessage(JsonNode node, String raw, boolean done) {
+            if (result.isDone()) {
+                return;
+            }
+            if (node == null) {
+                if (raw != null && !raw.isBlank()) {
+                    lastText = raw;
+                    lastWasChunk = false;
+                }
+                return;
+            }
+            String extracted = extractText(node, raw);
+            if (extracted != null && !extracted.isBlank()) {
+                if ("chunk".equalsIgnoreCase(node.path("type").asText(""))) {
+                    if (trace != null) {
+                        trace.mark(TurnTrace.Stage.ROBOT_FIRST_CHUNK);
+                    }
+                    chunkBuffer.append(extracted);
+                    lastWasChunk = true;
+                    if (onChunk != null) {
+                        emitted = true;
+                        onChunk.accept(extracted);
+                    }
+                } else {
+                    lastText = extracted;
+                    lastWasChunk = false;
+                }
+            }
+
+            if (done) {
+                // 如果没有单独的 chunk 文本，则尝试用最后一次提取的内容
+                result.complete(chunkBuffer.length() > 0 ? chunkBuffer.toString() : lastText);
+            }
+        }
+
+        @Override
+        public void onClosed() {
+            result.complete(lastWasChunk ? chunkBuffer.toString() : lastText);
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            result.completeExceptionally(t);
+        }
+
+        boolean hasEmitted() {
+            return emitted;
+        }
+    }
+
+    /**
+     * 调用计数与熔断状态快照。
+     */
+    public static final class Stats {
+        private final long requests;
+        private final long attempts;
+        private final long retries;
+        private final long failures;
+        private final long rejected;
+        private final CircuitBreaker.State breakerState;
+        private final long breakerOpens;
+
+        Stats(long requests, long attempts, long retries, long failures, long rejected,
+              CircuitBreaker.State breakerState, long breakerOpens) {
+            this.requests = requests;
+            this.attempts = attempts;
+            this.retries = retries;
+            this.failures = failures;
+            this.rejected = rejected;
+            this.breakerState = breakerState;
+            this.breakerOpens = breakerOpens;
+        }
+
+        /** 调用方发起的轮次数 */
+        public long getRequests() {
+            return requests;
+        }
+
+        /** 实际发出的请求数（含重试） */
+        public long getAttempts() {
+            return attempts;
+        }
+
+        public long getRetries() {
+            return retries;
+        }
+
+        /** 失败的尝试数（超时或连接错误） */
+        public long getFailures() {
+            return failures;
+        }
+
+        /** 因熔断被直接拒绝的次数 */
+        public long getRejected() {
+            return rejected;
+        }
+
+        public CircuitBreaker.State getBreakerState() {
+            return breakerState;
+        }
+
+        public long getBreakerOpens() {
+            return breakerOpens;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{requests=" + requests + ", attempts=" + attempts + ", retries=" + retries
+                    + ", failures=" + failures + ", rejected=" + rejected + ", breaker=" + breakerState
+                    + ", breakerOpens=" + breakerOpens + '}';
+        }
+    }
 }
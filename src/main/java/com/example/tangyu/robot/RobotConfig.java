@@ -9,17 +9,64 @@ public class RobotConfig {
     private static final String DEFAULT_PERSONA_ID = "394f8467-b114-4ef3-8647-077d2eab5a9d";
     private static final String DEFAULT_SCENE = "chat";
     private static final String DEFAULT_INPUT_TYPE = "listening";
+    private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 120;
+    private static final int DEFAULT_BREAKER_FAILURES = 5;
+    private static final int DEFAULT_BREAKER_OPEN_SECONDS = 30;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_TOKEN = 4;
 
     private final String wsUrl;
     private final String personaId;
     private final String scene;
     private final String inputType;
+    private final boolean persistent;
+    private final int idleTimeoutSeconds;
+    private final RetryPolicy retryPolicy;
+    private final int breakerFailureThreshold;
+    private final int breakerOpenSeconds;
+    private final int maxConnectionsPerToken;
 
     public RobotConfig(String wsUrl, String personaId, String scene, String inputType) {
+        this(wsUrl, personaId, scene, inputType, true, DEFAULT_IDLE_TIMEOUT_SECONDS);
+    }
+
+    public RobotConfig(String wsUrl, String personaId, String scene, String inputType,
+                       boolean persistent, int idleTimeoutSeconds) {
+        this(wsUrl, personaId, scene, inputType, persistent, idleTimeoutSeconds,
+                RetryPolicy.defaults(), DEFAULT_BREAKER_FAILURES, DEFAULT_BREAKER_OPEN_SECONDS);
+    }
+
+    /**
+     * @param persistent         同一 token 的多轮对话是否复用一条 WebSocket 长连接
+     * @param idleTimeoutSeconds 长连接空闲多久后关闭
+     * @param retryPolicy        超时与重试策略
+     * @param breakerFailureThreshold 连续失败多少次后熔断
+     * @param breakerOpenSeconds 熔断后多久放行探测请求
+     */
+    public RobotConfig(String wsUrl, String personaId, String scene, String inputType,
+                       boolean persistent, int idleTimeoutSeconds, RetryPolicy retryPolicy,
+                       int breakerFailureThreshold, int breakerOpenSeconds) {
+        this(wsUrl, personaId, scene, inputType, persistent, idleTimeoutSeconds, retryPolicy,
+                breakerFailureThreshold, breakerOpenSeconds, DEFAULT_MAX_CONNECTIONS_PER_TOKEN);
+    }
+
+    /**
+     * @param maxConnectionsPerToken 每个 token 的长连接上限；服务端不回带 requestId 时即同一 token 的并发轮数上限，
+     *                               超出的轮次改用单次连接
+     */
+    public RobotConfig(String wsUrl, String personaId, String scene, String inputType,
+                       boolean persistent, int idleTimeoutSeconds, RetryPolicy retryPolicy,
+                       int breakerFailureThreshold, int breakerOpenSeconds, int maxConnectionsPerToken) {
         this.wsUrl = Objects.requireNonNullElse(wsUrl, DEFAULT_WS_URL);
         this.personaId = Objects.requireNonNullElse(personaId, DEFAULT_PERSONA_ID);
         this.scene = Objects.requireNonNullElse(scene, DEFAULT_SCENE);
         this.inputType = Objects.requireNonNullElse(inputType, DEFAULT_INPUT_TYPE);
+        this.persistent = persistent;
+        this.idleTimeoutSeconds = idleTimeoutSeconds > 0 ? idleTimeoutSeconds : DEFAULT_IDLE_TIMEOUT_SECONDS;
+        this.retryPolicy = Objects.requireNonNullElseGet(retryPolicy, RetryPolicy::defaults);
+        this.breakerFailureThreshold = breakerFailureThreshold > 0 ? breakerFailureThreshold : DEFAULT_BREAKER_FAILURES;
+        this.breakerOpenSeconds = breakerOpenSeconds > 0 ? breakerOpenSeconds : DEFAULT_BREAKER_OPEN_SECONDS;
+        this.maxConnectionsPerToken = maxConnectionsPerToken > 0
+                ? maxConnectionsPerToken : DEFAULT_MAX_CONNECTIONS_PER_TOKEN;
     }
 
     public static RobotConfig fromEnvironment(Environment env) {
@@ -27,7 +74,23 @@ public class RobotConfig {
         String personaId = env.getProperty("robot.personaId", DEFAULT_PERSONA_ID);
         String scene = env.getProperty("robot.scene", DEFAULT_SCENE);
         String inputType = env.getProperty("robot.inputType", DEFAULT_INPUT_TYPE);
-        return new RobotConfig(wsUrl, personaId, scene, inputType);
+        boolean persistent = env.getProperty("robot.persistent", Boolean.class, true);
+        int idleTimeout = env.getProperty("robot.idleTimeoutSeconds", Integer.class, DEFAULT_IDLE_TIMEOUT_SECONDS);
+        RetryPolicy defaults = RetryPolicy.defaults();
+        RetryPolicy retryPolicy = new RetryPolicy(
+                env.getProperty("robot.retry.maxAttempts", Integer.class, defaults.getMaxAttempts()),
+                env.getProperty("robot.retry.attemptTimeoutSeconds", Long.class,
+                        defaults.getAttemptTimeoutMillis() / 1000) * 1000,
+                env.getProperty("robot.retry.deadlineSeconds", Long.class,
+                        defaults.getDeadlineMillis() / 1000) * 1000,
+                env.getProperty("robot.retry.backoffMillis", Long.class, defaults.getInitialBackoffMillis()),
+                env.getProperty("robot.retry.maxBackoffMillis", Long.class, defaults.getMaxBackoffMillis()));
+        int breakerFailures = env.getProperty("robot.breaker.failureThreshold", Integer.class, DEFAULT_BREAKER_FAILURES);
+        int breakerOpen = env.getProperty("robot.breaker.openSeconds", Integer.class, DEFAULT_BREAKER_OPEN_SECONDS);
+        int maxConnections = env.getProperty("robot.maxConnectionsPerToken", Integer.class,
+                DEFAULT_MAX_CONNECTIONS_PER_TOKEN);
+        return new RobotConfig(wsUrl, personaId, scene, inputType, persistent, idleTimeout,
+                retryPolicy, breakerFailures, breakerOpen, maxConnections);
     }
 
     /**
@@ -50,7 +113,34 @@ public class RobotConfig {
                 System.getProperty("robot.inputType"),
                 System.getenv("ROBOT_INPUT_TYPE"),
                 DEFAULT_INPUT_TYPE);
-        return new RobotConfig(wsUrl, personaId, scene, inputType);
+        String persistent = firstNonBlank(
+                System.getProperty("robot.persistent"),
+                System.getenv("ROBOT_PERSISTENT"),
+                "true");
+        String idleTimeout = firstNonBlank(
+                System.getProperty("robot.idleTimeoutSeconds"),
+                System.getenv("ROBOT_IDLE_TIMEOUT_SECONDS"),
+                String.valueOf(DEFAULT_IDLE_TIMEOUT_SECONDS));
+        RetryPolicy defaults = RetryPolicy.defaults();
+        RetryPolicy retryPolicy = new RetryPolicy(
+                (int) longSetting("robot.retry.maxAttempts", "ROBOT_MAX_ATTEMPTS", defaults.getMaxAttempts()),
+                longSetting("robot.retry.attemptTimeoutSeconds", "ROBOT_ATTEMPT_TIMEOUT_SECONDS",
+                        defaults.getAttemptTimeoutMillis() / 1000) * 1000,
+                longSetting("robot.retry.deadlineSeconds", "ROBOT_DEADLINE_SECONDS",
+                        defaults.getDeadlineMillis() / 1000) * 1000,
+                longSetting("robot.retry.backoffMillis", "ROBOT_RETRY_BACKOFF_MS", defaults.getInitialBackoffMillis()),
+                longSetting("robot.retry.maxBackoffMillis", "ROBOT_RETRY_MAX_BACKOFF_MS", defaults.getMaxBackoffMillis()));
+        return new RobotConfig(wsUrl, personaId, scene, inputType,
+                Boolean.parseBoolean(persistent), Integer.parseInt(idleTimeout), retryPolicy,
+                (int) longSetting("robot.breaker.failureThreshold", "ROBOT_BREAKER_FAILURES", DEFAULT_BREAKER_FAILURES),
+                (int) longSetting("robot.breaker.openSeconds", "ROBOT_BREAKER_OPEN_SECONDS", DEFAULT_BREAKER_OPEN_SECONDS),
+                (int) longSetting("robot.maxConnectionsPerToken", "ROBOT_MAX_CONNECTIONS_PER_TOKEN",
+                        DEFAULT_MAX_CONNECTIONS_PER_TOKEN));
+    }
+
+    private static long longSetting(String property, String envName, long defaultValue) {
+        return Long.parseLong(firstNonBlank(System.getProperty(property), System.getenv(envName),
+                String.valueOf(defaultValue)));
     }
 
     private static String firstNonBlank(String... values) {
@@ -80,4 +170,28 @@ public class RobotConfig {
     public String getInputType() {
         return inputType;
     }
+
+    public boolean isPersistent() {
+        return persistent;
+    }
+
+    public int getIdleTimeoutSeconds() {
+        return idleTimeoutSeconds;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return breakerFailureThreshold;
+    }
+
+    public int getBreakerOpenSeconds() {
+        return breakerOpenSeconds;
+    }
+
+    public int getMaxConnectionsPerToken() {
+        return maxConnectionsPerToken;
+    }
 }
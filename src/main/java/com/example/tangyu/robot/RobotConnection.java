@@ -0,0 +1,334 @@
+package com.example.tangyu.robot;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同一 token 下多轮对话复用的机器人 WebSocket 长连接。
+ *
+ * 每轮请求带 requestId。服务端回包带回过 requestId 之后，连接才允许多轮并发（按 requestId 分发）；
+ * 在此之前一条连接同时只有一轮，回包都归这一轮，放弃这一轮时重置连接，避免它的迟到回包串给下一轮；
+ * 之后放弃的轮次在收到其结束消息前记为“排空中”，连接池会尽量绕开这条连接，以免新请求排在服务端仍在生成的回复之后。
+ * 连接断开后按指数退避重连，由 {@link RobotClient} 负责连接池与空闲回收。
+ */
+final class RobotConnection extends WebSocketListener {
+    private static final Logger LOG = LoggerFactory.getLogger(RobotConnection.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long BACKOFF_BASE_MILLIS = 500;
+    private static final long BACKOFF_MAX_MILLIS = 30_000;
+    /** 记录的排空中轮次上限；结束消息一直不来时丢弃最早的记录 */
+    private static final int MAX_DRAINING = 16;
+    private static final ScheduledExecutorService RECONNECTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "robot-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 单轮对话的回调，均在连接的读线程上执行。
+     */
+    interface TurnListener {
+        /**
+         * @param node 解析后的 JSON，非 JSON 消息时为 null
+         * @param raw  原始文本
+         * @param done 是否为本轮最后一条消息
+         */
+        void onMessage(JsonNode node, String raw, boolean done);
+
+        /**
+         * 服务端关闭了连接，本轮按已收到的内容结束。
+         */
+        void onClosed();
+
+        void onFailure(Throwable error);
+    }
+
+    private enum State { IDLE, CONNECTING, OPEN }
+
+    private final OkHttpClient httpClient;
+    private final Request request;
+    private final String name;
+    // 按发送顺序保存未完成的轮次
+    private final LinkedHashMap<String, TurnListener> pending = new LinkedHashMap<>();
+    private final List<Queued> queued = new ArrayList<>();
+    // 已放弃但服务端可能仍在生成回复的轮次
+    private final LinkedHashSet<String> draining = new LinkedHashSet<>();
+    private State state = State.IDLE;
+    private WebSocket webSocket;
+    private boolean retired;
+    private boolean correlated;
+    private int consecutiveFailures;
+    private long lastFailureNanos;
+    private volatile long lastActivityNanos = System.nanoTime();
+
+    RobotConnection(OkHttpClient httpClient, String wsUrl, String name) {
+        this.httpClient = httpClient;
+        this.request = new Request.Builder().url(wsUrl).build();
+        this.name = name;
+    }
+
+    /**
+     * 发送一轮请求；连接未建立时先排队，连上后按序发出。
+     *
+     * @return false 表示连接已被回收，或服务端不回带 requestId 而已有一轮进行中，调用方应换一条连接
+     */
+    synchronized boolean send(String requestId, String payload, TurnListener listener) {
+        if (retired || (!correlated && !pending.isEmpty())) {
+            return false;
+        }
+        lastActivityNanos = System.nanoTime();
+        pending.put(requestId, listener);
+        if (state == State.OPEN) {
+            if (!webSocket.send(payload)) {
+                pending.remove(requestId);
+                listener.onFailure(new IllegalStateException("Robot WebSocket is not writable"));
+            }
+            return true;
+        }
+        queued.add(new Queued(requestId, payload));
+        if (state == State.IDLE) {
+            connect();
+        }
+        return true;
+    }
+
+    /**
+     * 放弃一轮（超时或取消），之后到达的该轮消息会被丢弃。
+     *
+     * 服务端不回带 requestId 时无法区分该轮的迟到回包，已发出的轮次被放弃后重置连接，下一轮重新握手。
+     */
+    synchronized void abandon(String requestId) {
+        boolean unsent = queued.removeIf(q -> q.requestId.equals(requestId));
+        if (pending.remove(requestId) == null || unsent) {
+            return;
+        }
+        if (correlated) {
+            draining.add(requestId);
+            if (draining.size() > MAX_DRAINING) {
+                Iterator<String> eldest = draining.iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return;
+        }
+        LOG.debug("Robot WebSocket ({}) reset after an abandoned turn", name);
+        reset();
+    }
+
+    /**
+     * 可以立即接下一轮：没有进行中的轮次，或服务端回带 requestId 可以多轮并发。
+     */
+    synchronized boolean isAvailable() {
+        return !retired && (correlated || pending.isEmpty());
+    }
+
+    /**
+     * 已连上且没有进行中或排空中的轮次，接下一轮无需握手也不用排队。
+     */
+    synchronized boolean isIdleOpen() {
+        return !retired && state == State.OPEN && pending.isEmpty() && draining.isEmpty();
+    }
+
+    /**
+     * 服务端可能仍在为已放弃的轮次生成回复。
+     */
+    synchronized boolean isDraining() {
+        return !draining.isEmpty();
+    }
+
+    synchronized boolean isRetired() {
+        return retired;
+    }
+
+    /**
+     * 无进行中的轮次且空闲超时则关闭并标记回收；已回收的连接直接返回 true。
+     */
+    synchronized boolean retireIfIdle(long idleNanos) {
+        if (retired) {
+            return true;
+        }
+        if (!pending.isEmpty() || System.nanoTime() - lastActivityNanos < idleNanos) {
+            return false;
+        }
+        retired = true;
+        if (webSocket != null) {
+            webSocket.close(1000, "idle");
+        }
+        return true;
+    }
+
+    synchronized void close() {
+        retired = true;
+        if (webSocket != null) {
+            webSocket.close(1000, "shutdown");
+        }
+        failAll(new IllegalStateException("Robot connection closed"));
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 断开当前 WebSocket，但不回收连接，下一轮发送时重新连接。
+     */
+    private void reset() {
+        WebSocket ws = webSocket;
+        webSocket = null;
+        state = State.IDLE;
+        if (ws != null) {
+            ws.cancel();
+        }
+        failAll(new IllegalStateException("Robot connection reset"));
+    }
+
+    private void connect() {
+        state = State.CONNECTING;
+        long delayMillis = 0;
+        if (consecutiveFailures > 0) {
+            long backoff = Math.min(BACKOFF_MAX_MILLIS, BACKOFF_BASE_MILLIS << Math.min(consecutiveFailures - 1, 16));
+            long sinceFailure = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastFailureNanos);
+            delayMillis = Math.max(0, backoff - sinceFailure);
+        }
+        if (delayMillis == 0) {
+            webSocket = httpClient.newWebSocket(request, this);
+            return;
+        }
+        LOG.info("Reconnecting robot WebSocket ({}) in {}ms after {} failures", name, delayMillis, consecutiveFailures);
+        RECONNECTOR.schedule(() -> {
+            synchronized (this) {
+                if (!retired && state == State.CONNECTING) {
+                    webSocket = httpClient.newWebSocket(request, this);
+                }
+            }
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void onOpen(WebSocket ws, Response response) {
+        if (ws != webSocket) {
+            return;
+        }
+        state = State.OPEN;
+        consecutiveFailures = 0;
+        LOG.debug("Robot WebSocket ({}) connected", name);
+        for (Queued q : queued) {
+            if (pending.containsKey(q.requestId) && !ws.send(q.payload)) {
+                pending.remove(q.requestId).onFailure(new IllegalStateException("Robot WebSocket is not writable"));
+            }
+        }
+        queued.clear();
+    }
+
+    @Override
+    public void onMessage(WebSocket ws, String text) {
+        JsonNode node = null;
+        try {
+            node = OBJECT_MAPPER.readTree(text);
+        } catch (Exception ignore) {
+        }
+        boolean done = node != null && isDone(node);
+        TurnListener listener;
+        synchronized (this) {
+            if (ws != webSocket) {
+                return;
+            }
+            lastActivityNanos = System.nanoTime();
+            String requestId = node != null && node.hasNonNull("requestId") ? node.get("requestId").asText() : null;
+            if (requestId != null) {
+                if (!pending.containsKey(requestId)) {
+                    // 已放弃或已结束的轮次
+                    if (done) {
+                        draining.remove(requestId);
+                    }
+                    return;
+                }
+                correlated = true;
+            } else if (pending.size() == 1) {
+                // 未带 requestId（如 connected 提示）时只能归给唯一进行中的一轮
+                requestId = pending.keySet().iterator().next();
+            } else {
+                return;
+            }
+            listener = done ? pending.remove(requestId) : pending.get(requestId);
+        }
+        listener.onMessage(node, text, done);
+    }
+
+    @Override
+    public void onClosing(WebSocket ws, int code, String reason) {
+        ws.close(1000, null);
+        List<TurnListener> closed;
+        synchronized (this) {
+            if (ws != webSocket) {
+                return;
+            }
+            state = State.IDLE;
+            webSocket = null;
+            closed = drain();
+        }
+        for (TurnListener listener : closed) {
+            listener.onClosed();
+        }
+    }
+
+    @Override
+    public void onFailure(WebSocket ws, Throwable t, Response response) {
+        synchronized (this) {
+            if (ws != webSocket) {
+                return;
+            }
+            LOG.warn("Robot WebSocket ({}) failed: {}", name, t.getMessage());
+            state = State.IDLE;
+            webSocket = null;
+            consecutiveFailures++;
+            lastFailureNanos = System.nanoTime();
+        }
+        failAll(t);
+    }
+
+    private synchronized List<TurnListener> drain() {
+        List<TurnListener> listeners = new ArrayList<>(pending.values());
+        pending.clear();
+        queued.clear();
+        draining.clear();
+        return listeners;
+    }
+
+    private void failAll(Throwable error) {
+        for (TurnListener listener : drain()) {
+            listener.onFailure(error);
+        }
+    }
+
+    static boolean isDone(JsonNode node) {
+        String type = node.path("type").asText("");
+        return "done".equalsIgnoreCase(type) || (node.has("done") && node.get("done").asBoolean(false));
+    }
+
+    private static final class Queued {
+        final String requestId;
+        final String payload;
+
+        Queued(String requestId, String payload) {
+            this.requestId = requestId;
+            this.payload = payload;
+        }
+    }
+}
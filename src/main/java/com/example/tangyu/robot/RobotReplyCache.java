@@ -0,0 +1,209 @@
+package com.example.tangyu.robot;
+
+import com.example.tangyu.metrics.SpeechMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 常见问题的机器人回复缓存，位于识别结果与 {@link RobotClient} 之间。
+ *
+ * 键为 (personaId, scene, 用户 token, 归一化文本)，{@link ReplyCacheConfig#isSharedPhrase 固定问题}不含 token、
+ * 跨用户共享；没有 token 的请求只能命中固定问题。命中时直接返回缓存的回复，不再调用大模型。
+ * 条目按 TTL 过期，超过条目上限时淘汰最久未用的条目。只缓存成功且非空的回复。
+ */
+public class RobotReplyCache {
+    private static final Logger LOG = LoggerFactory.getLogger(RobotReplyCache.class);
+
+    private final ReplyCacheConfig config;
+    private final String personaId;
+    private final String scene;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RobotReplyCache(ReplyCacheConfig config, RobotConfig robotConfig) {
+        this.config = Objects.requireNonNull(config);
+        this.personaId = robotConfig.getPersonaId();
+        this.scene = robotConfig.getScene();
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(config.getTtlSeconds());
+        this.entries = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > config.getMaxEntries()) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        if (config.isEnabled() && !config.allowsScene(scene)) {
+            LOG.info("Robot reply cache disabled for scene {}", scene);
+        }
+        SpeechMetrics.counter("speech.cache.requests", "Cache lookups by result", this,
+                c -> c.hits.sum(), "cache", "robot_reply", "result", "hit");
+        SpeechMetrics.counter("speech.cache.requests", "Cache lookups by result", this,
+                c -> c.misses.sum(), "cache", "robot_reply", "result", "miss");
+        SpeechMetrics.gauge("speech.cache.entries", "Entries held by a cache", this,
+                c -> c.getStats().getSize(), "cache", "robot_reply");
+    }
+
+    /**
+     * 查缓存。
+     *
+     * @param token 用户 token，可为 null
+     * @return 缓存的回复，未命中或该文本不可缓存时为 null
+     */
+    public String get(String text, String token) {
+        String key = keyFor(text, token);
+        return key != null ? lookup(key) : null;
+    }
+
+    /**
+     * 是否有未过期的条目；不计入命中统计。
+     */
+    public boolean contains(String text, String token) {
+        String key = keyFor(text, token);
+        if (key == null) {
+            return false;
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            return entry != null && System.nanoTime() - entry.storedNanos < ttlNanos;
+        }
+    }
+
+    /**
+     * 回复成功且非空时缓存。
+     */
+    public void put(String text, String token, CompletableFuture<String> reply) {
+        String key = keyFor(text, token);
+        if (key != null) {
+            reply.thenAccept(value -> store(key, value));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new Stats(hits.sum(), misses.sum(), expirations.sum(), evictions.sum(), size);
+    }
+
+    private String keyFor(String text, String token) {
+        if (!config.allowsScene(scene)) {
+            return null;
+        }
+        String normalized = TranscriptNormalizer.normalize(text);
+        if (normalized.isEmpty() || normalized.length() > config.getMaxTextLength()) {
+            return null;
+        }
+        String owner;
+        if (config.isSharedPhrase(normalized)) {
+            owner = "";
+        } else if (token != null && !token.isBlank()) {
+            owner = token;
+        } else {
+            return null;
+        }
+        return personaId + '\u0000' + scene + '\u0000' + owner + '\u0000' + normalized;
+    }
+
+    private String lookup(String key) {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && System.nanoTime() - entry.storedNanos < ttlNanos) {
+                hits.increment();
+                return entry.reply;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                expirations.increment();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    private void store(String key, String reply) {
+        if (reply == null || reply.isBlank()) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(reply, System.nanoTime()));
+        }
+    }
+
+    private static final class Entry {
+        final String reply;
+        final long storedNanos;
+
+        Entry(String reply, long storedNanos) {
+            this.reply = reply;
+            this.storedNanos = storedNanos;
+        }
+    }
+
+    /**
+     * 缓存统计快照。
+     */
+    public static final class Stats {
+        private final long hits;
+        private final long misses;
+        private final long expirations;
+        private final long evictions;
+        private final int size;
+
+        Stats(long hits, long misses, long expirations, long evictions, int size) {
+            this.hits = hits;
+            this.misses = misses;
+            this.expirations = expirations;
+            this.evictions = evictions;
+            this.size = size;
+        }
+
+        public long getHits() {
+            return hits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        /** 因过期被移除的条目数 */
+        public long getExpirations() {
+            return expirations;
+        }
+
+        /** 因超出条目上限被淘汰的条目数 */
+        public long getEvictions() {
+            return evictions;
+        }
+
+        public int getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{hits=" + hits + ", misses=" + misses + ", expirations=" + expirations
+                    + ", evictions=" + evictions + ", size=" + size + '}';
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.tangyu.robot;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * 基于稳定中间识别结果提前调用机器人的配置。
+ *
+ * 提前发出的请求在最终文本不一致时会被放弃，但机器人服务已经收到了它；
+ * 若服务端会把每轮对话写入记忆，开启前需确认能容忍这类被放弃的请求。
+ */
+public class SpeculationConfig {
+    private static final long DEFAULT_STABLE_MILLIS = 400;
+    private static final int DEFAULT_MIN_CHARS = 4;
+
+    private final boolean enabled;
+    private final long stableMillis;
+    private final int minChars;
+
+    /**
+     * @param enabled      是否开启
+     * @param stableMillis 中间结果保持不变多久后提前调用
+     * @param minChars     归一化后至少多少个字符才提前调用
+     */
+    public SpeculationConfig(boolean enabled, long stableMillis, int minChars) {
+        this.enabled = enabled;
+        this.stableMillis = stableMillis > 0 ? stableMillis : DEFAULT_STABLE_MILLIS;
+        this.minChars = minChars > 0 ? minChars : DEFAULT_MIN_CHARS;
+    }
+
+    public static SpeculationConfig fromEnvironment(Environment env) {
+        boolean enabled = env.getProperty("robot.speculative.enabled", Boolean.class, false);
+        long stableMillis = env.getProperty("robot.speculative.stableMillis", Long.class, DEFAULT_STABLE_MILLIS);
+        int minChars = env.getProperty("robot.speculative.minChars", Integer.class, DEFAULT_MIN_CHARS);
+        return new SpeculationConfig(enabled, stableMillis, minChars);
+    }
+
+    /**
+     * 从系统属性/环境变量构建配置，供 CLI 使用。
+     */
+    public static SpeculationConfig fromSystemEnv() {
+        return new SpeculationConfig(
+                Boolean.parseBoolean(setting("robot.speculative.enabled", "ROBOT_SPECULATIVE_ENABLED", "false")),
+                Long.parseLong(setting("robot.speculative.stableMillis", "ROBOT_SPECULATIVE_STABLE_MS",
+                        String.valueOf(DEFAULT_STABLE_MILLIS))),
+                Integer.parseInt(setting("robot.speculative.minChars", "ROBOT_SPECULATIVE_MIN_CHARS",
+                        String.valueOf(DEFAULT_MIN_CHARS))));
+    }
+
+    private static String setting(String property, String envName, String defaultValue) {
+        String value = System.getProperty(property);
+        if (value == null || value.isBlank()) {
+            value = System.getenv(envName);
+        }
+        return value == null || value.isBlank() ? defaultValue : value;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getStableMillis() {
+        return stableMillis;
+    }
+
+    public int getMinChars() {
+        return minChars;
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.tangyu.robot;
+
+import com.example.tangyu.metrics.SpeechMetrics;
+import com.example.tangyu.metrics.TurnTrace;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 在中间识别结果稳定后提前调用机器人，把大模型耗时与用户说完最后几个字的时间重叠。
+ *
+ * 每个 ASR 会话通过 {@link #newSession(String)} 取得一个 {@link Session}：中间结果归一化后
+ * 保持 {@link SpeculationConfig#getStableMillis()} 不变即发出请求；最终结果归一化后与之相同则直接
+ * 沿用该请求（命中），否则取消并用最终文本重新请求（未命中）。取消会重置或绕开承载提前请求的连接
+ * （见 {@link RobotConnection#abandon}），重发的请求不会排在被放弃的回复之后；未命中时从最终结果到回复完成的
+ * 等待单独计量。未开启时等同于在最终结果上调用 {@link RobotClient#sendAsync}。
+ *
+ * 配置了 {@link RobotReplyCache} 时，最终文本命中缓存则直接返回缓存的回复，已缓存的问题也不会提前调用。
+ *
+ * 传入 {@link TurnTrace} 时，实际采用的那次请求的时间点记入该轮，回复来源记为
+ * {@code robot=cache|speculative|reissued|direct}。
+ */
+public class SpeculativeRobotCaller {
+    private static final Logger LOG = LoggerFactory.getLogger(SpeculativeRobotCaller.class);
+
+    private final RobotClient robotClient;
+    private final SpeculationConfig config;
+    private final RobotReplyCache replyCache;
+    private final ScheduledExecutorService timer;
+    private final LongAdder speculations = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder savedMillis = new LongAdder();
+    private final LongAdder missWaitMillis = new LongAdder();
+
+    public SpeculativeRobotCaller(RobotClient robotClient, SpeculationConfig config) {
+        this(robotClient, config, null);
+    }
+
+    /**
+     * @param replyCache 回复缓存，可为 null
+     */
+    public SpeculativeRobotCaller(RobotClient robotClient, SpeculationConfig config, RobotReplyCache replyCache) {
+        this.robotClient = robotClient;
+        this.config = config;
+        this.replyCache = replyCache;
+        this.timer = config.isEnabled()
+                ? Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread t = new Thread(r, "robot-speculate");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+        String description = "Speculative robot calls by outcome";
+        SpeechMetrics.counter("speech.robot.speculation", description, this, c -> c.speculations.sum(),
+                "event", "started");
+        SpeechMetrics.counter("speech.robot.speculation", description, this, c -> c.hits.sum(), "event", "hit");
+        SpeechMetrics.counter("speech.robot.speculation", description, this, c -> c.misses.sum(), "event", "miss");
+        SpeechMetrics.counter("speech.robot.speculation", description, this, c -> c.discarded.sum(),
+                "event", "discarded");
+        SpeechMetrics.counter("speech.robot.speculation.saved.seconds", "Robot wait saved by speculative hits",
+                this, c -> c.savedMillis.sum() / 1000.0);
+        SpeechMetrics.counter("speech.robot.speculation.miss.wait.seconds",
+                "Robot wait after the final transcript on speculative misses", this,
+                c -> c.missWaitMillis.sum() / 1000.0);
+    }
+
+    public Session newSession(String token) {
+        return new Session(token);
+    }
+
+    public Stats getStats() {
+        return new Stats(speculations.sum(), hits.sum(), misses.sum(), discarded.sum(), savedMillis.sum(),
+                missWaitMillis.sum());
+    }
+
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    /**
+     * 一个 ASR 会话内的提前调用状态，可连续处理多句话。
+     */
+    public final class Session {
+        private final String token;
+        private String partialKey;
+        private String partialText;
+        private TurnTrace partialTrace;
+        private ScheduledFuture<?> pendingStart;
+        private CompletableFuture<String> speculative;
+        private String speculativeKey;
+        private long speculativeStartNanos;
+        private long speculativeDoneNanos;
+
+        Session(String token) {
+            this.token = token;
+        }
+
+        /**
+         * 收到中间结果；文本变化时重新计时，已发出但不再匹配的提前请求会被取消。
+         */
+        public void onPartial(String text) {
+            onPartial(text, null);
+        }
+
+        /**
+         * 同 {@link #onPartial(String)}；提前请求发出时计入 {@code trace}（可为 null）。
+         */
+        public synchronized void onPartial(String text, TurnTrace trace) {
+            if (timer == null || token == null || token.isBlank()) {
+                return;
+            }
+            String key = TranscriptNormalizer.normalize(text);
+            if (key.equals(partialKey)) {
+                return;
+            }
+            partialKey = key;
+            partialText = text;
+            partialTrace = trace;
+            cancelPendingStart();
+            if (speculative != null && !key.equals(speculativeKey)) {
+                discarded.increment();
+                dropSpeculative();
+            }
+            if (speculative == null && key.length() >= config.getMinChars()
+                    && (replyCache == null || !replyCache.contains(text, token))) {
+                pendingStart = timer.schedule(() -> startSpeculative(key), config.getStableMillis(),
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 收到最终结果，返回本句的机器人回复。
+         */
+        public CompletableFuture<String> onFinal(String text) {
+            return onFinal(text, null);
+        }
+
+        /**
+         * 同 {@link #onFinal(String)}，并把本句机器人请求的时间点与回复来源记入 {@code trace}（可为 null）。
+         */
+        public synchronized CompletableFuture<String> onFinal(String text, TurnTrace trace) {
+            cancelPendingStart();
+            partialKey = null;
+            partialText = null;
+            partialTrace = null;
+            String cached = replyCache != null ? replyCache.get(text, token) : null;
+            if (cached != null) {
+                if (speculative != null) {
+                    discarded.increment();
+                    dropSpeculative();
+                }
+                if (trace != null) {
+                    // 放弃的提前请求可能已记下开始时间，缓存命中时本轮没有机器人请求
+                    trace.reset(TurnTrace.Stage.ROBOT_START, TurnTrace.Stage.ROBOT_FIRST_CHUNK,
+                            TurnTrace.Stage.ROBOT_DONE);
+                    trace.note("robot", "cache");
+                }
+                return CompletableFuture.completedFuture(cached);
+            }
+            CompletableFuture<String> reply = reply(text, trace);
+            if (replyCache != null) {
+                replyCache.put(text, token, reply);
+            }
+            return reply;
+        }
+
+        private CompletableFuture<String> reply(String text, TurnTrace trace) {
+            CompletableFuture<String> candidate = speculative;
+            String candidateKey = speculativeKey;
+            long startNanos = speculativeStartNanos;
+            speculative = null;
+            speculativeKey = null;
+            if (candidate != null) {
+                if (TranscriptNormalizer.normalize(text).equals(candidateKey) && !candidate.isCompletedExceptionally()) {
+                    long finalNanos = System.nanoTime();
+                    long doneNanos = speculativeDoneNanos;
+                    long endNanos = candidate.isDone() && doneNanos != 0 ? Math.min(doneNanos, finalNanos) : finalNanos;
+                    long saved = TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+                    hits.increment();
+                    savedMillis.add(saved);
+                    LOG.debug("Speculative robot call hit, saved {}ms", saved);
+                    if (trace != null) {
+                        trace.note("robot", "speculative");
+                    }
+                    return candidate;
+                }
+                misses.increment();
+                LOG.debug("Speculative robot call missed, reissuing with final text");
+                // 取消同步地放弃该轮：未回带 requestId 的连接被重置，否则该连接标记为排空中，重发的请求会换一条连接
+                candidate.cancel(false);
+                if (trace != null) {
+                    trace.note("robot", "reissued");
+                }
+                long reissueNanos = System.nanoTime();
+                CompletableFuture<String> reissued = robotClient.sendAsync(text, token, null, trace);
+                reissued.whenComplete((r, e) -> {
+                    long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - reissueNanos);
+                    missWaitMillis.add(waited);
+                    LOG.debug("Reissued robot call after a speculative miss finished in {}ms", waited);
+                });
+                return reissued;
+            }
+            if (trace != null) {
+                trace.note("robot", "direct");
+            }
+            return robotClient.sendAsync(text, token, null, trace);
+        }
+
+        /**
+         * 会话结束，放弃尚未使用的提前请求。
+         */
+        public synchronized void cancel() {
+            cancelPendingStart();
+            if (speculative != null) {
+                discarded.increment();
+                dropSpeculative();
+            }
+        }
+
+        private synchronized void startSpeculative(String key) {
+            if (!key.equals(partialKey) || speculative != null) {
+                return;
+            }
+            pendingStart = null;
+            speculativeKey = key;
+            speculativeStartNanos = System.nanoTime();
+            speculativeDoneNanos = 0;
+            speculations.increment();
+            LOG.debug("Partial transcript stable for {}ms, calling robot speculatively", config.getStableMillis());
+            CompletableFuture<String> call = robotClient.sendAsync(partialText, token, null, partialTrace);
+            speculative = call;
+            call.whenComplete((r, e) -> markDone(call));
+        }
+
+        private synchronized void markDone(CompletableFuture<String> call) {
+            if (speculative == call) {
+                speculativeDoneNanos = System.nanoTime();
+            }
+        }
+
+        private void dropSpeculative() {
+            speculative.cancel(false);
+            speculative = null;
+            speculativeKey = null;
+        }
+
+        private void cancelPendingStart() {
+            if (pendingStart != null) {
+                pendingStart.cancel(false);
+                pendingStart = null;
+            }
+        }
+    }
+
+    /**
+     * 提前调用的统计快照。
+     */
+    public static final class Stats {
+        private final long speculations;
+        private final long hits;
+        private final long misses;
+        private final long discarded;
+        private final long savedMillis;
+        private final long missWaitMillis;
+
+        Stats(long speculations, long hits, long misses, long discarded, long savedMillis, long missWaitMillis) {
+            this.speculations = speculations;
+            this.hits = hits;
+            this.misses = misses;
+            this.discarded = discarded;
+            this.savedMillis = savedMillis;
+            this.missWaitMillis = missWaitMillis;
+        }
+
+        /** 发出的提前请求数 */
+        public long getSpeculations() {
+            return speculations;
+        }
+
+        /** 最终文本与提前请求一致、直接沿用的次数 */
+        public long getHits() {
+            return hits;
+        }
+
+        /** 最终文本不一致、取消后重新请求的次数 */
+        public long getMisses() {
+            return misses;
+        }
+
+        /** 中间结果继续变化或会话结束而放弃的提前请求数 */
+        public long getDiscarded() {
+            return discarded;
+        }
+
+        /** 命中时累计节省的等待时间 */
+        public long getSavedMillis() {
+            return savedMillis;
+        }
+
+        /** 未命中时重发请求的累计等待时间（从最终结果到回复完成） */
+        public long getMissWaitMillis() {
+            return missWaitMillis;
+        }
+
+        public double getHitRate() {
+            return speculations == 0 ? 0 : (double) hits / speculations;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{speculations=" + speculations + ", hits=" + hits + ", misses=" + misses
+                    + ", discarded=" + discarded + ", saved=" + savedMillis + "ms, missWait=" + missWaitMillis + "ms}";
+        }
+    }
+}
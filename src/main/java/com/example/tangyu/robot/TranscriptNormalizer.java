@@ -0,0 +1,23 @@
+package com.example.tangyu.robot;
+
+import java.text.Normalizer;
+
+/**
+ * 识别文本的比较用归一化：全角转半角（NFKC），去掉标点与空白，统一小写。
+ */
+final class TranscriptNormalizer {
+    private TranscriptNormalizer() {
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        StringBuilder sb = new StringBuilder(folded.length());
+        folded.codePoints()
+                .filter(Character::isLetterOrDigit)
+                .forEach(cp -> sb.appendCodePoint(Character.toLowerCase(cp)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,573 @@
+package com.example.tangyu.server;
+
+import com.example.tangyu.config.AsrJobConfig;
+import com.example.tangyu.metrics.SpeechMetrics;
+import com.example.tangyu.speech.AsrClient;
+import com.example.tangyu.speech.AsrResultHandler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Asynchronous batch transcription backed by an append-only journal and a spool directory.
+ *
+ * A submission is spooled to disk and journaled before it is acknowledged; each finished file appends its result.
+ * On start the journal is replayed, files without a result are queued again and finished jobs past their retention
+ * are compacted away. Files are transcribed by a fixed pool, so jobs never use more than
+ * {@link AsrJobConfig#getConcurrency()} DashScope recognitions at once however large the backlog.
+ */
+public class AsrJobQueue {
+    private static final Logger LOG = LoggerFactory.getLogger(AsrJobQueue.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final String JOURNAL = "journal.jsonl";
+
+    private final AsrJobConfig config;
+    private final AsrClient asrClient;
+    private final Path journalPath;
+    private final Path spoolDir;
+    private final Map<String, Job> jobs = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final ExecutorService workers;
+    private final ScheduledExecutorService compactor;
+    private final LongAdder filesDone = new LongAdder();
+    private final LongAdder filesFailed = new LongAdder();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger queued = new AtomicInteger();
+    private FileChannel journal;
+
+    public AsrJobQueue(AsrJobConfig config, AsrClient asrClient) {
+        this.config = config;
+        this.asrClient = asrClient;
+        this.journalPath = config.getDir().resolve(JOURNAL);
+        this.spoolDir = config.getDir().resolve("spool");
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(config.getConcurrency(), r -> {
+            Thread t = new Thread(r, "asr-job-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "asr-job-compactor");
+            t.setDaemon(true);
+            return t;
+        });
+        SpeechMetrics.gauge("speech.asr.jobs.files", "Job files waiting or being transcribed", queued,
+                AtomicInteger::get, "state", "queued");
+        SpeechMetrics.gauge("speech.asr.jobs.files", "Job files waiting or being transcribed", running,
+                AtomicInteger::get, "state", "running");
+        SpeechMetrics.counter("speech.asr.jobs.completed", "Job files finished", filesDone, LongAdder::sum,
+                "result", "done");
+        SpeechMetrics.counter("speech.asr.jobs.completed", "Job files finished", filesFailed, LongAdder::sum,
+                "result", "failed");
+    }
+
+    /**
+     * Replay the journal, compact it and resume unfinished files.
+     */
+    public void start() {
+        try {
+            Files.createDirectories(spoolDir);
+            replay();
+            synchronized (this) {
+                compact();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to open ASR job journal in " + config.getDir(), e);
+        }
+        int resumed = 0;
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                for (int i = 0; i < job.files.size(); i++) {
+                    if (job.files.get(i).state == FileState.QUEUED) {
+                        enqueue(job, i);
+                        resumed++;
+                    }
+                }
+            }
+        }
+        compactor.scheduleWithFixedDelay(this::compactQuietly, 1, 1, TimeUnit.HOURS);
+        LOG.info("ASR job queue started in {}: {} jobs, {} files resumed, concurrency {}",
+                config.getDir(), jobs.size(), resumed, config.getConcurrency());
+    }
+
+    public void close() {
+        compactor.shutdownNow();
+        workers.shutdownNow();
+        synchronized (this) {
+            try {
+                if (journal != null) {
+                    journal.close();
+                }
+            } catch (IOException e) {
+                LOG.warn("Error closing ASR job journal", e);
+            }
+        }
+    }
+
+    /**
+     * Directory new uploads for a job are spooled into before {@link #submit} is called.
+     */
+    public Path newSpoolDir(String jobId) throws IOException {
+        return Files.createDirectories(spoolDir.resolve(jobId));
+    }
+
+    /**
+     * Remove the spool of a submission that was rejected before {@link #submit} was called.
+     */
+    public void discardSpool(String jobId) {
+        deleteQuietly(spoolDir.resolve(jobId));
+    }
+
+    public static String newJobId() {
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    public AsrJobConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Journal a job and queue its files. The audio must already be on disk.
+     */
+    public Job submit(String jobId, List<JobFile> files) throws IOException {
+        if (files.isEmpty()) {
+            throw new IllegalArgumentException("A job needs at least one audio file");
+        }
+        Job job = new Job(jobId, System.currentTimeMillis(), files);
+        append(job.createdRecord(), () -> jobs.put(jobId, job));
+        for (int i = 0; i < files.size(); i++) {
+            enqueue(job, i);
+        }
+        LOG.info("ASR job {} queued with {} files", jobId, files.size());
+        return job;
+    }
+
+    /**
+     * @return the job, or null when unknown or already compacted away
+     */
+    public Job get(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    public Stats getStats() {
+        int active;
+        synchronized (jobs) {
+            active = (int) jobs.values().stream().filter(job -> !job.isDone()).count();
+        }
+        return new Stats(active, queued.get(), running.get(), filesDone.sum(), filesFailed.sum());
+    }
+
+    private void enqueue(Job job, int index) {
+        queued.incrementAndGet();
+        workers.execute(() -> {
+            queued.decrementAndGet();
+            transcribe(job, index);
+        });
+    }
+
+    private void transcribe(Job job, int index) {
+        JobFile file = job.files.get(index);
+        job.markRunning(index);
+        running.incrementAndGet();
+        String text = null;
+        String error = null;
+        try {
+            text = asrClient.transcribeWithHandler(file.path, file.format, file.sampleRate, new AsrResultHandler());
+        } catch (Exception e) {
+            LOG.warn("ASR job {} file {} failed: {}", job.id, file.name, e.getMessage());
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        } finally {
+            running.decrementAndGet();
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            // Shutting down: leave the file without a result so it is resumed on the next start
+            return;
+        }
+        try {
+            recordResult(job, index, text, error, System.currentTimeMillis());
+        } catch (IOException e) {
+            LOG.error("Failed to journal result of ASR job {} file {}", job.id, file.name, e);
+            return;
+        }
+        if (error == null) {
+            filesDone.increment();
+        } else {
+            filesFailed.increment();
+        }
+        if (file.spooled) {
+            deleteQuietly(file.path);
+        }
+        if (job.isDone()) {
+            LOG.info("ASR job {} finished: {} files, {} failed", job.id, job.files.size(), job.failedCount());
+            deleteQuietly(spoolDir.resolve(job.id));
+        }
+    }
+
+    private void recordResult(Job job, int index, String text, String error, long at) throws IOException {
+        ObjectNode record = OBJECT_MAPPER.createObjectNode();
+        record.put("type", "result");
+        record.put("id", job.id);
+        record.put("index", index);
+        record.put("at", at);
+        if (error == null) {
+            record.put("text", text != null ? text : "");
+        } else {
+            record.put("error", error);
+        }
+        append(record, () -> job.complete(index, text, error, at));
+    }
+
+    /**
+     * Journal a record, then apply it in memory under the same lock, so a compaction running in between can neither
+     * drop the record from the rewritten journal nor miss the state it describes.
+     */
+    private synchronized void append(ObjectNode record, Runnable apply) throws IOException {
+        if (journal == null) {
+            throw new IllegalStateException("ASR job queue is not started");
+        }
+        byte[] line = (OBJECT_MAPPER.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        // A submission is acknowledged only once it would survive a crash
+        journal.force(false);
+        apply.run();
+    }
+
+    private void replay() throws IOException {
+        if (!Files.exists(journalPath)) {
+            return;
+        }
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    apply(OBJECT_MAPPER.readTree(line));
+                } catch (IOException | RuntimeException e) {
+                    // Most likely the last line of a crash mid-append
+                    LOG.warn("Skipping unreadable ASR job journal line {}: {}", lineNumber, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void apply(JsonNode record) {
+        String id = record.path("id").asText();
+        if ("created".equals(record.path("type").asText())) {
+            List<JobFile> files = new ArrayList<>();
+            for (JsonNode node : record.path("files")) {
+                files.add(new JobFile(node.path("name").asText(), node.path("format").asText("pcm"),
+                        node.path("sampleRate").asInt(16000), Path.of(node.path("path").asText()),
+                        node.path("spooled").asBoolean(true)));
+            }
+            Job job = new Job(id, record.path("createdAt").asLong(), files);
+            for (int i = 0; i < files.size(); i++) {
+                if (!Files.isReadable(files.get(i).path)) {
+                    job.complete(i, null, "Audio file missing after restart", job.createdAt);
+                }
+            }
+            jobs.put(id, job);
+        } else if ("result".equals(record.path("type").asText())) {
+            Job job = jobs.get(id);
+            if (job != null) {
+                job.complete(record.path("index").asInt(), record.path("text").asText(null),
+                        record.path("error").asText(null), record.path("at").asLong());
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            synchronized (this) {
+                compact();
+            }
+        } catch (IOException e) {
+            LOG.warn("ASR job journal compaction failed", e);
+        }
+    }
+
+    /**
+     * Rewrite the journal with only the jobs still retained. Callers hold the queue lock.
+     */
+    private void compact() throws IOException {
+        long cutoff = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(config.getRetentionHours());
+        List<Job> kept = new ArrayList<>();
+        synchronized (jobs) {
+            jobs.values().removeIf(job -> {
+                if (job.isDone() && job.finishedAt() < cutoff) {
+                    deleteQuietly(spoolDir.resolve(job.id));
+                    return true;
+                }
+                return false;
+            });
+            kept.addAll(jobs.values());
+        }
+        Path tmp = journalPath.resolveSibling(JOURNAL + ".tmp");
+        try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder lines = new StringBuilder();
+            for (Job job : kept) {
+                job.appendRecords(lines);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        Files.move(tmp, journalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+            } else {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            LOG.debug("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    public enum FileState {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    /**
+     * One audio file of a job. Spooled files are owned by the queue and deleted once transcribed; manifest files are
+     * read in place.
+     */
+    public static final class JobFile {
+        private final String name;
+        private final String format;
+        private final int sampleRate;
+        private final Path path;
+        private final boolean spooled;
+        private volatile FileState state = FileState.QUEUED;
+        private volatile String text;
+        private volatile String error;
+
+        public JobFile(String name, String format, int sampleRate, Path path, boolean spooled) {
+            this.name = name;
+            this.format = format;
+            this.sampleRate = sampleRate;
+            this.path = path;
+            this.spooled = spooled;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public FileState getState() {
+            return state;
+        }
+
+        /** Recognized text once {@link FileState#DONE} */
+        public String getText() {
+            return text;
+        }
+
+        /** Failure reason once {@link FileState#FAILED} */
+        public String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * A submitted batch; progress is updated by the workers as files finish.
+     */
+    public static final class Job {
+        private final String id;
+        private final long createdAt;
+        private final List<JobFile> files;
+        private long finishedAt;
+
+        Job(String id, long createdAt, List<JobFile> files) {
+            this.id = id;
+            this.createdAt = createdAt;
+            this.files = List.copyOf(files);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public List<JobFile> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return "queued" before any file started, "done" once every file has a result, otherwise "running"
+         */
+        public synchronized String getState() {
+            if (isDone()) {
+                return "done";
+            }
+            boolean started = files.stream().anyMatch(f -> f.state != FileState.QUEUED);
+            return started ? "running" : "queued";
+        }
+
+        public synchronized boolean isDone() {
+            return files.stream().allMatch(f -> f.state == FileState.DONE || f.state == FileState.FAILED);
+        }
+
+        public synchronized int completedCount() {
+            return (int) files.stream().filter(f -> f.state == FileState.DONE).count();
+        }
+
+        public synchronized int failedCount() {
+            return (int) files.stream().filter(f -> f.state == FileState.FAILED).count();
+        }
+
+        synchronized long finishedAt() {
+            return finishedAt;
+        }
+
+        synchronized void markRunning(int index) {
+            files.get(index).state = FileState.RUNNING;
+        }
+
+        synchronized void complete(int index, String text, String error, long at) {
+            if (index < 0 || index >= files.size()) {
+                return;
+            }
+            JobFile file = files.get(index);
+            file.text = error == null ? text : null;
+            file.error = error;
+            file.state = error == null ? FileState.DONE : FileState.FAILED;
+            finishedAt = Math.max(finishedAt, at);
+        }
+
+        ObjectNode createdRecord() {
+            ObjectNode created = OBJECT_MAPPER.createObjectNode();
+            created.put("type", "created");
+            created.put("id", id);
+            created.put("createdAt", createdAt);
+            ArrayNode array = created.putArray("files");
+            for (JobFile file : files) {
+                ObjectNode node = array.addObject();
+                node.put("name", file.name);
+                node.put("format", file.format);
+                node.put("sampleRate", file.sampleRate);
+                node.put("path", file.path.toString());
+                node.put("spooled", file.spooled);
+            }
+            return created;
+        }
+
+        synchronized void appendRecords(StringBuilder out) throws IOException {
+            out.append(OBJECT_MAPPER.writeValueAsString(createdRecord())).append('\n');
+            for (int i = 0; i < files.size(); i++) {
+                JobFile file = files.get(i);
+                if (file.state == FileState.DONE || file.state == FileState.FAILED) {
+                    ObjectNode result = OBJECT_MAPPER.createObjectNode();
+                    result.put("type", "result");
+                    result.put("id", id);
+                    result.put("index", i);
+                    result.put("at", finishedAt);
+                    if (file.error == null) {
+                        result.put("text", file.text != null ? file.text : "");
+                    } else {
+                        result.put("error", file.error);
+                    }
+                    out.append(OBJECT_MAPPER.writeValueAsString(result)).append('\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Job queue snapshot.
+     */
+    public static final class Stats {
+        private final int activeJobs;
+        private final int queuedFiles;
+        private final int runningFiles;
+        private final long filesDone;
+        private final long filesFailed;
+
+        Stats(int activeJobs, int queuedFiles, int runningFiles, long filesDone, long filesFailed) {
+            this.activeJobs = activeJobs;
+            this.queuedFiles = queuedFiles;
+            this.runningFiles = runningFiles;
+            this.filesDone = filesDone;
+            this.filesFailed = filesFailed;
+        }
+
+        /** Jobs with files still waiting or running */
+        public int getActiveJobs() {
+            return activeJobs;
+        }
+
+        public int getQueuedFiles() {
+            return queuedFiles;
+        }
+
+        public int getRunningFiles() {
+            return runningFiles;
+        }
+
+        /** Files transcribed since start */
+        public long getFilesDone() {
+            return filesDone;
+        }
+
+        /** Files that failed since start */
+        public long getFilesFailed() {
+            return filesFailed;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{activeJobs=" + activeJobs + ", queued=" + queuedFiles + ", running=" + runningFiles
+                    + ", done=" + filesDone + ", failed=" + filesFailed + '}';
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.tangyu.server;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Streaming multipart/form-data reader: part bodies are copied straight to an output stream, so uploads of any size
+ * pass through a fixed buffer.
+ *
+ * Call {@link #nextPart()}, then optionally {@link #copyBody(OutputStream, long)}; an unread body is skipped.
+ */
+final class MultipartReader {
+    private static final int MAX_HEADER_LINE = 8 * 1024;
+
+    private final InputStream in;
+    private final byte[] delimiter;
+    private boolean bodyPending;
+    private boolean finished;
+    private String name;
+    private String filename;
+    private String contentType;
+
+    MultipartReader(InputStream in, String boundary) throws IOException {
+        this.in = new BufferedInputStream(in, 64 * 1024);
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        // The first boundary has no CRLF in front of it; start as if it had already been matched
+        readUntilDelimiter(OutputStream.nullOutputStream(), Long.MAX_VALUE, 2);
+    }
+
+    /**
+     * Extract the boundary parameter from a Content-Type header.
+     *
+     * @return the boundary, or null when the header is not multipart/form-data
+     */
+    static String boundaryOf(String contentType) {
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/form-data")) {
+            return null;
+        }
+        String boundary = parameter(contentType, "boundary");
+        return boundary != null && !boundary.isEmpty() ? boundary : null;
+    }
+
+    /**
+     * Advance to the next part and read its headers.
+     *
+     * @return false after the closing boundary
+     */
+    boolean nextPart() throws IOException {
+        if (bodyPending) {
+            copyBody(OutputStream.nullOutputStream(), Long.MAX_VALUE);
+        }
+        if (finished) {
+            return false;
+        }
+        name = null;
+        filename = null;
+        contentType = null;
+        String line;
+        while (!(line = readLine()).isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String header = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+            if (header.equals("content-disposition")) {
+                name = parameter(value, "name");
+                filename = parameter(value, "filename");
+            } else if (header.equals("content-type")) {
+                contentType = value;
+            }
+        }
+        bodyPending = true;
+        return true;
+    }
+
+    /** Form field name of the current part */
+    String name() {
+        return name;
+    }
+
+    /** File name of the current part, null for plain form fields */
+    String filename() {
+        return filename;
+    }
+
+    String contentType() {
+        return contentType;
+    }
+
+    /**
+     * Copy the current part's body.
+     *
+     * @return bytes copied
+     * @throws IOException when the body exceeds {@code maxBytes} or the stream ends early
+     */
+    long copyBody(OutputStream out, long maxBytes) throws IOException {
+        if (!bodyPending) {
+            throw new IllegalStateException("No part body to read");
+        }
+        bodyPending = false;
+        return readUntilDelimiter(out, maxBytes, 0);
+    }
+
+    /**
+     * Read a small form field value.
+     */
+    String readValue() throws IOException {
+        ByteArrayOutputStream value = new ByteArrayOutputStream();
+        copyBody(value, MAX_HEADER_LINE);
+        return value.toString(StandardCharsets.UTF_8);
+    }
+
+    private long readUntilDelimiter(OutputStream out, long maxBytes, int matched) throws IOException {
+        long copied = 0;
+        while (matched < delimiter.length) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Multipart body ended before the closing boundary");
+            }
+            if (b == (delimiter[matched] & 0xff)) {
+                matched++;
+                continue;
+            }
+            // The delimiter starts with CR, which cannot occur inside it again, so a mismatch only needs a restart
+            if (matched > 0) {
+                copied += matched;
+                out.write(delimiter, 0, matched);
+                matched = 0;
+            }
+            if (b == (delimiter[0] & 0xff)) {
+                matched = 1;
+            } else {
+                out.write(b);
+                copied++;
+            }
+            if (copied > maxBytes) {
+                throw new IOException("Multipart part exceeds " + maxBytes + " bytes");
+            }
+        }
+        int first = in.read();
+        int second = in.read();
+        if (first == '-' && second == '-') {
+            finished = true;
+        } else if (first != '\r' || second != '\n') {
+            throw new IOException("Malformed multipart boundary");
+        }
+        return copied;
+    }
+
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                throw new EOFException("Multipart headers ended unexpectedly");
+            }
+            if (line.size() >= MAX_HEADER_LINE) {
+                throw new IOException("Multipart header line too long");
+            }
+            line.write(b);
+        }
+        String text = line.toString(StandardCharsets.UTF_8);
+        return text.endsWith("\r") ? text.substring(0, text.length() - 1) : text;
+    }
+
+    private static String parameter(String header, String key) {
+        for (String part : header.split(";")) {
+            String[] kv = part.trim().split("=", 2);
+            if (kv.length == 2 && kv[0].trim().equalsIgnoreCase(key)) {
+                String value = kv[1].trim();
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value;
+            }
+        }
+        return null;
+    }
+}
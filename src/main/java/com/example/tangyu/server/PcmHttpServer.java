@@ -1,5 +1,6 @@
 package com.example.tangyu.server;
 
+import com.example.tangyu.speech.FileTtsSink;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -10,31 +11,72 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * 极简 HTTP 文件服务，只支持 GET /pcm?name=xxx 从指定目录读取文件。
  * 用于前端拉取已生成的 PCM/WAV 等音频文件。
+ *
+ * 文件经 {@link FileChannel#transferTo} 流式写出，不整体读入内存；支持单段 Range 请求（便于拖动与断点续传）
+ * 以及基于 ETag / Last-Modified 的条件请求（304）。请求在固定大小的工作线程池上处理。
+ *
+ * 仍在写入的文件（存在 {@link FileTtsSink#inProgressMarker} 标记）加 {@code follow=true} 时以 chunked
+ * 方式边写边发，直到写入方删除标记；不加 follow 时只返回当前已写入的部分，且不带 ETag。
+ * 跟随期间会占用一个工作线程。
  */
 public class PcmHttpServer {
     private static final Logger LOG = LoggerFactory.getLogger(PcmHttpServer.class);
+    private static final int DEFAULT_WORKER_THREADS = 8;
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+    /** 跟随模式下检查文件增长的间隔 */
+    private static final long FOLLOW_POLL_MILLIS = 20;
+    /** 标记仍在但文件长时间不增长（写入方异常退出）时结束跟随 */
+    private static final long FOLLOW_IDLE_TIMEOUT_MILLIS = 30_000;
 
     private final int port;
     private final Path baseDir;
+    private final int workerThreads;
     private HttpServer server;
+    private ExecutorService executor;
 
     public PcmHttpServer(int port, Path baseDir) {
+        this(port, baseDir, DEFAULT_WORKER_THREADS);
+    }
+
+    /**
+     * @param workerThreads 处理请求的线程数
+     */
+    public PcmHttpServer(int port, Path baseDir, int workerThreads) {
         this.port = port;
-        this.baseDir = baseDir;
+        this.baseDir = baseDir.toAbsolutePath().normalize();
+        this.workerThreads = workerThreads > 0 ? workerThreads : DEFAULT_WORKER_THREADS;
     }
 
     public void start() {
         try {
             server = HttpServer.create(new InetSocketAddress(port), 0);
             server.createContext("/pcm", new FileHandler());
-            server.setExecutor(null);
+            AtomicInteger threadIndex = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(workerThreads, r -> {
+                Thread t = new Thread(r, "pcm-http-" + threadIndex.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            server.setExecutor(executor);
             server.start();
             LOG.info("PCM HTTP server started on port {}, baseDir={}", port, baseDir.toAbsolutePath());
         } catch (IOException e) {
@@ -46,6 +88,9 @@ public class PcmHttpServer {
         if (server != null) {
             server.stop(0);
         }
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     private class FileHandler implements HttpHandler {
@@ -72,14 +117,214 @@ public class PcmHttpServer {
                 writeJson(exchange, 404, "{\"error\":\"文件不存在或不可读\"}");
                 return;
             }
+            boolean inProgress = Files.exists(FileTtsSink.inProgressMarker(target));
+            try (FileChannel channel = FileChannel.open(target, StandardOpenOption.READ)) {
+                if (inProgress && isFollow(params.get("follow"))) {
+                    followFile(exchange, target, channel);
+                } else if (inProgress) {
+                    servePartial(exchange, target, channel);
+                } else {
+                    serveFile(exchange, target, channel);
+                }
+            }
+        }
+
+        /**
+         * 边写边发：新数据写入后立即以 chunk 发出，标记删除后发完剩余数据结束。
+         */
+        private void followFile(HttpExchange exchange, Path target, FileChannel channel) throws IOException {
+            Path marker = FileTtsSink.inProgressMarker(target);
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "application/octet-stream");
+            headers.set("Cache-Control", "no-store");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                WritableByteChannel out = Channels.newChannel(os);
+                long position = 0;
+                long lastGrowthNanos = System.nanoTime();
+                while (true) {
+                    // 先看标记再取长度，标记消失后的最后一次读取不会漏掉尾部数据
+                    boolean writing = Files.exists(marker);
+                    long size = channel.size();
+                    if (size > position) {
+                        position += transfer(channel, position, size - position, out);
+                        os.flush();
+                        lastGrowthNanos = System.nanoTime();
+                        continue;
+                    }
+                    if (!writing) {
+                        break;
+                    }
+                    if (System.nanoTime() - lastGrowthNanos > FOLLOW_IDLE_TIMEOUT_MILLIS * 1_000_000L) {
+                        LOG.warn("{} stopped growing while marked in progress, ending follow", target.getFileName());
+                        break;
+                    }
+                    try {
+                        Thread.sleep(FOLLOW_POLL_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * 写入中的文件不做缓存校验，只返回当前快照。
+         */
+        private void servePartial(HttpExchange exchange, Path target, FileChannel channel) throws IOException {
+            long size = channel.size();
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "application/octet-stream");
+            headers.set("Cache-Control", "no-store");
+            headers.set("Content-Disposition", "attachment; filename=\"" + target.getFileName() + "\"");
+            exchange.sendResponseHeaders(200, size > 0 ? size : -1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                transfer(channel, 0, size, Channels.newChannel(os));
+            }
+        }
+
+        private void serveFile(HttpExchange exchange, Path target, FileChannel channel) throws IOException {
+            long size = channel.size();
+            Instant modified = Files.getLastModifiedTime(target).toInstant().truncatedTo(ChronoUnit.SECONDS);
+            String etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(modified.toEpochMilli()) + "\"";
+            Headers requestHeaders = exchange.getRequestHeaders();
             Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", etag);
+            headers.set("Last-Modified", HTTP_DATE.format(ZonedDateTime.ofInstant(modified, ZoneOffset.UTC)));
+            headers.set("Accept-Ranges", "bytes");
+
+            if (notModified(requestHeaders, etag, modified)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
             headers.set("Content-Type", "application/octet-stream");
             headers.set("Content-Disposition", "attachment; filename=\"" + target.getFileName() + "\"");
-            byte[] data = Files.readAllBytes(target);
-            exchange.sendResponseHeaders(200, data.length);
+            long start = 0;
+            long length = size;
+            int status = 200;
+            String range = requestHeaders.getFirst("Range");
+            String ifRange = requestHeaders.getFirst("If-Range");
+            if (range != null && (ifRange == null || ifRange.trim().equals(etag))) {
+                long[] bounds = parseRange(range, size);
+                if (bounds == null) {
+                    // 多段或格式不支持时按完整文件返回
+                    LOG.debug("Ignoring unsupported range {}", range);
+                } else if (bounds.length == 0) {
+                    headers.set("Content-Range", "bytes */" + size);
+                    exchange.sendResponseHeaders(416, -1);
+                    exchange.close();
+                    return;
+                } else {
+                    start = bounds[0];
+                    length = bounds[1] - bounds[0] + 1;
+                    status = 206;
+                    headers.set("Content-Range", "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+                }
+            }
+
+            exchange.sendResponseHeaders(status, length > 0 ? length : -1);
             try (OutputStream os = exchange.getResponseBody()) {
-                os.write(data);
+                transfer(channel, start, length, Channels.newChannel(os));
+            }
+        }
+    }
+
+    /**
+     * @return 实际写出的字节数
+     */
+    private static long transfer(FileChannel channel, long position, long count, WritableByteChannel out)
+            throws IOException {
+        long written = 0;
+        while (written < count) {
+            long n = channel.transferTo(position + written, count - written, out);
+            if (n <= 0) {
+                break;
+            }
+            written += n;
+        }
+        return written;
+    }
+
+    private static boolean isFollow(String value) {
+        return "true".equalsIgnoreCase(value) || "1".equals(value);
+    }
+
+    /**
+     * If-None-Match 优先；没有时才看 If-Modified-Since。
+     */
+    private static boolean notModified(Headers requestHeaders, String etag, Instant modified) {
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String t = tag.trim();
+                if (t.startsWith("W/")) {
+                    t = t.substring(2);
+                }
+                if (t.equals("*") || t.equals(etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        if (ifModifiedSince != null) {
+            try {
+                Instant since = ZonedDateTime.parse(ifModifiedSince.trim(), HTTP_DATE).toInstant();
+                return !modified.isAfter(since);
+            } catch (Exception ignore) {
+                // 无法解析的日期按无条件请求处理
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析单段 Range（bytes=a-b、bytes=a-、bytes=-n）。
+     *
+     * @return [start, end]（含）；范围无法满足时返回空数组；多段或格式不支持时返回 null
+     */
+    static long[] parseRange(String header, long size) {
+        String value = header.trim();
+        if (!value.startsWith("bytes=") || value.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = value.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                if (last.isEmpty()) {
+                    return null;
+                }
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0 || size == 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (end < start) {
+                    return null;
+                }
+                if (start >= size) {
+                    return new long[0];
+                }
+                end = Math.min(end, size - 1);
             }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
@@ -0,0 +1,243 @@
+package com.example.tangyu.server;
+
+import com.example.tangyu.config.ServerPoolConfig;
+import com.example.tangyu.metrics.SpeechMetrics;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded executor for {@link com.sun.net.httpserver.HttpServer} that sheds load instead of piling up threads.
+ *
+ * Exchanges run on a fixed number of workers behind a bounded queue. When the queue is full, or an exchange has
+ * waited longer than the queue timeout, it still runs, but {@link #admissionFilter()} answers it with 503 and
+ * Retry-After before any handler sees it. Saturated exchanges are answered on a separate thread so the server's
+ * dispatcher keeps accepting connections.
+ */
+public class ServerWorkerPool implements Executor {
+    private static final Logger LOG = LoggerFactory.getLogger(ServerWorkerPool.class);
+    private static final ThreadLocal<String> REJECTION = new ThreadLocal<>();
+    private static final int REJECT_QUEUE_CAPACITY = 1024;
+
+    private final ServerPoolConfig config;
+    private final ThreadPoolExecutor workers;
+    private final ThreadPoolExecutor rejector;
+    private final long queueTimeoutNanos;
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    public ServerWorkerPool(ServerPoolConfig config, String name) {
+        this.config = config;
+        this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(config.getQueueTimeoutMillis());
+        ThreadFactory factory = config.isVirtualThreads() ? virtualThreadFactory(name + "-") : null;
+        if (factory == null) {
+            if (config.isVirtualThreads()) {
+                LOG.warn("Virtual threads are not available on this JVM, using platform workers");
+            }
+            factory = daemonFactory(name + "-");
+        }
+        BlockingQueue<Runnable> queue = config.getQueueCapacity() > 0
+                ? new ArrayBlockingQueue<>(config.getQueueCapacity())
+                : new SynchronousQueue<>();
+        this.workers = new ThreadPoolExecutor(config.getWorkerThreads(), config.getWorkerThreads(),
+                60, TimeUnit.SECONDS, queue, factory);
+        this.workers.allowCoreThreadTimeOut(true);
+        this.rejector = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REJECT_QUEUE_CAPACITY), daemonFactory(name + "-reject-"));
+        SpeechMetrics.gauge("speech.server.pool.active", "Workers handling a request", workers,
+                ThreadPoolExecutor::getActiveCount, "pool", name);
+        SpeechMetrics.gauge("speech.server.pool.queued", "Requests waiting for a worker", workers,
+                w -> w.getQueue().size(), "pool", name);
+        SpeechMetrics.counter("speech.server.pool.requests", "Requests by admission result", accepted,
+                LongAdder::sum, "pool", name, "result", "accepted");
+        SpeechMetrics.counter("speech.server.pool.requests", "Requests by admission result", rejected,
+                LongAdder::sum, "pool", name, "result", "rejected");
+        SpeechMetrics.counter("speech.server.pool.requests", "Requests by admission result", expired,
+                LongAdder::sum, "pool", name, "result", "expired");
+    }
+
+    @Override
+    public void execute(Runnable exchange) {
+        long enqueuedNanos = System.nanoTime();
+        try {
+            workers.execute(() -> runQueued(exchange, enqueuedNanos));
+            accepted.increment();
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            try {
+                rejector.execute(() -> runRejected(exchange, "saturated"));
+            } catch (RejectedExecutionException overflow) {
+                // Even the reject queue is full; answering here stalls accepts briefly but never drops the socket
+                runRejected(exchange, "saturated");
+            }
+        }
+    }
+
+    /**
+     * Filter to add to every context served by this pool; it answers rejected exchanges with 503.
+     */
+    public Filter admissionFilter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                String reason = REJECTION.get();
+                if (reason == null) {
+                    chain.doFilter(exchange);
+                    return;
+                }
+                LOG.debug("Rejecting {} {}: {}", exchange.getRequestMethod(), exchange.getRequestURI(), reason);
+                byte[] body = ("{\"error\":\"Server busy, retry later\",\"reason\":\"" + reason + "\"}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(config.getRetryAfterSeconds()));
+                exchange.getResponseHeaders().set("Connection", "close");
+                exchange.sendResponseHeaders(503, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Rejects requests the worker pool could not take";
+            }
+        };
+    }
+
+    public Stats getStats() {
+        return new Stats(workers.getActiveCount(), config.getWorkerThreads(), workers.getQueue().size(),
+                config.getQueueCapacity(), accepted.sum(), rejected.sum(), expired.sum());
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+        rejector.shutdown();
+    }
+
+    private void runQueued(Runnable exchange, long enqueuedNanos) {
+        if (System.nanoTime() - enqueuedNanos > queueTimeoutNanos) {
+            // The client has likely given up; answering quickly frees the worker for requests still worth serving
+            expired.increment();
+            runRejected(exchange, "queue timeout");
+            return;
+        }
+        exchange.run();
+    }
+
+    private static void runRejected(Runnable exchange, String reason) {
+        REJECTION.set(reason);
+        try {
+            exchange.run();
+        } finally {
+            REJECTION.remove();
+        }
+    }
+
+    private static ThreadFactory daemonFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Thread.ofVirtual() through reflection, since the build targets Java 17.
+     *
+     * @return a virtual thread factory, or null before Java 21
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Worker pool saturation snapshot.
+     */
+    public static final class Stats {
+        private final int active;
+        private final int workers;
+        private final int queued;
+        private final int queueCapacity;
+        private final long accepted;
+        private final long rejected;
+        private final long expired;
+
+        Stats(int active, int workers, int queued, int queueCapacity, long accepted, long rejected, long expired) {
+            this.active = active;
+            this.workers = workers;
+            this.queued = queued;
+            this.queueCapacity = queueCapacity;
+            this.accepted = accepted;
+            this.rejected = rejected;
+            this.expired = expired;
+        }
+
+        /** Workers currently handling a request */
+        public int getActive() {
+            return active;
+        }
+
+        public int getWorkers() {
+            return workers;
+        }
+
+        /** Requests waiting for a worker */
+        public int getQueued() {
+            return queued;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        /** Requests that got a worker or a queue slot */
+        public long getAccepted() {
+            return accepted;
+        }
+
+        /** Requests turned away because workers and queue were full */
+        public long getRejected() {
+            return rejected;
+        }
+
+        /** Queued requests rejected after waiting longer than the queue timeout */
+        public long getExpired() {
+            return expired;
+        }
+
+        /** Busy workers plus queued requests, relative to what the pool can hold */
+        public double getSaturation() {
+            return (double) (active + queued) / (workers + queueCapacity);
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{active=" + active + "/" + workers + ", queued=" + queued + "/" + queueCapacity
+                    + ", accepted=" + accepted + ", rejected=" + rejected + ", expired=" + expired + '}';
+        }
+    }
+}
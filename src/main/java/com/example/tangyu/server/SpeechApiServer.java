@@ -1,41 +1,105 @@
 package com.example.tangyu.server;
 
+import com.example.tangyu.audio.PolyphaseResampler;
+import com.example.tangyu.audio.WavHeader;
+import com.example.tangyu.config.AsrJobConfig;
 import com.example.tangyu.config.CredentialConfig;
 import com.example.tangyu.config.DashScopeConfig;
+import com.example.tangyu.config.ServerPoolConfig;
+import com.example.tangyu.config.TtsCacheConfig;
+import com.example.tangyu.config.TtsConfig;
+import com.example.tangyu.config.TtsHedgeConfig;
+import com.example.tangyu.config.TtsWarmupConfig;
+import com.example.tangyu.metrics.SpeechMetrics;
 import com.example.tangyu.speech.AsrClient;
+import com.example.tangyu.speech.AsrResultHandler;
+import com.example.tangyu.speech.HedgedTtsRouter;
+import com.example.tangyu.speech.NlsTtsEngine;
+import com.example.tangyu.speech.RealtimeTtsEngine;
+import com.example.tangyu.speech.TtsAudioCache;
 import com.example.tangyu.speech.TtsClient;
+import com.example.tangyu.speech.TtsEngine;
+import com.example.tangyu.speech.TtsOutputSink;
+import com.example.tangyu.speech.TtsPhraseWarmer;
+import com.example.tangyu.speech.TtsRealtimeClient;
+import com.example.tangyu.speech.TtsSessionPool;
 import com.example.tangyu.speech.TokenClient;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Lightweight HTTP server that exposes ASR and TTS as simple REST endpoints.
  *
  * Endpoints:
- *  - GET  /health                 -> 200 OK
+ *  - GET  /health                 -> 200 { "status": "ok", "pool": <worker pool stats> }, or 503
+ *                                    { "status": "warming" } until the TTS phrase warmup is done
+ *  - GET  /metrics                -> ASR, TTS, robot and server metrics in Prometheus text format
  *  - POST /api/asr?format=pcm&sampleRate=16000 (body: audio bytes)
- *        -> { "result": <Fun-ASR JSON> }
+ *        -> { "result": <Fun-ASR JSON>, "text": "<recognized text, deduplicated>" }
+ *  - POST /api/asr with "Accept: application/x-ndjson" or ?partial=true (same body)
+ *        -> one JSON line per result as recognition runs: {"type":"partial"|"sentence","text":...},
+ *           ending with {"type":"final","text":...} or {"type":"error","text":...}
+ *  - POST /api/asr/jobs?format=pcm&sampleRate=16000
+ *        body: multipart/form-data with one or more audio file parts (format/sampleRate fields apply to the files
+ *        after them), or JSON { format, sampleRate, files: [{ path, name, format, sampleRate }] } naming files under
+ *        ASR_JOBS_INPUT_DIR
+ *        -> 202 { "id": ..., "state": "queued", ... } with Location of the job; 400 for a bad upload, 500 when
+ *           the server cannot spool or journal it
+ *  - GET  /api/asr/jobs/{id}       -> { "id", "state": queued|running|done, "total", "completed", "failed", "files" }
+ *  - GET  /api/asr/jobs/{id}/results
+ *        -> NDJSON, one { "name", "text" } or { "name", "error" } line per finished file
  *  - POST /api/tts (body: JSON { text, voice, format, sampleRate })
  *        -> { "audioBase64": "...", "format": "...", "sampleRate": 16000 }
+ *  - POST /api/tts with "Accept: audio/*" or ?stream=true (same JSON body)
+ *        -> raw audio from the realtime engine, sent with chunked transfer encoding as it is
+ *           synthesized; PCM is wrapped in a WAV header unless format is "pcm", and sampleRate, if given, must
+ *           match the realtime engine's rate. With
+ *           TTS_HEDGE_ENABLED=true the request is hedged across the realtime and NLS engines.
+ *
+ * Requests run on a bounded {@link ServerWorkerPool} (SPEECH_SERVER_WORKERS, SPEECH_SERVER_QUEUE); when it is
+ * saturated they are answered with 503 and Retry-After instead of queueing without limit. Streaming synthesis runs
+ * on a second pool of the same size, and is rejected the same way when that pool is full.
+ *
+ * Phrases listed in DASHSCOPE_TTS_WARMUP_PHRASES / DASHSCOPE_TTS_WARMUP_FILE are synthesized into the cache of the
+ * realtime client that serves /api/tts when the server starts.
  *
  * Credentials are read from the same environment variables/system properties used by the CLI.
  */
@@ -46,8 +110,15 @@ public class SpeechApiServer {
     private final int port;
     private final AsrClient asrClient;
     private final TtsClient ttsClient;
+    private final TtsRealtimeClient ttsRealtimeClient;
+    private final TtsConfig ttsConfig;
+    private final TtsEngine hedgedTts;
+    private final ServerPoolConfig poolConfig;
+    private final AsrJobQueue jobQueue;
+    private final TtsPhraseWarmer phraseWarmer;
     private HttpServer server;
-    private ExecutorService executor;
+    private ServerWorkerPool workerPool;
+    private ExecutorService synthesisExecutor;
 
     public SpeechApiServer(int port) {
         this.port = port;
@@ -55,21 +126,74 @@ public class SpeechApiServer {
         CredentialConfig credentialConfig = CredentialConfig.fromEnvironment();
         TokenClient tokenClient = new TokenClient(credentialConfig);
         this.asrClient = new AsrClient(dashScopeConfig);
-        this.ttsClient = new TtsClient(credentialConfig, tokenClient);
+        // One cache for both clients; NLS entries are keyed under their own model name
+        TtsCacheConfig cacheConfig = TtsCacheConfig.fromEnvironment();
+        TtsAudioCache audioCache = cacheConfig.isEnabled() ? new TtsAudioCache(cacheConfig) : null;
+        this.ttsClient = new TtsClient(credentialConfig, tokenClient, audioCache);
+        this.ttsConfig = TtsConfig.fromEnvironment();
+        this.ttsRealtimeClient = new TtsRealtimeClient(ttsConfig, new TtsSessionPool(ttsConfig), audioCache);
+        TtsHedgeConfig hedgeConfig = TtsHedgeConfig.fromEnvironment();
+        // NLS is asked for PCM at the realtime rate so either engine's audio fits the same stream
+        this.hedgedTts = hedgeConfig.isEnabled() && "pcm".equalsIgnoreCase(ttsConfig.getFormat())
+                ? new HedgedTtsRouter(new RealtimeTtsEngine(ttsRealtimeClient, null),
+                        new NlsTtsEngine(ttsClient, hedgeConfig.getNlsVoice(), hedgeConfig.getNlsVoiceMap(), "pcm",
+                                ttsConfig.getSampleRate()),
+                        hedgeConfig)
+                : null;
+        this.poolConfig = ServerPoolConfig.fromEnvironment();
+        this.jobQueue = new AsrJobQueue(AsrJobConfig.fromEnvironment(), asrClient);
+        this.phraseWarmer = phraseWarmer(TtsWarmupConfig.fromEnvironment(), ttsRealtimeClient);
+    }
+
+    /**
+     * @return warmer for the configured phrases, or null when there is nothing to warm
+     */
+    private static TtsPhraseWarmer phraseWarmer(TtsWarmupConfig config, TtsRealtimeClient client) {
+        List<String> phrases = new ArrayList<>(config.getPhrases());
+        if (config.getFile() != null) {
+            phrases.addAll(TtsPhraseWarmer.loadCatalog(config.getFile()));
+        }
+        if (phrases.isEmpty()) {
+            return null;
+        }
+        if (client.getCacheStats() == null) {
+            LOG.warn("TTS cache is disabled, skipping phrase warmup");
+            return null;
+        }
+        return new TtsPhraseWarmer(client, phrases, config.getVoice(), config.getParallelism(),
+                TimeUnit.SECONDS.toMillis(config.getDeadlineSeconds()));
     }
 
     public void start() {
         try {
             server = HttpServer.create(new InetSocketAddress(port), 0);
-            executor = Executors.newCachedThreadPool();
-            server.setExecutor(executor);
+            workerPool = new ServerWorkerPool(poolConfig, "speech-api");
+            server.setExecutor(workerPool);
+            // Streaming synthesis gets its own threads, one per worker and no queue: a synthesis that cannot start
+            // at once is rejected, so cancelled syntheses still winding down cannot pile up threads
+            AtomicInteger synthesisThreads = new AtomicInteger();
+            ThreadPoolExecutor synthesisPool = new ThreadPoolExecutor(poolConfig.getWorkerThreads(),
+                    poolConfig.getWorkerThreads(), 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                Thread t = new Thread(r, "speech-api-tts-" + synthesisThreads.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            synthesisPool.allowCoreThreadTimeOut(true);
+            synthesisExecutor = synthesisPool;
 
-            server.createContext("/health", new HealthHandler());
-            server.createContext("/api/asr", new AsrHandler());
-            server.createContext("/api/tts", new TtsHandler());
+            addContext("/health", new HealthHandler());
+            addContext("/metrics", new MetricsHandler());
+            addContext("/api/asr", new AsrHandler());
+            addContext("/api/asr/jobs", new AsrJobsHandler());
+            addContext("/api/tts", new TtsHandler());
 
+            jobQueue.start();
+            if (phraseWarmer != null) {
+                phraseWarmer.start();
+            }
             server.start();
-            LOG.info("Speech API server started on port {}", port);
+            LOG.info("Speech API server started on port {} with {} workers, queue {}", port,
+                    poolConfig.getWorkerThreads(), poolConfig.getQueueCapacity());
         } catch (IOException e) {
             throw new IllegalStateException("Failed to start HTTP server", e);
         }
@@ -79,9 +203,31 @@ public class SpeechApiServer {
         if (server != null) {
             server.stop(0);
         }
-        if (executor != null) {
-            executor.shutdown();
+        if (workerPool != null) {
+            LOG.info("Speech API worker pool: {}", workerPool.getStats());
+            workerPool.shutdown();
+        }
+        if (synthesisExecutor != null) {
+            synthesisExecutor.shutdown();
         }
+        jobQueue.close();
+        ttsRealtimeClient.close();
+    }
+
+    /**
+     * Worker pool saturation, or null before {@link #start()}.
+     */
+    public ServerWorkerPool.Stats getPoolStats() {
+        return workerPool != null ? workerPool.getStats() : null;
+    }
+
+    public AsrJobQueue.Stats getJobStats() {
+        return jobQueue.getStats();
+    }
+
+    private void addContext(String path, HttpHandler handler) {
+        HttpContext context = server.createContext(path, handler);
+        context.getFilters().add(workerPool.admissionFilter());
     }
 
     private static void writeJson(HttpExchange exchange, int statusCode, Object body) throws IOException {
@@ -118,7 +264,27 @@ public class SpeechApiServer {
                 exchange.sendResponseHeaders(405, -1);
                 return;
             }
-            writeJson(exchange, 200, Map.of("status", "ok"));
+            if (phraseWarmer != null && !phraseWarmer.isReady()) {
+                writeJson(exchange, 503, Map.of("status", "warming"));
+                return;
+            }
+            writeJson(exchange, 200, Map.of("status", "ok", "pool", workerPool.getStats()));
+        }
+    }
+
+    private static class MetricsHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            if (!"GET".equalsIgnoreCase(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] bytes = SpeechMetrics.scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", SpeechMetrics.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
         }
     }
 
@@ -142,37 +308,374 @@ public class SpeechApiServer {
                 }
             }
 
-            byte[] audioBytes;
-            try (InputStream is = exchange.getRequestBody()) {
-                audioBytes = is.readAllBytes();
+            boolean ndjson = wantsPartials(exchange);
+            NdjsonWriter writer = ndjson ? new NdjsonWriter(exchange) : null;
+            AsrResultHandler handler = new AsrResultHandler();
+            if (writer != null) {
+                handler.setOnPartialResult(text -> writer.write("partial", text));
+                handler.setOnFinalResult(text -> writer.write("sentence", text));
             }
 
-            if (audioBytes.length == 0) {
-                writeJson(exchange, 400, Map.of("error", "Empty request body, please POST raw audio bytes"));
+            // The body is piped into recognition frame by frame, so memory stays flat and nothing touches disk
+            String text;
+            try (InputStream is = exchange.getRequestBody()) {
+                text = asrClient.transcribeStream(is, format, sampleRate, handler);
+            } catch (IllegalArgumentException e) {
+                LOG.warn("Bad ASR request: {}", e.getMessage());
+                failAsr(exchange, writer, 400, e.getMessage());
+                return;
+            } catch (Exception e) {
+                LOG.error("ASR processing failed", e);
+                failAsr(exchange, writer, 500, "ASR failed: " + e.getMessage());
                 return;
             }
 
-            Path tempFile = Files.createTempFile("asr-", "." + format);
-            try {
-                Files.write(tempFile, audioBytes);
-                String asrResult = asrClient.transcribe(tempFile, format, sampleRate);
-
+            if (writer != null) {
+                writer.write("final", text);
+                writer.finish();
+            } else {
                 ObjectNode response = OBJECT_MAPPER.createObjectNode();
+                String asrResult = handler.getResultJson();
                 try {
-                    JsonNode parsed = OBJECT_MAPPER.readTree(asrResult);
-                    response.set("result", parsed);
+                    response.set("result", OBJECT_MAPPER.readTree(asrResult));
                 } catch (Exception ignore) {
                     response.put("result", asrResult);
                 }
+                response.put("text", text);
                 writeJson(exchange, 200, response);
+            }
+        }
+
+        private void failAsr(HttpExchange exchange, NdjsonWriter writer, int status, String message) throws IOException {
+            if (writer != null && writer.started()) {
+                writer.write("error", message);
+                writer.finish();
+            } else {
+                writeJson(exchange, status, Map.of("error", message));
+            }
+        }
+    }
+
+    /**
+     * Partial results are requested with an NDJSON Accept header or the {@code partial} query flag.
+     */
+    private static boolean wantsPartials(HttpExchange exchange) {
+        String flag = queryParams(exchange.getRequestURI()).get("partial");
+        if (flag != null) {
+            return Boolean.parseBoolean(flag) || "1".equals(flag);
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.toLowerCase(Locale.ROOT).contains("application/x-ndjson");
+    }
+
+    /**
+     * Writes one {@code {"type", "text"}} line per recognition event. Headers go out with the first line, so a
+     * request rejected before any result can still answer with a plain JSON error. Lines come from the SDK
+     * callback thread while the request thread is still uploading, hence the locking.
+     */
+    private static final class NdjsonWriter {
+        private final HttpExchange exchange;
+        private OutputStream out;
+        private boolean failed;
+
+        NdjsonWriter(HttpExchange exchange) {
+            this.exchange = exchange;
+        }
+
+        synchronized boolean started() {
+            return out != null;
+        }
+
+        synchronized void write(String type, String text) {
+            if (failed) {
+                return;
+            }
+            try {
+                if (out == null) {
+                    exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+                    exchange.sendResponseHeaders(200, 0);
+                    out = exchange.getResponseBody();
+                }
+                ObjectNode line = OBJECT_MAPPER.createObjectNode();
+                line.put("type", type);
+                line.put("text", text);
+                out.write(OBJECT_MAPPER.writeValueAsBytes(line));
+                out.write('\n');
+                out.flush();
+            } catch (IOException e) {
+                // Client went away; keep recognizing so the upload is drained, but stop writing
+                failed = true;
+                LOG.debug("Dropping ASR result line, client disconnected: {}", e.getMessage());
+            }
+        }
+
+        synchronized void finish() {
+            if (out == null) {
+                exchange.close();
+                return;
+            }
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOG.debug("Error closing ASR response: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Batch transcription jobs. Uploads are streamed into the job spool, so a large batch never sits in memory.
+     */
+    private class AsrJobsHandler implements HttpHandler {
+        private static final String PREFIX = "/api/asr/jobs";
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            // Contexts match by string prefix, so /api/asr/jobsXYZ lands here too
+            String rest = exchange.getRequestURI().getPath().substring(PREFIX.length());
+            if (!rest.isEmpty() && !rest.startsWith("/")) {
+                writeJson(exchange, 404, Map.of("error", "Not found"));
+                return;
+            }
+            if (rest.startsWith("/")) {
+                rest = rest.substring(1);
+            }
+            String method = exchange.getRequestMethod();
+            if (rest.isEmpty()) {
+                if (!"POST".equalsIgnoreCase(method)) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                submit(exchange);
+                return;
+            }
+            if (!"GET".equalsIgnoreCase(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            String[] segments = rest.split("/");
+            AsrJobQueue.Job job = jobQueue.get(segments[0]);
+            if (job == null || segments.length > 2 || (segments.length == 2 && !"results".equals(segments[1]))) {
+                writeJson(exchange, 404, Map.of("error", "Unknown job"));
+            } else if (segments.length == 2) {
+                writeResults(exchange, job);
+            } else {
+                writeJson(exchange, 200, jobStatus(job));
+            }
+        }
+
+        private void submit(HttpExchange exchange) throws IOException {
+            Map<String, String> params = queryParams(exchange.getRequestURI());
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            String jobId = AsrJobQueue.newJobId();
+            List<AsrJobQueue.JobFile> files;
+            try (InputStream is = exchange.getRequestBody()) {
+                String boundary = MultipartReader.boundaryOf(contentType);
+                if (boundary != null) {
+                    files = spoolUploads(new MultipartReader(is, boundary), newSpoolDir(jobId), params);
+                } else if (contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith("application/json")) {
+                    files = manifestFiles(OBJECT_MAPPER.readTree(is), params);
+                } else {
+                    throw new IllegalArgumentException("POST multipart/form-data audio files or a JSON manifest");
+                }
+                AsrJobQueue.Job job;
+                try {
+                    job = jobQueue.submit(jobId, files);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                exchange.getResponseHeaders().set("Location", PREFIX + "/" + job.getId());
+                writeJson(exchange, 202, jobStatus(job));
             } catch (IllegalArgumentException e) {
-                LOG.warn("Bad ASR request: {}", e.getMessage());
+                LOG.warn("Bad ASR job request: {}", e.getMessage());
+                jobQueue.discardSpool(jobId);
                 writeJson(exchange, 400, Map.of("error", e.getMessage()));
-            } catch (Exception e) {
-                LOG.error("ASR processing failed", e);
-                writeJson(exchange, 500, Map.of("error", "ASR failed: " + e.getMessage()));
-            } finally {
-                Files.deleteIfExists(tempFile);
+            } catch (UncheckedIOException e) {
+                // Spool or journal failure: the upload was fine, the server could not store it
+                LOG.error("Failed to store ASR job {}", jobId, e.getCause());
+                jobQueue.discardSpool(jobId);
+                writeJson(exchange, 500, Map.of("error", "Failed to store job: " + e.getCause().getMessage()));
+            } catch (IOException e) {
+                LOG.warn("ASR job upload failed: {}", e.getMessage());
+                jobQueue.discardSpool(jobId);
+                writeJson(exchange, 400, Map.of("error", "Upload failed: " + e.getMessage()));
+            }
+        }
+
+        private List<AsrJobQueue.JobFile> spoolUploads(MultipartReader reader, Path spool, Map<String, String> params)
+                throws IOException {
+            AsrJobConfig config = jobQueue.getConfig();
+            String format = params.get("format");
+            int sampleRate = parseSampleRate(params.get("sampleRate"));
+            List<AsrJobQueue.JobFile> files = new ArrayList<>();
+            while (reader.nextPart()) {
+                if (reader.filename() == null) {
+                    if ("format".equals(reader.name())) {
+                        format = reader.readValue().trim();
+                    } else if ("sampleRate".equals(reader.name())) {
+                        sampleRate = parseSampleRate(reader.readValue().trim());
+                    }
+                    continue;
+                }
+                if (files.size() >= config.getMaxFilesPerJob()) {
+                    throw new IllegalArgumentException("At most " + config.getMaxFilesPerJob() + " files per job");
+                }
+                String fileFormat = format != null && !format.isBlank() ? format : formatOf(reader.filename());
+                Path target = spool.resolve(files.size() + "." + fileFormat.replaceAll("[^A-Za-z0-9]", ""));
+                try (OutputStream out = new SpoolOutput(target)) {
+                    if (reader.copyBody(out, config.getMaxFileBytes()) == 0) {
+                        throw new IllegalArgumentException("Empty audio file: " + reader.filename());
+                    }
+                }
+                files.add(new AsrJobQueue.JobFile(reader.filename(), fileFormat, sampleRate, target, true));
+            }
+            return files;
+        }
+
+        private Path newSpoolDir(String jobId) {
+            try {
+                return jobQueue.newSpoolDir(jobId);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private List<AsrJobQueue.JobFile> manifestFiles(JsonNode manifest, Map<String, String> params) {
+            AsrJobConfig config = jobQueue.getConfig();
+            if (config.getInputDir() == null) {
+                throw new IllegalArgumentException("Manifests are disabled, set ASR_JOBS_INPUT_DIR to enable them");
+            }
+            Path inputDir = config.getInputDir().toAbsolutePath().normalize();
+            String format = manifest.path("format").asText(params.get("format"));
+            int sampleRate = manifest.has("sampleRate")
+                    ? manifest.path("sampleRate").asInt() : parseSampleRate(params.get("sampleRate"));
+            JsonNode entries = manifest.path("files");
+            if (!entries.isArray() || entries.size() > config.getMaxFilesPerJob()) {
+                throw new IllegalArgumentException("Manifest needs a files array of at most "
+                        + config.getMaxFilesPerJob() + " entries");
+            }
+            List<AsrJobQueue.JobFile> files = new ArrayList<>();
+            for (JsonNode entry : entries) {
+                Path path = inputDir.resolve(entry.path("path").asText("")).normalize();
+                if (!path.startsWith(inputDir) || !Files.isRegularFile(path) || !Files.isReadable(path)) {
+                    throw new IllegalArgumentException("Not a readable file under the input directory: "
+                            + entry.path("path").asText(""));
+                }
+                String name = entry.path("name").asText(path.getFileName().toString());
+                String fileFormat = entry.path("format").asText(format != null ? format : formatOf(name));
+                int fileRate = entry.has("sampleRate") ? entry.path("sampleRate").asInt() : sampleRate;
+                if (fileRate < PolyphaseResampler.MIN_RATE || fileRate > PolyphaseResampler.MAX_RATE) {
+                    throw new IllegalArgumentException("Invalid sampleRate " + fileRate + " for " + name);
+                }
+                files.add(new AsrJobQueue.JobFile(name, fileFormat, fileRate, path, false));
+            }
+            return files;
+        }
+
+        private void writeResults(HttpExchange exchange, AsrJobQueue.Job job) throws IOException {
+            StringBuilder body = new StringBuilder();
+            for (AsrJobQueue.JobFile file : job.getFiles()) {
+                ObjectNode line = OBJECT_MAPPER.createObjectNode();
+                line.put("name", file.getName());
+                if (file.getState() == AsrJobQueue.FileState.DONE) {
+                    line.put("text", file.getText());
+                } else if (file.getState() == AsrJobQueue.FileState.FAILED) {
+                    line.put("error", file.getError());
+                } else {
+                    continue;
+                }
+                body.append(OBJECT_MAPPER.writeValueAsString(line)).append('\n');
+            }
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            Headers headers = exchange.getResponseHeaders();
+            headers.set("Content-Type", "application/x-ndjson; charset=utf-8");
+            headers.set("Content-Disposition", "attachment; filename=\"asr-" + job.getId() + ".jsonl\"");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        }
+
+        private ObjectNode jobStatus(AsrJobQueue.Job job) {
+            ObjectNode status = OBJECT_MAPPER.createObjectNode();
+            status.put("id", job.getId());
+            status.put("state", job.getState());
+            status.put("createdAt", job.getCreatedAt());
+            status.put("total", job.getFiles().size());
+            status.put("completed", job.completedCount());
+            status.put("failed", job.failedCount());
+            status.put("results", PREFIX + "/" + job.getId() + "/results");
+            ArrayNode files = status.putArray("files");
+            for (AsrJobQueue.JobFile file : job.getFiles()) {
+                ObjectNode node = files.addObject();
+                node.put("name", file.getName());
+                node.put("state", file.getState().name().toLowerCase(Locale.ROOT));
+                if (file.getError() != null) {
+                    node.put("error", file.getError());
+                }
+            }
+            return status;
+        }
+
+        private int parseSampleRate(String value) {
+            if (value == null || value.isBlank()) {
+                return 16000;
+            }
+            int rate;
+            try {
+                rate = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid sampleRate parameter");
+            }
+            return PolyphaseResampler.checkRate(rate);
+        }
+
+        private String formatOf(String filename) {
+            int dot = filename.lastIndexOf('.');
+            return dot >= 0 && dot < filename.length() - 1
+                    ? filename.substring(dot + 1).toLowerCase(Locale.ROOT) : "pcm";
+        }
+
+    }
+
+    /**
+     * Buffered spool file for a job upload. Write failures are rethrown unchecked, so a full or broken disk is answered
+     * as a server error while failures reading the request body still count as a bad upload.
+     */
+    private static final class SpoolOutput extends OutputStream {
+        private final OutputStream out;
+
+        SpoolOutput(Path target) {
+            try {
+                this.out = new BufferedOutputStream(Files.newOutputStream(target), 64 * 1024);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            try {
+                out.write(b);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            try {
+                out.write(b, off, len);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
             }
         }
     }
@@ -198,6 +701,11 @@ public class SpeechApiServer {
                 return;
             }
 
+            if (wantsStream(exchange)) {
+                streamTts(exchange, request);
+                return;
+            }
+
             String voice = request.voice != null ? request.voice : "xiaoyun";
             String format = request.format != null ? request.format : "wav";
             int sampleRate = request.sampleRate != null ? request.sampleRate : 16000;
@@ -225,6 +733,216 @@ public class SpeechApiServer {
         }
     }
 
+    /**
+     * Streaming is requested with an audio Accept header or the {@code stream} query flag.
+     */
+    private static boolean wantsStream(HttpExchange exchange) {
+        String flag = queryParams(exchange.getRequestURI()).get("stream");
+        if (flag != null) {
+            return Boolean.parseBoolean(flag) || "1".equals(flag);
+        }
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        return accept != null && accept.toLowerCase(Locale.ROOT).contains("audio/");
+    }
+
+    /**
+     * Write audio from the realtime engine (or the hedged router) as it arrives. Synthesis runs off
+     * the request thread and hands chunks over a bounded queue; headers are sent with the first chunk, which lets a
+     * synthesis that fails up front still answer with JSON. The synthesis is cancelled when the client goes away, is
+     * too slow to keep up, or no audio arrives within {@link QueueSink#CHUNK_TIMEOUT_SECONDS}.
+     */
+    private void streamTts(HttpExchange exchange, TtsRequest request) throws IOException {
+        // The realtime session is configured once per voice, so rate and encoding come from its config
+        int sampleRate = ttsConfig.getSampleRate();
+        if (request.sampleRate != null && request.sampleRate != sampleRate) {
+            writeJson(exchange, 400, Map.of("error", "Streaming synthesis produces " + sampleRate
+                    + " Hz audio, sampleRate " + request.sampleRate + " is not supported"));
+            return;
+        }
+        boolean pcm = "pcm".equalsIgnoreCase(ttsConfig.getFormat());
+        boolean wav = pcm && !"pcm".equalsIgnoreCase(request.format);
+
+        QueueSink sink = new QueueSink();
+        TtsEngine.Synthesis synthesis;
+        if (hedgedTts != null) {
+            synthesis = hedgedTts.start(request.text, request.voice, sink);
+        } else {
+            try {
+                synthesis = new BackgroundSynthesis(synthesisExecutor,
+                        () -> ttsRealtimeClient.synthesize(request.text, request.voice, sink));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("TTS synthesis pool saturated, rejecting streaming request");
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(poolConfig.getRetryAfterSeconds()));
+                writeJson(exchange, 503, Map.of("error", "Server busy, retry later"));
+                return;
+            }
+        }
+        synthesis.completion().whenComplete((ignored, error) -> sink.close());
+
+        byte[] chunk;
+        try {
+            chunk = sink.take();
+        } catch (IOException e) {
+            synthesis.cancel();
+            LOG.error("TTS streaming failed: {}", e.getMessage());
+            writeJson(exchange, 504, Map.of("error", "TTS failed: " + e.getMessage()));
+            return;
+        }
+        if (chunk == null) {
+            try {
+                synthesis.completion().join();
+            } catch (CompletionException | CancellationException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof IllegalArgumentException) {
+                    writeJson(exchange, 400, Map.of("error", cause.getMessage()));
+                } else {
+                    LOG.error("TTS streaming failed", cause);
+                    writeJson(exchange, 500, Map.of("error", "TTS failed: " + cause.getMessage()));
+                }
+                return;
+            }
+        }
+
+        Headers headers = exchange.getResponseHeaders();
+        headers.set("Content-Type", wav ? "audio/wav" : pcm ? "audio/L16; rate=" + sampleRate + "; channels=1"
+                : "audio/" + ttsConfig.getFormat().toLowerCase(Locale.ROOT));
+        headers.set("X-Sample-Rate", String.valueOf(sampleRate));
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream os = exchange.getResponseBody();
+        try {
+            if (wav) {
+                os.write(WavHeader.create(sampleRate, 1, 16, WavHeader.UNKNOWN_LENGTH).array());
+            }
+            while (chunk != null) {
+                os.write(chunk);
+                os.flush();
+                chunk = sink.take();
+            }
+            try {
+                synthesis.completion().join();
+            } catch (CompletionException | CancellationException e) {
+                // Too late for a status code; drop the connection so the client sees a truncated body
+                LOG.error("TTS streaming failed after the response started: {}", e.getMessage());
+                exchange.close();
+                return;
+            }
+            os.close();
+        } catch (IOException e) {
+            LOG.warn("TTS stream aborted: {}", e.getMessage());
+            sink.discard();
+            synthesis.cancel();
+            exchange.close();
+        }
+    }
+
+    /**
+     * Hands audio from the TTS reader thread to the HTTP worker. At most {@link #CAPACITY} chunks are queued; a reader
+     * that finds no room waits up to {@link #OFFER_TIMEOUT_SECONDS} and then fails the synthesis, so a slow client
+     * holds a bounded amount of memory.
+     */
+    private static class QueueSink implements TtsOutputSink {
+        private static final byte[] END = new byte[0];
+        private static final int CAPACITY = 256;
+        private static final long OFFER_TIMEOUT_SECONDS = 10;
+        private static final long CHUNK_TIMEOUT_SECONDS = 30;
+
+        // Space is tracked separately so the end marker always fits
+        private final Semaphore space = new Semaphore(CAPACITY);
+        private final BlockingQueue<byte[]> queue = new LinkedBlockingQueue<>();
+        private volatile boolean discarded;
+
+        @Override
+        public void write(byte[] audioData) {
+            if (audioData.length == 0) {
+                return;
+            }
+            try {
+                if (!space.tryAcquire(OFFER_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("TTS client is not keeping up with the audio");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while queueing TTS audio", e);
+            }
+            if (discarded) {
+                throw new IllegalStateException("TTS client went away");
+            }
+            queue.offer(audioData);
+        }
+
+        /**
+         * @return the next chunk, or null once synthesis has ended
+         * @throws IOException if no audio arrives within {@link #CHUNK_TIMEOUT_SECONDS}
+         */
+        byte[] take() throws IOException {
+            try {
+                byte[] chunk = queue.poll(CHUNK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                if (chunk == null) {
+                    throw new IOException("No TTS audio for " + CHUNK_TIMEOUT_SECONDS + "s");
+                }
+                if (chunk == END) {
+                    queue.offer(END);
+                    return null;
+                }
+                space.release();
+                return chunk;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for TTS audio", e);
+            }
+        }
+
+        /**
+         * Drop queued audio and make further writes fail, which stops the synthesis at its next chunk.
+         */
+        void discard() {
+            discarded = true;
+            queue.clear();
+            space.release(CAPACITY);
+        }
+
+        @Override
+        public void close() {
+            queue.offer(END);
+        }
+    }
+
+    /**
+     * A blocking realtime synthesis run on the synthesis executor, cancellable by interrupting it.
+     */
+    private static class BackgroundSynthesis implements TtsEngine.Synthesis {
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final Future<?> task;
+
+        BackgroundSynthesis(ExecutorService executor, SynthesisTask body) {
+            this.task = executor.submit(() -> {
+                try {
+                    body.run();
+                    completion.complete(null);
+                } catch (Exception e) {
+                    completion.completeExceptionally(e);
+                }
+            });
+        }
+
+        @Override
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+
+        @Override
+        public void cancel() {
+            if (completion.completeExceptionally(new CancellationException("TTS synthesis cancelled"))) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SynthesisTask {
+        void run() throws IOException;
+    }
+
     private static class TtsRequest {
         public String text;
         public String voice;
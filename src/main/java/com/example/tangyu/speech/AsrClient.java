@@ -5,23 +5,43 @@ import com.alibaba.dashscope.audio.asr.recognition.RecognitionParam;
 import com.alibaba.dashscope.audio.asr.recognition.RecognitionResult;
 import com.alibaba.dashscope.common.ResultCallback;
 import com.alibaba.dashscope.utils.Constants;
+import com.example.tangyu.audio.PcmNormalizer;
+import com.example.tangyu.audio.PolyphaseResampler;
 import com.example.tangyu.config.DashScopeConfig;
+import com.example.tangyu.metrics.AsrFrameSentEvent;
+import com.example.tangyu.metrics.SessionLifecycleEvent;
+import com.example.tangyu.metrics.SpeechMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Fun-ASR Java SDK 的封装，支持同步和流式识别。
+ *
+ * 流式识别会发出 JFR 事件（{@link AsrFrameSentEvent}、{@link SessionLifecycleEvent}），默认关闭，
+ * 录制时用 {@code jfr/tangyu-speech.jfc} 开启；事件按 {@link AsrResultHandler#getSessionId()} 关联到会话。
  */
 public class AsrClient {
     private static final Logger LOG = LoggerFactory.getLogger(AsrClient.class);
 
+    /** 流式发送时每帧的字节数 */
+    private static final int FRAME_BYTES = 16 * 1024;
+
     private final DashScopeConfig dashScopeConfig;
+    private static final AtomicLong SESSION_SEQUENCE = new AtomicLong();
+
+    // 进行中的流式识别及其回调，用于活跃会话计数、识别延迟统计与 JFR 事件
+    private final Map<Recognition, OpenRecognition> openRecognitions = new ConcurrentHashMap<>();
 
     public AsrClient(DashScopeConfig dashScopeConfig) {
         this.dashScopeConfig = Objects.requireNonNull(dashScopeConfig);
@@ -38,6 +58,7 @@ public class AsrClient {
     public String transcribe(Path audioFile, String format, int sampleRate) {
         validate(audioFile, format, sampleRate);
         Recognition recognition = new Recognition();
+        SpeechMetrics.asrSessionStarted();
         try {
             Constants.baseWebsocketApiUrl = dashScopeConfig.getBaseWebsocketUrl();
             RecognitionParam param = buildRecognitionParam(format, sampleRate);
@@ -55,8 +76,10 @@ public class AsrClient {
             return result;
         } catch (Exception e) {
             LOG.error("Failed to transcribe audio file: {}", audioFile, e);
+            SpeechMetrics.upstreamError("asr", e);
             throw new RuntimeException("Failed to transcribe audio with Fun-ASR: " + e.getMessage(), e);
         } finally {
+            SpeechMetrics.asrSessionEnded();
             closeRecognition(recognition);
         }
     }
@@ -67,39 +90,73 @@ public class AsrClient {
     public String transcribeWithHandler(Path audioFile, String format, int sampleRate, AsrResultHandler handler) {
         Objects.requireNonNull(handler, "AsrResultHandler is required");
         validate(audioFile, format, sampleRate);
-        Recognition recognition = new Recognition();
+        try (InputStream in = Files.newInputStream(audioFile)) {
+            LOG.info("Starting streaming ASR with handler for file: {}, format: {}, sampleRate: {}, fileSize: {} bytes",
+                    audioFile.getFileName(), format, sampleRate, Files.size(audioFile));
+            return transcribeStream(in, format, sampleRate, handler);
+        } catch (IOException e) {
+            LOG.error("Failed to read audio file: {}", audioFile, e);
+            throw new RuntimeException("Failed to transcribe audio with handler: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 从输入流边读边识别，每次读取固定大小的一帧发送，内存占用与音频长度无关。
+     * pcm、wav 输入先经 {@link PcmNormalizer} 转为模型采样率的单声道 PCM，WAV 以文件头中的格式为准，
+     * 裸 PCM 按 sampleRate 处理。流由调用方关闭；部分结果通过 handler 的回调实时返回。
+     *
+     * @param audio      音频数据流（如 HTTP 请求体）
+     * @param format     音频格式（如 pcm、wav）
+     * @param sampleRate 采样率（如 16000）
+     * @param handler    结果处理器
+     * @return 去重后的完整识别文本
+     * @throws IllegalArgumentException 参数无效或流为空
+     */
+    public String transcribeStream(InputStream audio, String format, int sampleRate, AsrResultHandler handler) {
+        Objects.requireNonNull(audio, "Audio stream is required");
+        Objects.requireNonNull(handler, "AsrResultHandler is required");
+        validateStreaming(format, sampleRate);
+        Recognition recognition = null;
         try {
+            if (PcmNormalizer.supports(format)) {
+                // WAV 按文件头的真实格式转换，识别服务始终收到模型采样率的单声道 PCM
+                PcmNormalizer normalized = PcmNormalizer.open(audio, format, sampleRate,
+                        dashScopeConfig.getSampleRate());
+                LOG.info("音频输入 format: {}, 实际格式: {}", format, normalized);
+                audio = normalized;
+                format = "pcm";
+                sampleRate = normalized.getTargetRate();
+            }
+
+            // 先读第一帧，空请求体不必建立识别连接
+            byte[] frame = audio.readNBytes(FRAME_BYTES);
+            if (frame.length == 0) {
+                throw new IllegalArgumentException("Audio stream is empty");
+            }
+
             Constants.baseWebsocketApiUrl = dashScopeConfig.getBaseWebsocketUrl();
             RecognitionParam param = buildRecognitionParam(format, sampleRate);
-
-            long fileSize = Files.size(audioFile);
-            LOG.info("Starting streaming ASR with handler for file: {}, format: {}, sampleRate: {}, fileSize: {} bytes",
-                    audioFile.getFileName(), format, sampleRate, fileSize);
-            
+            recognition = new Recognition();
+            opened(recognition, handler);
             recognition.call(param, handler);
 
-            byte[] data = Files.readAllBytes(audioFile);
-            LOG.info("读取音频文件完成，大小: {} bytes，开始发送音频数据", data.length);
-            
-            // 分块发送音频数据（每块16KB），避免一次性发送过大
-            int chunkSize = 16 * 1024; // 16KB
-            int offset = 0;
-            while (offset < data.length) {
-                int length = Math.min(chunkSize, data.length - offset);
-                ByteBuffer chunk = ByteBuffer.wrap(data, offset, length);
-                recognition.sendAudioFrame(chunk);
-                offset += length;
-                LOG.debug("已发送音频数据: {}/{} bytes", offset, data.length);
+            // SDK 可能异步发送，每帧使用独立的数组，避免覆盖尚未发出的数据
+            long total = 0;
+            while (frame.length > 0) {
+                send(recognition, ByteBuffer.wrap(frame), 0);
+                total += frame.length;
+                LOG.debug("已发送音频数据: {} bytes", total);
+                frame = audio.readNBytes(FRAME_BYTES);
             }
-            
-            LOG.info("音频数据发送完成，开始停止识别");
+
+            LOG.info("音频数据发送完成，共 {} bytes，开始停止识别", total);
             recognition.stop();
 
-            // 等待结果完成（等待时间根据文件大小计算，最少15秒，最多30秒）
-            long waitTime = Math.max(15_000, Math.min(30_000, fileSize / 100)); // 每100字节等待1ms，最少15秒
+            // 等待结果完成（等待时间根据音频大小计算，最少15秒，最多30秒）
+            long waitTime = Math.max(15_000, Math.min(30_000, total / 100)); // 每100字节等待1ms，最少15秒
             long deadline = System.currentTimeMillis() + waitTime;
             LOG.info("等待识别结果完成，最多等待: {} ms", waitTime);
-            
+
             int checkCount = 0;
             while (!handler.isCompleted() && System.currentTimeMillis() < deadline) {
                 try {
@@ -107,7 +164,7 @@ public class AsrClient {
                     checkCount++;
                     if (checkCount % 50 == 0) { // 每5秒打印一次状态
                         String currentText = handler.getFullText();
-                        LOG.info("等待中... 已等待: {} ms, 当前识别文本: {}", 
+                        LOG.info("等待中... 已等待: {} ms, 当前识别文本: {}",
                                 (System.currentTimeMillis() - (deadline - waitTime)), currentText);
                     }
                 } catch (InterruptedException ie) {
@@ -119,7 +176,7 @@ public class AsrClient {
 
             boolean completed = handler.isCompleted();
             String finalText = handler.getFullText();
-            
+
             LOG.info("Streaming ASR completed. requestId={}, firstPackageDelay={}ms, lastPackageDelay={}ms, " +
                             "handlerCompleted={}, finalTextLength={}",
                     recognition.getLastRequestId(),
@@ -127,18 +184,21 @@ public class AsrClient {
                     recognition.getLastPackageDelay(),
                     completed,
                     finalText != null ? finalText.length() : 0);
-            
+
             if (!completed) {
                 LOG.warn("识别可能未完全完成，但已超时。当前文本: {}", finalText);
             }
-            
+
             if (finalText == null || finalText.trim().isEmpty()) {
                 LOG.warn("识别结果为空！可能原因：1) 音频格式/采样率不匹配 2) 音频内容为空或太短 3) 识别服务异常");
             }
-            
+
             return finalText != null ? finalText : "";
+        } catch (IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
-            LOG.error("Failed to transcribe with handler: {}", audioFile, e);
+            LOG.error("Failed to transcribe audio stream", e);
+            SpeechMetrics.upstreamError("asr", e);
             throw new RuntimeException("Failed to transcribe audio with handler: " + e.getMessage(), e);
         } finally {
             closeRecognition(recognition);
@@ -147,10 +207,6 @@ public class AsrClient {
 
     /**
      * 启动流式识别（适合麦克风等实时音频），实时回调结果。
-=======
-     * Streaming recognition with callback for real-time results.
-     * Use this for real-time audio streams (e.g., microphone input).
->>>>>>> theirs
      *
      * @param format     音频格式（如 pcm）
      * @param sampleRate 采样率（如 16000）
@@ -160,6 +216,7 @@ public class AsrClient {
     public Recognition startStreaming(String format, int sampleRate, ResultCallback<RecognitionResult> callback) {
         validateStreaming(format, sampleRate);
         Recognition recognition = new Recognition();
+        opened(recognition, callback);
         try {
             Constants.baseWebsocketApiUrl = dashScopeConfig.getBaseWebsocketUrl();
             RecognitionParam param = buildRecognitionParam(format, sampleRate);
@@ -169,6 +226,7 @@ public class AsrClient {
             return recognition;
         } catch (Exception e) {
             LOG.error("Failed to start streaming ASR", e);
+            SpeechMetrics.upstreamError("asr", e);
             closeRecognition(recognition);
             throw new RuntimeException("Failed to start streaming ASR: " + e.getMessage(), e);
         }
@@ -183,14 +241,24 @@ public class AsrClient {
      * @param length      数据长度
      */
     public void sendAudioFrame(Recognition recognition, byte[] audioData, int offset, int length) {
+        sendAudioFrame(recognition, audioData, offset, length, 0);
+    }
+
+    /**
+     * 同 {@link #sendAudioFrame(Recognition, byte[], int, int)}，并说明这段音频在调用方缓冲了多久。
+     *
+     * @param receivedNanos 调用方收到这段音频时的 {@link System#nanoTime()}，0 表示未缓冲
+     */
+    public void sendAudioFrame(Recognition recognition, byte[] audioData, int offset, int length,
+                               long receivedNanos) {
         if (recognition == null) {
             throw new IllegalArgumentException("Recognition instance cannot be null");
         }
         try {
-            ByteBuffer buffer = ByteBuffer.wrap(audioData, offset, length);
-            recognition.sendAudioFrame(buffer);
+            send(recognition, ByteBuffer.wrap(audioData, offset, length), receivedNanos);
         } catch (Exception e) {
             LOG.error("Failed to send audio frame", e);
+            SpeechMetrics.upstreamError("asr", e);
             throw new RuntimeException("Failed to send audio frame: " + e.getMessage(), e);
         }
     }
@@ -226,7 +294,49 @@ public class AsrClient {
                 .build();
     }
 
+    private void opened(Recognition recognition, ResultCallback<RecognitionResult> callback) {
+        if (callback == null) {
+            return;
+        }
+        AsrResultHandler handler = callback instanceof AsrResultHandler h ? h : null;
+        String sessionId = handler != null ? handler.getSessionId() : null;
+        if (sessionId == null) {
+            sessionId = "asr-" + SESSION_SEQUENCE.incrementAndGet();
+            if (handler != null) {
+                handler.setSessionId(sessionId);
+            }
+        }
+        if (openRecognitions.put(recognition, new OpenRecognition(sessionId, callback)) == null) {
+            SpeechMetrics.asrSessionStarted();
+            SessionLifecycleEvent.emit(sessionId, "open");
+        }
+    }
+
+    private void send(Recognition recognition, ByteBuffer frame, long receivedNanos) {
+        int bytes = frame.remaining();
+        AsrFrameSentEvent event = new AsrFrameSentEvent();
+        event.begin();
+        recognition.sendAudioFrame(frame);
+        event.end();
+        OpenRecognition open = openRecognitions.get(recognition);
+        if (event.shouldCommit()) {
+            event.sessionId = open != null ? open.sessionId : null;
+            event.bytes = bytes;
+            event.queueDelay = receivedNanos != 0 ? System.nanoTime() - receivedNanos : 0;
+            event.commit();
+        }
+        SpeechMetrics.asrFrameSent(bytes);
+        if (open != null && open.callback instanceof AsrResultHandler handler) {
+            handler.onAudioSent();
+        }
+    }
+
     private void closeRecognition(Recognition recognition) {
+        OpenRecognition open = recognition != null ? openRecognitions.remove(recognition) : null;
+        if (open != null) {
+            SpeechMetrics.asrSessionEnded();
+            SessionLifecycleEvent.emit(open.sessionId, "close");
+        }
         if (recognition != null && recognition.getDuplexApi() != null) {
             try {
                 recognition.getDuplexApi().close(1000, "bye");
@@ -243,17 +353,24 @@ public class AsrClient {
         if (format == null || format.isBlank()) {
             throw new IllegalArgumentException("Audio format must be provided (e.g., pcm, wav)");
         }
-        if (sampleRate <= 0) {
-            throw new IllegalArgumentException("Sample rate must be positive, got: " + sampleRate);
-        }
+        PolyphaseResampler.checkRate(sampleRate);
     }
 
     private void validateStreaming(String format, int sampleRate) {
         if (format == null || format.isBlank()) {
             throw new IllegalArgumentException("Audio format must be provided (e.g., pcm)");
         }
-        if (sampleRate <= 0) {
-            throw new IllegalArgumentException("Sample rate must be positive, got: " + sampleRate);
+        // 采样率来自请求参数，范围之外的值会让重采样的滤波器失控
+        PolyphaseResampler.checkRate(sampleRate);
+    }
+
+    private static final class OpenRecognition {
+        final String sessionId;
+        final ResultCallback<RecognitionResult> callback;
+
+        OpenRecognition(String sessionId, ResultCallback<RecognitionResult> callback) {
+            this.sessionId = sessionId;
+            this.callback = callback;
         }
     }
 }
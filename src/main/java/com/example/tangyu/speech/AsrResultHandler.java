@@ -2,16 +2,25 @@ package com.example.tangyu.speech;
 
 import com.alibaba.dashscope.audio.asr.recognition.RecognitionResult;
 import com.alibaba.dashscope.common.ResultCallback;
+import com.example.tangyu.metrics.AsrResultEvent;
+import com.example.tangyu.metrics.SpeechMetrics;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
  * 流式 ASR 结果回调处理器，负责 onEvent/onError/onComplete。
  * 支持部分结果与最终结果，做文本去重；通过反射兼容不同 SDK 版本。
+ * 发送音频时调用 {@link #onAudioSent()}，即可统计首个结果与最终结果的延迟。
+ * 已结束的句子原样保留，{@link #getResultJson()} 可得到与同步识别相同格式的结果 JSON。
  */
 public class AsrResultHandler extends ResultCallback<RecognitionResult> {
     private static final Logger LOG = LoggerFactory.getLogger(AsrResultHandler.class);
@@ -19,7 +28,16 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
     private final AtomicBoolean completed = new AtomicBoolean(false);
     private final AtomicBoolean finalResultTriggered = new AtomicBoolean(false);
     private final StringBuilder fullText = new StringBuilder();
+    // 已结束的句子（SDK 对象），按到达顺序
+    private final List<Object> sentences = new ArrayList<>();
     private final boolean enableDeduplication;
+    // 会话标识，用于 JFR 事件关联；未设置时由 AsrClient 在开始识别时分配
+    private volatile String sessionId;
+
+    // 延迟统计：首帧、最近一帧发送时间，以及是否已收到首个结果
+    private volatile long firstFrameNanos;
+    private volatile long lastFrameNanos;
+    private final AtomicBoolean firstResultSeen = new AtomicBoolean(false);
 
     // 回调函数
     private Consumer<String> onPartialResult;
@@ -55,17 +73,50 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
         this.onFinalResult = callback;
     }
 
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    /**
+     * 记录一帧音频已发送，用于计算识别延迟。
+     */
+    public void onAudioSent() {
+        long now = System.nanoTime();
+        if (firstFrameNanos == 0) {
+            firstFrameNanos = now;
+        }
+        lastFrameNanos = now;
+    }
+
     @Override
     public void onEvent(RecognitionResult result) {
         if (result != null) {
             LOG.debug("收到ASR识别结果: {}", result);
+            if (result.isSentenceEnd() && result.getSentence() != null) {
+                synchronized (sentences) {
+                    sentences.add(result.getSentence());
+                }
+            }
             String text = extractText(result);
             LOG.debug("提取的文本: {}", text);
             
             if (text != null && !text.trim().isEmpty()) {
+                if (firstFrameNanos != 0 && firstResultSeen.compareAndSet(false, true)) {
+                    SpeechMetrics.asrFirstPartial(System.nanoTime() - firstFrameNanos);
+                }
+                AsrResultEvent event = new AsrResultEvent();
+                event.begin();
                 // 去重处理
                 if (enableDeduplication) {
+                    long dedupStart = event.isEnabled() ? System.nanoTime() : 0;
                     text = TextDeduplicator.deduplicate(text);
+                    if (dedupStart != 0) {
+                        event.dedupTime = System.nanoTime() - dedupStart;
+                    }
                 }
 
                 // 先累积文本，再根据标点判断是否可能为最终结果
@@ -73,6 +124,7 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
                 boolean isFinal = text.matches(".*[。！？.!?].*");
 
                 if (isFinal) {
+                    recordFinalLatency();
                     LOG.info("识别到最终结果（带标点），立即触发回调: {}", text);
                     if (onFinalResult != null) {
                         finalResultTriggered.set(true);
@@ -84,6 +136,13 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
                         onPartialResult.accept(text);
                     }
                 }
+                event.end();
+                if (event.shouldCommit()) {
+                    event.sessionId = sessionId;
+                    event.finalResult = isFinal;
+                    event.textLength = text.length();
+                    event.commit();
+                }
             } else {
                 LOG.warn("提取的文本为空，RecognitionResult: {}", result);
             }
@@ -95,6 +154,7 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
     @Override
     public void onError(Exception exception) {
         LOG.error("ASR recognition error", exception);
+        SpeechMetrics.upstreamError("asr", exception);
         System.err.println("识别错误: " + exception.getMessage());
         completed.set(true);
     }
@@ -107,6 +167,9 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
         
         // 如果之前已经触发过最终结果（通过onEvent中的标点检测），则不再重复触发
         // 只有在没有触发过的情况下，才在onComplete时触发（作为兜底，处理没有标点符号的情况）
+        if (!finalText.isEmpty()) {
+            recordFinalLatency();
+        }
         if (!finalText.isEmpty() && onFinalResult != null && !finalResultTriggered.get()) {
             LOG.info("识别完成但未检测到标点符号，触发最终结果回调: {}", finalText);
             // 最后一次去重
@@ -122,6 +185,17 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
         completed.set(true);
     }
 
+    /**
+     * 记录从最近一帧到最终结果的延迟；记录后清零，避免同一段音频在 onComplete 时重复统计。
+     */
+    private void recordFinalLatency() {
+        long last = lastFrameNanos;
+        lastFrameNanos = 0;
+        if (last != 0) {
+            SpeechMetrics.asrFinal(System.nanoTime() - last);
+        }
+    }
+
     /**
      * 通过反射从 RecognitionResult 中提取文本，兼容不同 SDK 版本。
      */
@@ -191,6 +265,23 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
         return text;
     }
 
+    /**
+     * 已结束句子的结果 JSON，格式与同步识别 {@code Recognition.call(param, file)} 的返回值一致：
+     * {@code {"sentences":[...]}}，句子字段由 SDK 自身的 Gson 注解决定。
+     */
+    public String getResultJson() {
+        Gson gson = new Gson();
+        JsonArray array = new JsonArray();
+        synchronized (sentences) {
+            for (Object sentence : sentences) {
+                array.add(gson.toJsonTree(sentence));
+            }
+        }
+        JsonObject json = new JsonObject();
+        json.add("sentences", array);
+        return json.toString();
+    }
+
     /**
      * 判断识别是否完成（成功或失败）。
      *
@@ -205,7 +296,13 @@ public class AsrResultHandler extends ResultCallback<RecognitionResult> {
      */
     public void reset() {
         fullText.setLength(0);
+        synchronized (sentences) {
+            sentences.clear();
+        }
         completed.set(false);
         finalResultTriggered.set(false);
+        firstFrameNanos = 0;
+        lastFrameNanos = 0;
+        firstResultSeen.set(false);
     }
 }
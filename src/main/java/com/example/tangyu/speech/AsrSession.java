@@ -1,6 +1,8 @@
 package com.example.tangyu.speech;
 
 import com.alibaba.dashscope.audio.asr.recognition.Recognition;
+import com.example.tangyu.audio.PcmKernels;
+import com.example.tangyu.metrics.SessionLifecycleEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -10,6 +12,7 @@ import java.util.function.Consumer;
 /**
  * ASR识别会话，管理音频缓冲和识别状态。
  * 参照Python WebSocket服务器的逻辑实现。
+ * 状态变化发出 JFR {@link SessionLifecycleEvent}，识别相关事件都带同一个 sessionId。
  */
 public class AsrSession {
     private static final Logger LOG = LoggerFactory.getLogger(AsrSession.class);
@@ -34,8 +37,13 @@ public class AsrSession {
     // KWS模式缓冲
     private byte[] kwsBuffer = new byte[0];
     private int kwsChunkCount = 0;
+    private long kwsWindowStartNanos; // 本轮 KWS 累积的第一块到达时间，用于统计发送前的排队时长
     private boolean kwsMode = false;
 
+    // 音量：最近一块与本句最大的 RMS（归一化到 0~1）
+    private volatile double lastRms;
+    private double sentencePeakRms;
+
     // 识别状态
     private Recognition recognition;
     private final AtomicBoolean isActive = new AtomicBoolean(false);
@@ -101,6 +109,7 @@ public class AsrSession {
         chunkCount = 0;
         kwsBuffer = new byte[0];
         kwsChunkCount = 0;
+        sentencePeakRms = 0;
         kwsMode = "kws".equalsIgnoreCase(mode);
 
         if (kwsMode) {
@@ -109,8 +118,11 @@ public class AsrSession {
             LOG.info("[{}] 开始新句子识别", sessionId);
         }
 
+        SessionLifecycleEvent.emit(sessionId, "start");
+
         // 创建结果处理器
         AsrResultHandler handler = new AsrResultHandler();
+        handler.setSessionId(sessionId);
         handler.setOnPartialResult(text -> {
             if (onPartialResult != null && text != null && !text.trim().isEmpty()) {
                 onPartialResult.accept(text);
@@ -136,8 +148,8 @@ public class AsrSession {
     /**
      * 添加音频数据
      *
-     * @param audioData 音频数据
-     * @param rms       RMS值（可选）
+     * @param audioData 音频数据（16 位小端 PCM）
+     * @param rms       客户端算好的 RMS（0~1）；传负数或 NaN 时由会话根据 PCM 音频计算
      * @param mode      模式（可选）
      */
     public void addAudio(byte[] audioData, double rms, String mode) {
@@ -148,12 +160,22 @@ public class AsrSession {
         if (audioData == null || audioData.length == 0) {
             return;
         }
+        long receivedNanos = System.nanoTime();
+        if (!(rms >= 0)) {
+            // 只有 PCM 能直接计算；压缩格式没有客户端的值时记为 0
+            rms = "pcm".equalsIgnoreCase(format) ? PcmKernels.rms(audioData, 0, audioData.length & ~1) : 0;
+        }
+        lastRms = rms;
+        sentencePeakRms = Math.max(sentencePeakRms, rms);
 
         boolean isKws = kwsMode || "kws".equalsIgnoreCase(mode);
 
         if (isKws) {
             // KWS模式：累积音频并周期性识别
             kwsBuffer = appendBytes(kwsBuffer, audioData);
+            if (kwsChunkCount == 0) {
+                kwsWindowStartNanos = receivedNanos;
+            }
             kwsChunkCount++;
 
             // 每 KWS_RECOGNIZE_INTERVAL 个块进行一次识别
@@ -163,7 +185,7 @@ public class AsrSession {
 
                 if (duration >= MIN_AUDIO_DURATION && recognition != null) {
                     // 发送音频数据，识别结果会通过handler回调返回
-                    sendAudioFrame(kwsBuffer);
+                    sendAudioFrame(kwsBuffer, kwsWindowStartNanos);
                 }
 
                 // 重置 KWS 缓冲（保留最后 KWS_KEEP_DURATION 秒用于连续性）
@@ -184,7 +206,7 @@ public class AsrSession {
 
             // 实时发送音频数据
             if (recognition != null) {
-                sendAudioFrame(audioData);
+                sendAudioFrame(audioData, receivedNanos);
 
                 // 每10个块发送进度
                 if (chunkCount % 10 == 0 && onProgress != null) {
@@ -204,8 +226,10 @@ public class AsrSession {
         }
 
         kwsMode = false;
+        SessionLifecycleEvent.emit(sessionId, "end");
         double duration = calculateDuration(audioBuffer);
-        LOG.info("[{}] 句子结束, 音频: {} bytes ({:.2f}秒)", sessionId, audioBuffer.length, duration);
+        LOG.info("[{}] 句子结束, 音频: {} bytes ({}秒), 最大 RMS {}", sessionId, audioBuffer.length,
+                String.format("%.2f", duration), String.format("%.3f", sentencePeakRms));
 
         if (duration >= MIN_AUDIO_DURATION) {
             // 正常模式下，音频已经实时发送，这里只需要停止识别触发final结果
@@ -222,6 +246,7 @@ public class AsrSession {
 
         audioBuffer = new byte[0];
         chunkCount = 0;
+        sentencePeakRms = 0;
     }
 
     /**
@@ -229,6 +254,7 @@ public class AsrSession {
      */
     public void abort() {
         LOG.info("[{}] 收到打断指令", sessionId);
+        SessionLifecycleEvent.emit(sessionId, "abort");
         isAborted.set(true);
         audioBuffer = new byte[0];
         chunkCount = 0;
@@ -241,6 +267,7 @@ public class AsrSession {
      * 停止会话
      */
     public void stop() {
+        SessionLifecycleEvent.emit(sessionId, "stop");
         if (recognition != null) {
             try {
                 asrClient.stopStreaming(recognition);
@@ -257,15 +284,16 @@ public class AsrSession {
     /**
      * 发送音频帧
      *
-     * @param audioData 音频数据
+     * @param audioData     音频数据
+     * @param receivedNanos 音频到达本会话的时间，用于 JFR 事件的排队时长
      */
-    private void sendAudioFrame(byte[] audioData) {
+    private void sendAudioFrame(byte[] audioData, long receivedNanos) {
         if (recognition == null || !isActive.get() || audioData == null || audioData.length == 0) {
             return;
         }
 
         try {
-            asrClient.sendAudioFrame(recognition, audioData, 0, audioData.length);
+            asrClient.sendAudioFrame(recognition, audioData, 0, audioData.length, receivedNanos);
         } catch (Exception e) {
             LOG.error("[{}] 发送音频帧失败", sessionId, e);
             if (onError != null) {
@@ -301,5 +329,12 @@ public class AsrSession {
     public boolean isActive() {
         return isActive.get();
     }
+
+    /**
+     * 最近一块音频的 RMS（0~1），可用于前端音量显示或静音判断。
+     */
+    public double getLastRms() {
+        return lastRms;
+    }
 }
 
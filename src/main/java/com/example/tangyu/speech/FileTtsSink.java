@@ -0,0 +1,146 @@
+package com.example.tangyu.speech;
+
+import com.example.tangyu.audio.WavHeader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Writes synthesized audio to a file through one {@link FileChannel} held for the whole synthesis.
+ *
+ * Writes are queued and performed by a shared background writer in arrival order, so the socket
+ * reader thread never touches the disk. For {@code .wav} outputs a streaming header with unknown
+ * lengths is written first and patched with the real lengths on {@link #close()}.
+ *
+ * While the sink is open an empty {@link #inProgressMarker(Path) sidecar file} exists next to the
+ * output, so readers such as {@code PcmHttpServer} can tell a file that is still growing from a
+ * finished one.
+ */
+public class FileTtsSink implements TtsOutputSink {
+    private static final ExecutorService WRITER = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "tts-file-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final String IN_PROGRESS_SUFFIX = ".writing";
+
+    private final Path file;
+    private final Path marker;
+    private final FileChannel channel;
+    private final int wavSampleRate;
+    private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+    private volatile IOException error;
+    private long dataBytes;
+    private boolean closed;
+
+    /**
+     * @param file          output file, truncated if it exists
+     * @param wavSampleRate sample rate for a WAV header, or 0 to write raw audio
+     */
+    public FileTtsSink(Path file, int wavSampleRate) throws IOException {
+        this.file = file;
+        this.marker = inProgressMarker(file);
+        this.wavSampleRate = wavSampleRate;
+        // The marker goes first so the file is never seen growing without it
+        Files.deleteIfExists(marker);
+        Files.createFile(marker);
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(marker);
+            throw e;
+        }
+        if (wavSampleRate > 0) {
+            writeFully(WavHeader.create(wavSampleRate, 1, 16, WavHeader.UNKNOWN_LENGTH));
+        }
+    }
+
+    /**
+     * Sidecar file that exists while {@code file} is being written.
+     */
+    public static Path inProgressMarker(Path file) {
+        return file.resolveSibling(file.getFileName() + IN_PROGRESS_SUFFIX);
+    }
+
+    /**
+     * Open a sink for the file, wrapping PCM audio in a WAV header when the file name ends in {@code .wav}.
+     */
+    public static FileTtsSink open(Path file, String format, int sampleRate) throws IOException {
+        boolean wav = "pcm".equalsIgnoreCase(format)
+                && file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".wav");
+        return new FileTtsSink(file, wav ? sampleRate : 0);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public synchronized void write(byte[] audioData) {
+        if (closed) {
+            throw new IllegalStateException("Sink already closed: " + file);
+        }
+        if (error != null || audioData.length == 0) {
+            return;
+        }
+        tail = tail.thenRunAsync(() -> {
+            if (error == null) {
+                try {
+                    writeFully(ByteBuffer.wrap(audioData));
+                    dataBytes += audioData.length;
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+        }, WRITER);
+    }
+
+    /**
+     * Wait for queued writes, patch the WAV header if any, and close the channel.
+     */
+    @Override
+    public void close() throws IOException {
+        CompletableFuture<Void> pending;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending = tail;
+        }
+        try {
+            pending.join();
+            if (error == null && wavSampleRate > 0) {
+                ByteBuffer header = WavHeader.create(wavSampleRate, 1, 16, dataBytes);
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+        } finally {
+            try {
+                channel.close();
+            } finally {
+                Files.deleteIfExists(marker);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
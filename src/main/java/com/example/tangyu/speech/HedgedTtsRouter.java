@@ -0,0 +1,357 @@
+package com.example.tangyu.speech;
+
+import com.example.tangyu.config.TtsHedgeConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes each synthesis to one of two engines and sends a hedge request to the other one when
+ * the first has not produced audio within its recent time-to-first-audio percentile. Whichever
+ * attempt delivers audio first is used; the other is cancelled. An attempt that fails before
+ * producing audio fails over to the other engine immediately.
+ *
+ * Time to first audio is tracked per engine in a {@link LatencyHistogram}. Once both engines
+ * have enough samples, the one with the lower median goes first.
+ */
+public class HedgedTtsRouter implements TtsEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(HedgedTtsRouter.class);
+    private static final ExecutorService LAUNCHER = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "tts-hedge");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final TtsEngine primary;
+    private final TtsEngine secondary;
+    private final LatencyHistogram primaryLatency = new LatencyHistogram();
+    private final LatencyHistogram secondaryLatency = new LatencyHistogram();
+    private final TtsHedgeConfig config;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder hedgeWins = new LongAdder();
+    private final LongAdder failovers = new LongAdder();
+
+    /**
+     * @param primary   engine tried first until latency statistics say otherwise
+     * @param secondary engine used for hedges and failover
+     */
+    public HedgedTtsRouter(TtsEngine primary, TtsEngine secondary, TtsHedgeConfig config) {
+        this.primary = Objects.requireNonNull(primary);
+        this.secondary = Objects.requireNonNull(secondary);
+        this.config = Objects.requireNonNull(config);
+    }
+
+    @Override
+    public String getName() {
+        return "hedged(" + primary.getName() + "," + secondary.getName() + ")";
+    }
+
+    @Override
+    public Synthesis start(String text, String voice, TtsOutputSink sink) {
+        Objects.requireNonNull(sink, "Output sink is required");
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Text to synthesize must be provided");
+        }
+        requests.increment();
+        boolean swap = primaryLatency.getCount() >= config.getMinSamples()
+                && secondaryLatency.getCount() >= config.getMinSamples()
+                && secondaryLatency.percentile(0.5) < primaryLatency.percentile(0.5);
+        HedgedSynthesis synthesis = swap
+                ? new HedgedSynthesis(text, voice, sink, secondary, secondaryLatency, primary, primaryLatency)
+                : new HedgedSynthesis(text, voice, sink, primary, primaryLatency, secondary, secondaryLatency);
+        synthesis.launch();
+        return synthesis;
+    }
+
+    /**
+     * Time-to-first-audio histogram of an engine, by {@link TtsEngine#getName()}.
+     */
+    public LatencyHistogram getLatency(String engineName) {
+        if (primary.getName().equals(engineName)) {
+            return primaryLatency;
+        }
+        if (secondary.getName().equals(engineName)) {
+            return secondaryLatency;
+        }
+        throw new IllegalArgumentException("Unknown TTS engine: " + engineName);
+    }
+
+    public Stats getStats() {
+        return new Stats(requests.sum(), hedges.sum(), hedgeWins.sum(), failovers.sum());
+    }
+
+    private long hedgeDelayMillis(LatencyHistogram latency) {
+        if (latency.getCount() < config.getMinSamples()) {
+            return config.getInitialDelayMillis();
+        }
+        return Math.max(config.getMinDelayMillis(), latency.percentile(config.getPercentile()));
+    }
+
+    /**
+     * One routed synthesis with up to two attempts.
+     */
+    private class HedgedSynthesis implements Synthesis {
+        private final String text;
+        private final String voice;
+        private final TtsOutputSink sink;
+        private final Attempt first;
+        private final Attempt second;
+        private final AtomicReference<Attempt> winner = new AtomicReference<>();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+        HedgedSynthesis(String text, String voice, TtsOutputSink sink, TtsEngine firstEngine,
+                        LatencyHistogram firstLatency, TtsEngine secondEngine, LatencyHistogram secondLatency) {
+            this.text = text;
+            this.voice = voice;
+            this.sink = sink;
+            this.first = new Attempt(firstEngine, firstLatency);
+            this.second = new Attempt(secondEngine, secondLatency);
+        }
+
+        /**
+         * Arm the hedge timer, then start the first attempt off the caller's thread: opening a realtime session can
+         * block on the connect, and a slow connect is exactly what the hedge is for.
+         */
+        void launch() {
+            CompletableFuture.delayedExecutor(hedgeDelayMillis(first.latency), TimeUnit.MILLISECONDS, LAUNCHER)
+                    .execute(this::hedge);
+            LAUNCHER.execute(first::begin);
+        }
+
+        @Override
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+
+        @Override
+        public void cancel() {
+            first.cancel();
+            second.cancel();
+            finish(new CancellationException("TTS synthesis cancelled"));
+        }
+
+        private void hedge() {
+            if (winner.get() == null && !completion.isDone() && second.begin()) {
+                hedges.increment();
+                LOG.debug("No audio from {} after {}ms, hedging to {}", first.engine.getName(),
+                        first.elapsedMillis(), second.engine.getName());
+            }
+        }
+
+        private Attempt other(Attempt attempt) {
+            return attempt == first ? second : first;
+        }
+
+        private boolean claim(Attempt attempt) {
+            Attempt current = winner.get();
+            if (current == attempt) {
+                return true;
+            }
+            if (current != null || completion.isDone() || !winner.compareAndSet(null, attempt)) {
+                return false;
+            }
+            attempt.latency.record(attempt.elapsedMillis());
+            Attempt loser = other(attempt);
+            if (loser.isStarted()) {
+                // The loser took at least this long; counting it keeps a slow engine from looking fast
+                loser.latency.record(loser.elapsedMillis());
+            }
+            loser.cancel();
+            if (attempt == second) {
+                hedgeWins.increment();
+            }
+            return true;
+        }
+
+        private void onEnd(Attempt attempt, Throwable error) {
+            if (error == null) {
+                // A synthesis that produced no audio at all still counts as a result
+                claim(attempt);
+            }
+            Attempt current = winner.get();
+            if (current == attempt) {
+                finish(error);
+                return;
+            }
+            if (current != null) {
+                return;
+            }
+            attempt.ended = true;
+            Attempt other = other(attempt);
+            if (attempt == first && !other.isStarted()) {
+                LAUNCHER.execute(() -> {
+                    if (other.begin()) {
+                        failovers.increment();
+                        LOG.warn("TTS engine {} failed before any audio, failing over to {}: {}",
+                                attempt.engine.getName(), other.engine.getName(), error.getMessage());
+                    }
+                });
+                return;
+            }
+            // The first attempt is always launched, so a hedge that fails before it starts waits for it
+            if (other.ended) {
+                finish(error);
+            }
+        }
+
+        private void finish(Throwable error) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                sink.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close TTS output sink: {}", e.getMessage());
+            }
+            if (error == null) {
+                completion.complete(null);
+            } else {
+                completion.completeExceptionally(error);
+            }
+        }
+
+        /**
+         * One engine's attempt; acts as that engine's sink and forwards audio only if it won.
+         */
+        private class Attempt implements TtsOutputSink {
+            private final TtsEngine engine;
+            private final LatencyHistogram latency;
+            private volatile long startNanos;
+            private volatile boolean ended;
+            private Synthesis handle;
+            private boolean started;
+            private boolean cancelled;
+
+            Attempt(TtsEngine engine, LatencyHistogram latency) {
+                this.engine = engine;
+                this.latency = latency;
+            }
+
+            /**
+             * @return false if the attempt was already started or cancelled
+             */
+            boolean begin() {
+                synchronized (this) {
+                    if (started || cancelled) {
+                        return false;
+                    }
+                    started = true;
+                    startNanos = System.nanoTime();
+                }
+                Synthesis h;
+                try {
+                    h = engine.start(text, voice, this);
+                } catch (RuntimeException e) {
+                    onEnd(this, e);
+                    return true;
+                }
+                boolean cancelNow;
+                synchronized (this) {
+                    handle = h;
+                    cancelNow = cancelled;
+                }
+                if (cancelNow) {
+                    h.cancel();
+                }
+                h.completion().whenComplete((ignored, error) -> onEnd(this, error));
+                return true;
+            }
+
+            void cancel() {
+                Synthesis h;
+                synchronized (this) {
+                    cancelled = true;
+                    h = handle;
+                }
+                if (h != null) {
+                    h.cancel();
+                }
+            }
+
+            synchronized boolean isStarted() {
+                return started;
+            }
+
+            long elapsedMillis() {
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            }
+
+            @Override
+            public void write(byte[] audioData) {
+                if (claim(this)) {
+                    sink.write(audioData);
+                }
+            }
+
+            @Override
+            public void write(ByteBuffer audio) {
+                if (claim(this)) {
+                    sink.write(audio);
+                }
+            }
+
+            @Override
+            public void close() {
+                // The router closes the real sink once the winner is done
+            }
+        }
+    }
+
+    /**
+     * Snapshot of router counters.
+     */
+    public static final class Stats {
+        private final long requests;
+        private final long hedges;
+        private final long hedgeWins;
+        private final long failovers;
+
+        Stats(long requests, long hedges, long hedgeWins, long failovers) {
+            this.requests = requests;
+            this.hedges = hedges;
+            this.hedgeWins = hedgeWins;
+            this.failovers = failovers;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * Number of hedge requests sent because the first engine was slow.
+         */
+        public long getHedges() {
+            return hedges;
+        }
+
+        /**
+         * Number of syntheses served by the second engine, through a hedge or a failover.
+         */
+        public long getHedgeWins() {
+            return hedgeWins;
+        }
+
+        public long getFailovers() {
+            return failovers;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{requests=" + requests + ", hedges=" + hedges + ", hedgeWins=" + hedgeWins
+                    + ", failovers=" + failovers + '}';
+        }
+    }
+}
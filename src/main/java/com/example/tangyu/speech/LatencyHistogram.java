@@ -0,0 +1,104 @@
+package com.example.tangyu.speech;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic millisecond buckets (four per power of two, so
+ * percentiles are accurate to about 19%; at the low end, where that would round to the same
+ * millisecond, buckets are 1ms wide). Counts are halved every {@code halfLifeSamples}
+ * recordings, which keeps percentiles following the recent behaviour of a backend instead of
+ * its whole history.
+ */
+public class LatencyHistogram {
+    private static final int BUCKETS = 76;
+    private static final long[] UPPER_BOUNDS = new long[BUCKETS];
+
+    static {
+        // 1ms .. ~9 min; the last bucket also takes everything above
+        for (int i = 0; i < BUCKETS; i++) {
+            long bound = (long) Math.ceil(Math.pow(2, i / 4.0));
+            // Strictly increasing, so every bucket is reachable and binarySearch is well defined
+            UPPER_BOUNDS[i] = i == 0 ? bound : Math.max(bound, UPPER_BOUNDS[i - 1] + 1);
+        }
+    }
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong recorded = new AtomicLong();
+    private final long halfLifeSamples;
+
+    public LatencyHistogram() {
+        this(1000);
+    }
+
+    /**
+     * @param halfLifeSamples recordings after which older samples count half; 0 never decays
+     */
+    public LatencyHistogram(long halfLifeSamples) {
+        this.halfLifeSamples = halfLifeSamples;
+    }
+
+    public void record(long millis) {
+        int index = Arrays.binarySearch(UPPER_BOUNDS, Math.max(0, millis));
+        if (index < 0) {
+            index = Math.min(-index - 1, BUCKETS - 1);
+        }
+        counts.incrementAndGet(index);
+        long n = recorded.incrementAndGet();
+        if (halfLifeSamples > 0 && n % halfLifeSamples == 0) {
+            decay();
+        }
+    }
+
+    /**
+     * Current (decayed) number of samples.
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @param quantile between 0 and 1, e.g. 0.99
+     * @return upper bound in milliseconds of the bucket holding the quantile, or -1 if empty
+     */
+    public long percentile(double quantile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1.0, Math.max(0.0, quantile)) * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return UPPER_BOUNDS[i];
+            }
+        }
+        return UPPER_BOUNDS[BUCKETS - 1];
+    }
+
+    private void decay() {
+        for (int i = 0; i < BUCKETS; i++) {
+            long current;
+            do {
+                current = counts.get(i);
+            } while (!counts.compareAndSet(i, current, current / 2));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyHistogram{count=" + getCount() + ", p50=" + percentile(0.5)
+                + "ms, p95=" + percentile(0.95) + "ms, p99=" + percentile(0.99) + "ms}";
+    }
+}
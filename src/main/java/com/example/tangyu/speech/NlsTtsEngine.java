@@ -0,0 +1,137 @@
+package com.example.tangyu.speech;
+
+import com.example.tangyu.metrics.SpeechMetrics;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * {@link TtsEngine} over the NLS HTTP API of {@link TtsClient}. The response body is forwarded to
+ * the sink while it downloads, so the first audio is available as soon as NLS starts sending.
+ * Requested voices are translated through a voice map, so a realtime voice name can be given to
+ * both engines of a {@link HedgedTtsRouter}; names missing from the map are passed through.
+ */
+public class NlsTtsEngine implements TtsEngine {
+    private static final Logger LOG = LoggerFactory.getLogger(NlsTtsEngine.class);
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final TtsClient ttsClient;
+    private final String voice;
+    private final Map<String, String> voiceMap;
+    private final String format;
+    private final int sampleRate;
+
+    public NlsTtsEngine(TtsClient ttsClient, String voice, String format, int sampleRate) {
+        this(ttsClient, voice, Map.of(), format, sampleRate);
+    }
+
+    /**
+     * @param voice      default NLS voice, e.g. "xiaoyun"
+     * @param voiceMap   requested voice name to NLS voice
+     * @param format     NLS output format; use "pcm" when hedging against the realtime engine
+     * @param sampleRate output sample rate
+     */
+    public NlsTtsEngine(TtsClient ttsClient, String voice, Map<String, String> voiceMap, String format,
+                        int sampleRate) {
+        this.ttsClient = Objects.requireNonNull(ttsClient);
+        this.voice = Objects.requireNonNull(voice, "Voice name is required");
+        this.voiceMap = Map.copyOf(voiceMap);
+        this.format = Objects.requireNonNull(format, "Audio format is required");
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String getName() {
+        return "nls";
+    }
+
+    @Override
+    public Synthesis start(String text, String voice, TtsOutputSink sink) {
+        String nlsVoice = voice == null ? this.voice : voiceMap.getOrDefault(voice, voice);
+        Call call = ttsClient.newCall(text, nlsVoice, format, sampleRate);
+        NlsSynthesis synthesis = new NlsSynthesis(call, sink);
+        call.enqueue(synthesis);
+        return synthesis;
+    }
+
+    private static class NlsSynthesis implements Synthesis, Callback {
+        private final Call call;
+        private final TtsOutputSink sink;
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+
+        NlsSynthesis(Call call, TtsOutputSink sink) {
+            this.call = call;
+            this.sink = sink;
+        }
+
+        @Override
+        public CompletableFuture<Void> completion() {
+            return completion;
+        }
+
+        @Override
+        public void cancel() {
+            call.cancel();
+            finish(new CancellationException("NLS synthesis cancelled"));
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            finish(call.isCanceled() ? new CancellationException("NLS synthesis cancelled") : e);
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            try (response) {
+                TtsClient.checkResponse(response);
+                try (InputStream in = response.body().byteStream()) {
+                    byte[] buffer = new byte[READ_BUFFER_SIZE];
+                    boolean first = true;
+                    int read;
+                    while (!completion.isDone() && (read = in.read(buffer)) != -1) {
+                        if (read > 0) {
+                            if (first) {
+                                first = false;
+                                SpeechMetrics.ttsFirstAudio("nls", "service", System.nanoTime() - startNanos);
+                            }
+                            sink.write(Arrays.copyOf(buffer, read));
+                        }
+                    }
+                }
+                finish(null);
+            } catch (Exception e) {
+                finish(call.isCanceled() ? new CancellationException("NLS synthesis cancelled") : e);
+            }
+        }
+
+        private synchronized void finish(Throwable error) {
+            if (completion.isDone()) {
+                return;
+            }
+            try {
+                sink.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close TTS output sink: {}", e.getMessage());
+            }
+            if (error == null) {
+                completion.complete(null);
+            } else {
+                if (!(error instanceof CancellationException)) {
+                    SpeechMetrics.upstreamError("tts_nls", error);
+                }
+                completion.completeExceptionally(error);
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.tangyu.speech;
+
+import java.util.Objects;
+
+/**
+ * {@link TtsEngine} over a pooled Qwen realtime session. Cached texts are replayed from the
+ * {@link TtsAudioCache}; other texts are sent through a chunking {@link TtsStream}, so the first
+ * sentence is synthesized before the rest of the text, and recorded into the cache.
+ */
+public class RealtimeTtsEngine implements TtsEngine {
+    private final TtsRealtimeClient ttsClient;
+    private final String voice;
+
+    /**
+     * @param voice default realtime voice, or null for the configured default
+     */
+    public RealtimeTtsEngine(TtsRealtimeClient ttsClient, String voice) {
+        this.ttsClient = Objects.requireNonNull(ttsClient);
+        this.voice = voice;
+    }
+
+    @Override
+    public String getName() {
+        return "realtime";
+    }
+
+    @Override
+    public Synthesis start(String text, String voice, TtsOutputSink sink) {
+        return ttsClient.synthesizeAsync(text, voice != null ? voice : this.voice, sink);
+    }
+}
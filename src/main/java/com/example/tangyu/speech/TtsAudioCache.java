@@ -0,0 +1,428 @@
+package com.example.tangyu.speech;
+
+import com.example.tangyu.config.TtsCacheConfig;
+import com.example.tangyu.metrics.SpeechMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Two-tier cache of synthesized audio keyed by normalized text plus {@link TtsSessionKey}.
+ *
+ * The heap tier is an LRU bounded by total bytes. The optional disk tier keeps one file per entry
+ * in a directory and survives restarts; its recency is tracked in memory and seeded from file
+ * modification times on startup. Disk hits are memory-mapped and replayed from the page cache,
+ * then promoted to the heap tier. Short texts are admitted on first sight, longer ones only after
+ * they have been requested several times, so one-off long replies do not push out fixed prompts.
+ */
+public class TtsAudioCache {
+    private static final Logger LOG = LoggerFactory.getLogger(TtsAudioCache.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final String ENTRY_SUFFIX = ".audio";
+    private static final int REPLAY_CHUNK_BYTES = 8192;
+    private static final int MAX_TRACKED_TEXTS = 10_000;
+
+    private final TtsCacheConfig config;
+    private final LinkedHashMap<String, byte[]> heap = new LinkedHashMap<>(64, 0.75f, true);
+    private long heapBytes;
+    /** Disk entries to their sizes, least recently used first; guarded by itself */
+    private final LinkedHashMap<String, Long> diskIndex = new LinkedHashMap<>(64, 0.75f, true);
+    private long diskBytes;
+    private final LinkedHashMap<String, Integer> missCounts = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_TRACKED_TEXTS;
+        }
+    };
+
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public TtsAudioCache(TtsCacheConfig config) {
+        this.config = Objects.requireNonNull(config);
+        if (config.getDiskDir() != null) {
+            loadDiskIndex(config.getDiskDir());
+        }
+        SpeechMetrics.counter("speech.cache.requests", "Cache lookups by result", this,
+                c -> c.heapHits.sum() + c.diskHits.sum(), "cache", "tts", "result", "hit");
+        SpeechMetrics.counter("speech.cache.requests", "Cache lookups by result", this,
+                c -> c.misses.sum(), "cache", "tts", "result", "miss");
+        SpeechMetrics.gauge("speech.cache.entries", "Entries held by a cache", this,
+                c -> c.getStats().getHeapEntries() + c.getStats().getDiskEntries(), "cache", "tts");
+    }
+
+    /**
+     * Stream a cached entry through the callback in chunks, as a live synthesis would.
+     *
+     * @return true on a cache hit, false if the caller has to synthesize
+     */
+    public boolean replay(String text, TtsSessionKey key, Consumer<ByteBuffer> onAudio) {
+        String id = entryId(text, key);
+        byte[] audio = getHeap(id);
+        if (audio != null) {
+            heapHits.increment();
+            replay(ByteBuffer.wrap(audio), onAudio);
+            return true;
+        }
+        ByteBuffer mapped = mapDisk(id);
+        if (mapped == null) {
+            misses.increment();
+            return false;
+        }
+        diskHits.increment();
+        // Replay straight from the mapping; the heap copy is only made once the caller has the audio
+        replay(mapped, onAudio);
+        if (mapped.capacity() <= config.getHeapMaxBytes()) {
+            putHeap(id, copy(mapped));
+        }
+        return true;
+    }
+
+    /**
+     * Look up an entry in the heap tier, then the disk tier.
+     *
+     * @return the audio bytes, or null on a miss
+     */
+    public byte[] get(String text, TtsSessionKey key) {
+        String id = entryId(text, key);
+        byte[] audio = getHeap(id);
+        if (audio != null) {
+            heapHits.increment();
+            return audio;
+        }
+        ByteBuffer mapped = mapDisk(id);
+        if (mapped != null) {
+            diskHits.increment();
+            audio = copy(mapped);
+            putHeap(id, audio);
+            return audio;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Check for an entry without touching hit/miss counters or recency.
+     */
+    public boolean contains(String text, TtsSessionKey key) {
+        String id = entryId(text, key);
+        synchronized (heap) {
+            if (heap.containsKey(id)) {
+                return true;
+            }
+        }
+        synchronized (diskIndex) {
+            return diskIndex.containsKey(id);
+        }
+    }
+
+    /**
+     * Record a miss for the text in this voice and decide whether its audio should be stored.
+     */
+    public boolean shouldAdmit(String text, TtsSessionKey key) {
+        String normalized = normalize(text);
+        if (normalized.length() <= config.getMaxTextLength()) {
+            return true;
+        }
+        int seen;
+        synchronized (missCounts) {
+            seen = missCounts.merge(normalized + '\n' + key, 1, Integer::sum);
+        }
+        if (seen >= config.getAdmitAfter()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void put(String text, TtsSessionKey key, byte[] audio) {
+        if (audio == null || audio.length == 0) {
+            return;
+        }
+        String id = entryId(text, key);
+        admitted.increment();
+        putHeap(id, audio);
+        writeDisk(id, audio);
+    }
+
+    public Stats getStats() {
+        long heapEntries;
+        long heapSize;
+        synchronized (heap) {
+            heapEntries = heap.size();
+            heapSize = heapBytes;
+        }
+        long diskEntries;
+        long diskSize;
+        synchronized (diskIndex) {
+            diskEntries = diskIndex.size();
+            diskSize = diskBytes;
+        }
+        return new Stats(heapHits.sum(), diskHits.sum(), misses.sum(), admitted.sum(), rejected.sum(),
+                heapEntries, heapSize, diskEntries, diskSize);
+    }
+
+    /**
+     * Normalize text so that width/spacing variants of the same phrase share one entry.
+     */
+    static String normalize(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        return WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+    }
+
+    private static String entryId(String text, TtsSessionKey key) {
+        String material = normalize(text) + '\n' + key;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(material.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static void replay(ByteBuffer audio, Consumer<ByteBuffer> onAudio) {
+        int length = audio.capacity();
+        for (int offset = 0; offset < length; offset += REPLAY_CHUNK_BYTES) {
+            // read-only views over the cached array or mapping, no copy per chunk
+            onAudio.accept(audio.slice(offset, Math.min(REPLAY_CHUNK_BYTES, length - offset)).asReadOnlyBuffer());
+        }
+    }
+
+    private static byte[] copy(ByteBuffer audio) {
+        byte[] bytes = new byte[audio.capacity()];
+        audio.get(0, bytes);
+        return bytes;
+    }
+
+    private byte[] getHeap(String id) {
+        synchronized (heap) {
+            return heap.get(id);
+        }
+    }
+
+    private void putHeap(String id, byte[] audio) {
+        if (audio.length > config.getHeapMaxBytes()) {
+            return;
+        }
+        synchronized (heap) {
+            byte[] previous = heap.put(id, audio);
+            heapBytes += audio.length - (previous != null ? previous.length : 0);
+            Iterator<Map.Entry<String, byte[]>> it = heap.entrySet().iterator();
+            while (heapBytes > config.getHeapMaxBytes() && it.hasNext()) {
+                Map.Entry<String, byte[]> eldest = it.next();
+                heapBytes -= eldest.getValue().length;
+                it.remove();
+            }
+        }
+    }
+
+    private void loadDiskIndex(Path dir) {
+        try {
+            Files.createDirectories(dir);
+            List<Path> files = new ArrayList<>();
+            Map<Path, Long> modified = new HashMap<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir, "*" + ENTRY_SUFFIX)) {
+                for (Path entry : entries) {
+                    files.add(entry);
+                    modified.put(entry, Files.getLastModifiedTime(entry).toMillis());
+                }
+            }
+            // Oldest first, so the access order picks up where the previous run left off
+            files.sort(Comparator.comparing(modified::get));
+            synchronized (diskIndex) {
+                for (Path entry : files) {
+                    String name = entry.getFileName().toString();
+                    long size = Files.size(entry);
+                    diskIndex.put(name.substring(0, name.length() - ENTRY_SUFFIX.length()), size);
+                    diskBytes += size;
+                }
+            }
+            LOG.info("TTS disk cache loaded: dir={}, entries={}, bytes={}", dir.toAbsolutePath(), files.size(), diskBytes);
+        } catch (IOException e) {
+            LOG.warn("Failed to load TTS disk cache from {}: {}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * Map a disk entry read-only. Entries are only ever replaced by an atomic move and evicted by
+     * unlinking, so a live mapping never sees the file shrink underneath it.
+     */
+    private MappedByteBuffer mapDisk(String id) {
+        Path dir = config.getDiskDir();
+        if (dir == null) {
+            return null;
+        }
+        synchronized (diskIndex) {
+            // get() also moves the entry to the most recently used end
+            if (diskIndex.get(id) == null) {
+                return null;
+            }
+        }
+        Path file = dir.resolve(id + ENTRY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer audio = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // Persist recency for the next startup; eviction itself uses the in-memory order
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            return audio;
+        } catch (IOException e) {
+            LOG.warn("Failed to read TTS cache entry {}: {}", file, e.getMessage());
+            synchronized (diskIndex) {
+                Long size = diskIndex.remove(id);
+                if (size != null) {
+                    diskBytes -= size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private void writeDisk(String id, byte[] audio) {
+        Path dir = config.getDiskDir();
+        if (dir == null || audio.length > config.getDiskMaxBytes()) {
+            return;
+        }
+        synchronized (diskIndex) {
+            if (diskIndex.containsKey(id)) {
+                return;
+            }
+        }
+        Path file = dir.resolve(id + ENTRY_SUFFIX);
+        try {
+            Path tmp = Files.createTempFile(dir, id, ".tmp");
+            Files.write(tmp, audio);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOG.warn("Failed to write TTS cache entry {}: {}", file, e.getMessage());
+            return;
+        }
+        List<String> evicted = new ArrayList<>();
+        synchronized (diskIndex) {
+            if (diskIndex.putIfAbsent(id, (long) audio.length) == null) {
+                diskBytes += audio.length;
+            }
+            Iterator<Map.Entry<String, Long>> it = diskIndex.entrySet().iterator();
+            while (diskBytes > config.getDiskMaxBytes() && it.hasNext()) {
+                Map.Entry<String, Long> eldest = it.next();
+                diskBytes -= eldest.getValue();
+                evicted.add(eldest.getKey());
+                it.remove();
+            }
+        }
+        for (String victim : evicted) {
+            try {
+                Files.deleteIfExists(dir.resolve(victim + ENTRY_SUFFIX));
+            } catch (IOException e) {
+                LOG.warn("Failed to delete TTS cache entry {}: {}", victim, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Point-in-time cache counters.
+     */
+    public static final class Stats {
+        private final long heapHits;
+        private final long diskHits;
+        private final long misses;
+        private final long admitted;
+        private final long rejected;
+        private final long heapEntries;
+        private final long heapBytes;
+        private final long diskEntries;
+        private final long diskBytes;
+
+        Stats(long heapHits, long diskHits, long misses, long admitted, long rejected,
+              long heapEntries, long heapBytes, long diskEntries, long diskBytes) {
+            this.heapHits = heapHits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.admitted = admitted;
+            this.rejected = rejected;
+            this.heapEntries = heapEntries;
+            this.heapBytes = heapBytes;
+            this.diskEntries = diskEntries;
+            this.diskBytes = diskBytes;
+        }
+
+        public long getHeapHits() {
+            return heapHits;
+        }
+
+        public long getDiskHits() {
+            return diskHits;
+        }
+
+        public long getMisses() {
+            return misses;
+        }
+
+        public long getAdmitted() {
+            return admitted;
+        }
+
+        public long getRejected() {
+            return rejected;
+        }
+
+        public long getHeapEntries() {
+            return heapEntries;
+        }
+
+        public long getHeapBytes() {
+            return heapBytes;
+        }
+
+        public long getDiskEntries() {
+            return diskEntries;
+        }
+
+        public long getDiskBytes() {
+            return diskBytes;
+        }
+
+        public double getHitRatio() {
+            long hits = heapHits + diskHits;
+            long total = hits + misses;
+            return total == 0 ? 0.0 : (double) hits / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("heapHits=%d, diskHits=%d, misses=%d, hitRatio=%.2f, admitted=%d, rejected=%d, heap=%d/%dB, disk=%d/%dB",
+                    heapHits, diskHits, misses, getHitRatio(), admitted, rejected, heapEntries, heapBytes, diskEntries, diskBytes);
+        }
+    }
+}
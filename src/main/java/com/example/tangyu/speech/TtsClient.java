@@ -1,6 +1,7 @@
 package com.example.tangyu.speech;
 
 import com.example.tangyu.config.CredentialConfig;
+import okhttp3.Call;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -13,6 +14,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
@@ -24,18 +26,64 @@ public class TtsClient {
     private static final Logger LOG = LoggerFactory.getLogger(TtsClient.class);
     private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
     private static final String TTS_ENDPOINT = "https://nls-gateway-cn-shanghai.aliyuncs.com/stream/v1/tts";
+    /** Model name used in cache keys so NLS audio never collides with realtime audio. */
+    private static final String CACHE_MODEL = "nls";
 
     private final CredentialConfig credentialConfig;
     private final TokenClient tokenClient;
     private final OkHttpClient httpClient;
+    private final TtsAudioCache audioCache;
 
     public TtsClient(CredentialConfig credentialConfig, TokenClient tokenClient) {
+        this(credentialConfig, tokenClient, null);
+    }
+
+    /**
+     * @param audioCache synthesis cache, or null to always call the service
+     */
+    public TtsClient(CredentialConfig credentialConfig, TokenClient tokenClient, TtsAudioCache audioCache) {
         this.credentialConfig = Objects.requireNonNull(credentialConfig);
         this.tokenClient = Objects.requireNonNull(tokenClient);
         this.httpClient = new OkHttpClient();
+        this.audioCache = audioCache;
     }
 
     public Path synthesizeToFile(String text, String voice, String format, int sampleRate, Path outputFile) {
+        validate(text, voice, format, sampleRate);
+        TtsSessionKey cacheKey = new TtsSessionKey(CACHE_MODEL, voice, sampleRate, format);
+        if (audioCache != null) {
+            byte[] cached = audioCache.get(text, cacheKey);
+            if (cached != null) {
+                try {
+                    Files.write(outputFile, cached);
+                    LOG.info("TTS cache hit, audio saved to {}", outputFile.toAbsolutePath());
+                    return outputFile;
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to write cached TTS audio", e);
+                }
+            }
+        }
+        LOG.info("Sending TTS request to {} for {} characters", TTS_ENDPOINT, text.length());
+        try (Response response = newCall(text, voice, format, sampleRate).execute()) {
+            checkResponse(response);
+
+            try (InputStream inputStream = response.body().byteStream()) {
+                Files.copy(inputStream, outputFile, StandardCopyOption.REPLACE_EXISTING);
+                LOG.info("Audio saved to {}", outputFile.toAbsolutePath());
+            }
+            if (audioCache != null && audioCache.shouldAdmit(text, cacheKey)) {
+                audioCache.put(text, cacheKey, Files.readAllBytes(outputFile));
+            }
+            return outputFile;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to send TTS request", e);
+        }
+    }
+
+    /**
+     * Build the synthesis call without executing it, for callers that stream or cancel it.
+     */
+    Call newCall(String text, String voice, String format, int sampleRate) {
         validate(text, voice, format, sampleRate);
         Map<String, Object> payload = new HashMap<>();
         payload.put("appkey", credentialConfig.getAppKey());
@@ -52,25 +100,21 @@ public class TtsClient {
                 .post(RequestBody.create(requestBody, JSON))
                 .build();
 
-        LOG.info("Sending TTS request to {} for {} characters", TTS_ENDPOINT, text.length());
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IllegalStateException("TTS request failed: " + response.code() + " " + response.message());
-            }
+        return httpClient.newCall(request);
+    }
 
-            String contentType = Objects.requireNonNull(response.body()).contentType().toString();
-            if (contentType.contains("application/json")) {
-                String errorBody = response.body().string();
-                throw new IllegalStateException("TTS returned error JSON: " + errorBody);
-            }
+    /**
+     * Fail unless the response carries audio; NLS reports errors as JSON bodies.
+     */
+    static void checkResponse(Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IllegalStateException("TTS request failed: " + response.code() + " " + response.message());
+        }
 
-            try (InputStream inputStream = response.body().byteStream()) {
-                Files.copy(inputStream, outputFile);
-                LOG.info("Audio saved to {}", outputFile.toAbsolutePath());
-            }
-            return outputFile;
-        } catch (IOException e) {
-            throw new RuntimeException("Failed to send TTS request", e);
+        String contentType = Objects.requireNonNull(response.body()).contentType().toString();
+        if (contentType.contains("application/json")) {
+            String errorBody = response.body().string();
+            throw new IllegalStateException("TTS returned error JSON: " + errorBody);
         }
     }
 
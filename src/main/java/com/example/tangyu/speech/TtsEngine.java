@@ -0,0 +1,46 @@
+package com.example.tangyu.speech;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A TTS backend that streams audio into a sink and can be cancelled mid-synthesis.
+ * Implementations are bound to one output format, so engines combined by {@link HedgedTtsRouter}
+ * must be configured to produce interchangeable audio and map requested voices to the same speaker.
+ */
+public interface TtsEngine {
+
+    /**
+     * Short name used in logs and latency statistics.
+     */
+    String getName();
+
+    /**
+     * Start synthesizing asynchronously in the engine's default voice.
+     */
+    default Synthesis start(String text, TtsOutputSink sink) {
+        return start(text, null, sink);
+    }
+
+    /**
+     * Start synthesizing asynchronously. The sink is closed when the synthesis ends, including
+     * on failure and cancellation.
+     *
+     * @param voice voice requested by the caller, or null for the engine's default
+     */
+    Synthesis start(String text, String voice, TtsOutputSink sink);
+
+    /**
+     * Handle of a running synthesis.
+     */
+    interface Synthesis {
+        /**
+         * Completes after the last audio has been written to the sink.
+         */
+        CompletableFuture<Void> completion();
+
+        /**
+         * Abort the synthesis; the completion future fails with a CancellationException.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.tangyu.speech;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Streaming decoder for TTS realtime server events.
+ *
+ * Only the fields the client acts on are read ({@code type}, {@code delta}, the session id and
+ * error messages); everything else is skipped without building a tree. Audio deltas are base64
+ * decoded straight from the parser into a buffer owned by the decoder and reused for every event,
+ * so steady-state decoding does not allocate per delta.
+ *
+ * Not thread-safe: one decoder per WebSocket, used from its reader thread.
+ */
+final class TtsEventDecoder {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final Base64Variant BASE64 = Base64Variants.MIME_NO_LINEFEEDS
+            .withReadPadding(Base64Variant.PaddingReadBehaviour.PADDING_ALLOWED);
+    private static final int INITIAL_AUDIO_CAPACITY = 16 * 1024;
+
+    enum EventType {
+        SESSION_CREATED("session.created"),
+        AUDIO_DELTA("response.audio.delta"),
+        RESPONSE_DONE("response.done"),
+        SESSION_FINISHED("session.finished"),
+        ERROR("error"),
+        OTHER("");
+
+        private final char[] wireName;
+
+        EventType(String wireName) {
+            this.wireName = wireName.toCharArray();
+        }
+    }
+
+    private final AudioBuffer audio = new AudioBuffer();
+    private EventType type;
+    private String sessionId;
+    private String message;
+
+    /**
+     * Decode one event. Results stay valid until the next call.
+     */
+    EventType decode(String json) throws IOException {
+        type = null;
+        sessionId = null;
+        message = null;
+        audio.reset();
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return EventType.OTHER;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "type":
+                        if (value == JsonToken.VALUE_STRING) {
+                            type = matchType(parser);
+                        } else {
+                            type = EventType.OTHER;
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "delta":
+                        // "type" normally comes first; decode eagerly only if it says audio or is not known yet
+                        if (value == JsonToken.VALUE_STRING && (type == null || type == EventType.AUDIO_DELTA)) {
+                            parser.readBinaryValue(BASE64, audio);
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "session":
+                        if (value == JsonToken.START_OBJECT) {
+                            sessionId = readNestedString(parser, "id");
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "message":
+                        if (value == JsonToken.VALUE_STRING) {
+                            message = parser.getText();
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    case "error":
+                        if (value == JsonToken.START_OBJECT) {
+                            String nested = readNestedString(parser, "message");
+                            if (message == null) {
+                                message = nested;
+                            }
+                        } else if (value == JsonToken.VALUE_STRING) {
+                            if (message == null) {
+                                message = parser.getText();
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        return type != null ? type : EventType.OTHER;
+    }
+
+    /**
+     * Decoded audio of the last {@link EventType#AUDIO_DELTA}; backed by a reused array.
+     */
+    ByteBuffer audio() {
+        return audio.asBuffer();
+    }
+
+    String sessionId() {
+        return sessionId;
+    }
+
+    String message() {
+        return message;
+    }
+
+    private static EventType matchType(JsonParser parser) throws IOException {
+        char[] chars = parser.getTextCharacters();
+        int offset = parser.getTextOffset();
+        int length = parser.getTextLength();
+        for (EventType candidate : EventType.values()) {
+            char[] name = candidate.wireName;
+            if (name.length == length && Arrays.equals(chars, offset, offset + length, name, 0, length)) {
+                return candidate;
+            }
+        }
+        return EventType.OTHER;
+    }
+
+    /**
+     * Read one string field of the object the parser is positioned on and skip the rest of it.
+     */
+    private static String readNestedString(JsonParser parser, String name) throws IOException {
+        String result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (result == null && name.equals(field) && value == JsonToken.VALUE_STRING) {
+                result = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Growable byte sink that keeps its array between events.
+     */
+    private static final class AudioBuffer extends OutputStream {
+        private byte[] bytes = new byte[INITIAL_AUDIO_CAPACITY];
+        private ByteBuffer view = ByteBuffer.wrap(bytes);
+        private int count;
+
+        void reset() {
+            count = 0;
+        }
+
+        ByteBuffer asBuffer() {
+            view.clear().limit(count);
+            return view;
+        }
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(count + 1);
+            bytes[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            ensureCapacity(count + len);
+            System.arraycopy(b, off, bytes, count, len);
+            count += len;
+        }
+
+        private void ensureCapacity(int required) {
+            if (required > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(required, bytes.length * 2));
+                view = ByteBuffer.wrap(bytes);
+            }
+        }
+    }
+}
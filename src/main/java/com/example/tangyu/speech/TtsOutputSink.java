@@ -0,0 +1,70 @@
+package com.example.tangyu.speech;
+
+import com.example.tangyu.metrics.TurnTrace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/**
+ * Destination for synthesized audio. {@link #write} is called on the WebSocket reader thread for
+ * every delta and must not block; {@link #close} is called once after the last delta.
+ */
+public interface TtsOutputSink extends AutoCloseable {
+
+    /**
+     * Adapt a chunk callback; closing the returned sink does nothing.
+     */
+    static TtsOutputSink of(Consumer<byte[]> onAudioData) {
+        return new TtsOutputSink() {
+            @Override
+            public void write(byte[] audioData) {
+                onAudioData.accept(audioData);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    /**
+     * Wrap a sink so the turn records when the first audio arrives and when synthesis ends.
+     */
+    static TtsOutputSink traced(TtsOutputSink sink, TurnTrace trace) {
+        return new TtsOutputSink() {
+            @Override
+            public void write(byte[] audioData) {
+                trace.mark(TurnTrace.Stage.TTS_FIRST_AUDIO);
+                sink.write(audioData);
+            }
+
+            @Override
+            public void write(ByteBuffer audio) {
+                trace.mark(TurnTrace.Stage.TTS_FIRST_AUDIO);
+                sink.write(audio);
+            }
+
+            @Override
+            public void close() throws IOException {
+                trace.mark(TurnTrace.Stage.TTS_DONE);
+                sink.close();
+            }
+        };
+    }
+
+    void write(byte[] audioData);
+
+    /**
+     * Write a decoded delta. The buffer is reused after the call returns, so sinks that keep the
+     * data must copy it; the default implementation copies into a new array.
+     */
+    default void write(ByteBuffer audio) {
+        byte[] copy = new byte[audio.remaining()];
+        audio.get(copy);
+        write(copy);
+    }
+
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,140 @@
+package com.example.tangyu.speech;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Synthesizes a catalog of fixed phrases into the TTS cache in the background, so that fixed
+ * prompts are served from the cache from the very first request.
+ *
+ * {@link #readiness()} completes once every phrase has been attempted or the deadline has passed,
+ * whichever comes first; phrases still in flight at the deadline keep warming in the background.
+ */
+public class TtsPhraseWarmer {
+    private static final Logger LOG = LoggerFactory.getLogger(TtsPhraseWarmer.class);
+
+    private final TtsRealtimeClient ttsClient;
+    private final List<String> phrases;
+    private final String voice;
+    private final int parallelism;
+    private final long deadlineMillis;
+    private final CompletableFuture<Void> readiness = new CompletableFuture<>();
+    private final AtomicInteger synthesized = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /**
+     * @param ttsClient      client whose cache is warmed
+     * @param phrases        phrases to synthesize; blanks and duplicates are skipped
+     * @param voice          voice to warm (null uses the configured default)
+     * @param parallelism    number of concurrent syntheses
+     * @param deadlineMillis readiness is reported after this long even if warming is unfinished
+     */
+    public TtsPhraseWarmer(TtsRealtimeClient ttsClient, List<String> phrases, String voice,
+                           int parallelism, long deadlineMillis) {
+        this.ttsClient = Objects.requireNonNull(ttsClient);
+        Set<String> unique = new LinkedHashSet<>();
+        for (String phrase : phrases) {
+            if (phrase != null && !phrase.isBlank()) {
+                unique.add(phrase.trim());
+            }
+        }
+        this.phrases = new ArrayList<>(unique);
+        this.voice = voice;
+        this.parallelism = Math.max(1, parallelism);
+        this.deadlineMillis = deadlineMillis;
+    }
+
+    /**
+     * Read a phrase catalog file: one phrase per line, blank lines and lines starting with '#' are ignored.
+     */
+    public static List<String> loadCatalog(Path file) {
+        try {
+            List<String> phrases = new ArrayList<>();
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    phrases.add(trimmed);
+                }
+            }
+            return phrases;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read TTS phrase catalog " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Start warming in the background; returns immediately.
+     */
+    public CompletableFuture<Void> start() {
+        if (phrases.isEmpty()) {
+            readiness.complete(null);
+            return readiness;
+        }
+        long startedAt = System.currentTimeMillis();
+        LOG.info("Warming TTS cache with {} phrases (parallelism={}, deadline={}ms)", phrases.size(), parallelism, deadlineMillis);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "tts-warmup");
+            t.setDaemon(true);
+            return t;
+        });
+        CompletableFuture<?>[] tasks = new CompletableFuture<?>[phrases.size()];
+        for (int i = 0; i < phrases.size(); i++) {
+            String phrase = phrases.get(i);
+            tasks[i] = CompletableFuture.runAsync(() -> warm(phrase), executor);
+        }
+
+        CompletableFuture.allOf(tasks).whenComplete((ignored, error) -> {
+            executor.shutdown();
+            LOG.info("TTS warmup finished in {}ms: synthesized={}, failed={}, total={}",
+                    System.currentTimeMillis() - startedAt, synthesized.get(), failed.get(), phrases.size());
+            readiness.complete(null);
+        });
+        if (deadlineMillis > 0) {
+            CompletableFuture.delayedExecutor(deadlineMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                if (readiness.complete(null)) {
+                    LOG.warn("TTS warmup deadline of {}ms passed with {}/{} phrases done, reporting ready anyway",
+                            deadlineMillis, synthesized.get() + failed.get(), phrases.size());
+                }
+            });
+        }
+        return readiness;
+    }
+
+    /**
+     * Completes when the catalog is warm or the deadline has passed.
+     */
+    public CompletableFuture<Void> readiness() {
+        return readiness;
+    }
+
+    public boolean isReady() {
+        return readiness.isDone();
+    }
+
+    private void warm(String phrase) {
+        try {
+            if (ttsClient.prefetch(phrase, voice)) {
+                synthesized.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            LOG.warn("Failed to warm TTS phrase '{}': {}", phrase, e.getMessage());
+        }
+    }
+}
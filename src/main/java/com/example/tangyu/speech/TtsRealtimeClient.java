@@ -1,18 +1,28 @@
 package com.example.tangyu.speech;
 
+import com.example.tangyu.config.TtsCacheConfig;
 import com.example.tangyu.config.TtsConfig;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
-import okhttp3.*;
+import com.example.tangyu.metrics.SpeechMetrics;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
-import java.util.Base64;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
@@ -20,27 +30,52 @@ import java.util.function.Consumer;
 /**
  * Real-time TTS client using DashScope Qwen TTS Realtime WebSocket API.
  * Supports streaming text-to-speech synthesis with low latency.
- * 
+ * Sessions are taken from a {@link TtsSessionPool}, so consecutive syntheses with the same
+ * voice reuse a warm connection instead of paying a new handshake. Texts found in the
+ * {@link TtsAudioCache} are replayed without contacting the service at all. Long texts are split
+ * at sentence boundaries and the segments are synthesized concurrently on separate sessions; their
+ * audio is emitted in order, with the first segment streamed as it arrives.
+ *
  * Reference: https://help.aliyun.com/zh/model-studio/qwen-tts-realtime-java-sdk
  */
-public class TtsRealtimeClient {
+public class TtsRealtimeClient implements AutoCloseable {
     private static final Logger LOG = LoggerFactory.getLogger(TtsRealtimeClient.class);
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final long SYNTHESIS_TIMEOUT_SECONDS = 60;
+    private static final int MIN_SEGMENT_LENGTH = 40;
 
     private final TtsConfig ttsConfig;
-    private final OkHttpClient httpClient;
+    private final TtsSessionPool sessionPool;
+    private final TtsAudioCache audioCache;
+    private final ExecutorService segmentExecutor;
 
     public TtsRealtimeClient(TtsConfig ttsConfig) {
+        this(ttsConfig, new TtsSessionPool(ttsConfig), defaultCache());
+    }
+
+    /**
+     * @param audioCache synthesis cache, or null to always synthesize
+     */
+    public TtsRealtimeClient(TtsConfig ttsConfig, TtsSessionPool sessionPool, TtsAudioCache audioCache) {
         this.ttsConfig = Objects.requireNonNull(ttsConfig);
-        this.httpClient = new OkHttpClient.Builder()
-                .readTimeout(30, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
+        this.sessionPool = Objects.requireNonNull(sessionPool);
+        this.audioCache = audioCache;
+        this.segmentExecutor = ttsConfig.getSegmentParallelism() > 1
+                ? Executors.newFixedThreadPool(ttsConfig.getSegmentParallelism(), r -> {
+                    Thread t = new Thread(r, "tts-segment");
+                    t.setDaemon(true);
+                    return t;
+                })
+                : null;
+    }
+
+    private static TtsAudioCache defaultCache() {
+        TtsCacheConfig cacheConfig = TtsCacheConfig.fromEnvironment();
+        return cacheConfig.isEnabled() ? new TtsAudioCache(cacheConfig) : null;
     }
 
     /**
      * Synthesize text to audio file (synchronous).
-     * 
+     *
      * @param text       text to synthesize
      * @param outputFile output audio file path
      * @return the output file path
@@ -51,7 +86,7 @@ public class TtsRealtimeClient {
 
     /**
      * Synthesize text to audio file with custom voice.
-     * 
+     *
      * @param text       text to synthesize
      * @param voice      voice name (optional, uses config default if null)
      * @param outputFile output audio file path
@@ -59,132 +94,385 @@ public class TtsRealtimeClient {
      */
     public Path synthesizeToFile(String text, String voice, Path outputFile) {
         validate(text, outputFile);
-        
-        CountDownLatch latch = new CountDownLatch(1);
-        AtomicBoolean success = new AtomicBoolean(false);
-        StringBuilder errorMessage = new StringBuilder();
-        
+
         try {
-            // Create WebSocket connection
-            String wsUrl = ttsConfig.getBaseWebsocketUrl().replace("https://", "wss://").replace("http://", "ws://");
-            if (!wsUrl.contains("/api-ws/v1/inference")) {
-                wsUrl = wsUrl + "/api-ws/v1/inference";
-            }
-            
-            Request request = new Request.Builder()
-                    .url(wsUrl)
-                    .build();
-            
-            WebSocket webSocket = httpClient.newWebSocket(request, new TtsWebSocketListener(
-                    text, voice != null ? voice : ttsConfig.getVoice(), 
-                    outputFile, latch, success, errorMessage));
-            
-            // Wait for completion
-            boolean completed = latch.await(60, TimeUnit.SECONDS);
-            
-            if (!completed) {
-                webSocket.close(1000, "Timeout");
-                throw new RuntimeException("TTS synthesis timeout");
-            }
-            
-            if (!success.get()) {
-                throw new RuntimeException("TTS synthesis failed: " + errorMessage.toString());
-            }
-            
+            synthesize(text, voice, FileTtsSink.open(outputFile, ttsConfig.getFormat(), ttsConfig.getSampleRate()));
             LOG.info("TTS synthesis completed. Audio saved to {}", outputFile.toAbsolutePath());
             return outputFile;
-            
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new RuntimeException("TTS synthesis interrupted", e);
         } catch (Exception e) {
             LOG.error("Failed to synthesize text to file", e);
             throw new RuntimeException("Failed to synthesize text: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Synthesize text into a sink (synchronous). The sink is closed when synthesis ends,
+     * whether it succeeded or not.
+     *
+     * @param text  text to synthesize
+     * @param voice voice name (optional, uses config default if null)
+     * @param sink  destination of the audio
+     */
+    public void synthesize(String text, String voice, TtsOutputSink sink) throws IOException {
+        Objects.requireNonNull(sink, "Output sink is required");
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Text to synthesize must be provided");
+        }
+        try {
+            synthesize(text, voice, sink::write);
+        } catch (RuntimeException e) {
+            try {
+                sink.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        sink.close();
+    }
+
     /**
      * Start streaming TTS synthesis with callback.
-     * 
+     *
      * @param onAudioData callback for audio data chunks
      * @param voice       voice name (optional)
      * @return WebSocket instance for sending text
+     * @deprecated use {@link #openStream(String, Consumer)}
      */
+    @Deprecated
     public WebSocket startStreaming(Consumer<byte[]> onAudioData, String voice) {
         return startStreaming(onAudioData, voice, null, null);
     }
 
     /**
      * Start streaming TTS synthesis with full callbacks.
-     * 
+     * The socket is opened for this call only, never pooled, and must be closed by the caller.
+     *
      * @param onAudioData callback for audio data chunks
      * @param voice       voice name (optional)
      * @param onError     error callback (optional)
      * @param onComplete  completion callback (optional)
      * @return WebSocket instance for sending text
+     * @deprecated use {@link #openStream(String, Consumer)} and its completion future
      */
+    @Deprecated
     public WebSocket startStreaming(Consumer<byte[]> onAudioData, String voice,
-                                   Runnable onError, Runnable onComplete) {
+                                    Runnable onError, Runnable onComplete) {
         Objects.requireNonNull(onAudioData, "Audio data callback is required");
-        
         try {
-            String wsUrl = ttsConfig.getBaseWebsocketUrl().replace("https://", "wss://").replace("http://", "ws://");
-            if (!wsUrl.contains("/api-ws/v1/inference")) {
-                wsUrl = wsUrl + "/api-ws/v1/inference";
-            }
-            
-            Request request = new Request.Builder()
-                    .url(wsUrl)
-                    .build();
-            
-            WebSocket webSocket = httpClient.newWebSocket(request, new TtsStreamWebSocketListener(
-                    voice != null ? voice : ttsConfig.getVoice(),
-                    onAudioData, onError, onComplete));
-            
-            // Send initial session configuration
-            sendSessionConfig(webSocket, voice != null ? voice : ttsConfig.getVoice());
-            
+            WebSocket webSocket = sessionPool.connect(new StreamingSocketListener(onAudioData, onError, onComplete));
+            webSocket.send(TtsSession.sessionUpdate(sessionKey(voice)));
             return webSocket;
-            
         } catch (Exception e) {
             LOG.error("Failed to start streaming TTS", e);
             throw new RuntimeException("Failed to start streaming TTS: " + e.getMessage(), e);
         }
     }
 
-    private void sendSessionConfig(WebSocket webSocket, String voice) {
+    /**
+     * Start synthesizing a complete text without waiting for it. A cached text is replayed into
+     * the sink before this returns; otherwise the text goes through a chunking {@link TtsStream}
+     * and its audio is recorded into the cache once the synthesis succeeds, as
+     * {@link #synthesize(String, String, TtsOutputSink)} does.
+     *
+     * @param voice voice name (optional, uses config default if null)
+     * @param sink  destination of the audio, closed when the synthesis ends
+     */
+    public TtsEngine.Synthesis synthesizeAsync(String text, String voice, TtsOutputSink sink) {
+        Objects.requireNonNull(sink, "Output sink is required");
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Text to synthesize must be provided");
+        }
+        TtsSessionKey key = sessionKey(voice);
+        long startNanos = System.nanoTime();
+        if (audioCache != null) {
+            boolean hit;
+            try {
+                hit = audioCache.replay(text, key, timeFirstAudio(sink::write, "cache", startNanos));
+            } catch (RuntimeException e) {
+                try {
+                    sink.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                return replayed(CompletableFuture.failedFuture(e));
+            }
+            if (hit) {
+                LOG.debug("TTS cache hit ({} chars, {})", text.length(), key);
+                try {
+                    sink.close();
+                } catch (IOException e) {
+                    return replayed(CompletableFuture.failedFuture(e));
+                }
+                return replayed(CompletableFuture.completedFuture(null));
+            }
+        }
+        ByteArrayOutputStream recorded = audioCache != null && audioCache.shouldAdmit(text, key)
+                ? new ByteArrayOutputStream() : null;
+        Consumer<ByteBuffer> timed = timeFirstAudio(sink::write, "service", startNanos);
+        TtsStream stream = openStream(voice, true, new TtsOutputSink() {
+            @Override
+            public void write(byte[] audioData) {
+                write(ByteBuffer.wrap(audioData));
+            }
+
+            @Override
+            public void write(ByteBuffer audio) {
+                if (recorded != null) {
+                    append(recorded, audio);
+                }
+                timed.accept(audio);
+            }
+
+            @Override
+            public void close() throws IOException {
+                sink.close();
+            }
+        });
+        if (recorded != null) {
+            stream.completion().thenRun(() -> audioCache.put(text, key, recorded.toByteArray()));
+        }
+        stream.append(text).commit();
+        return stream;
+    }
+
+    private static TtsEngine.Synthesis replayed(CompletableFuture<Void> completion) {
+        return new TtsEngine.Synthesis() {
+            @Override
+            public CompletableFuture<Void> completion() {
+                return completion;
+            }
+
+            @Override
+            public void cancel() {
+                // Replayed synchronously, nothing left to abort
+            }
+        };
+    }
+
+    /**
+     * Open an incremental synthesis with sentence chunking, for text that arrives piece by piece.
+     *
+     * @param voice       voice name (optional)
+     * @param onAudioData callback for audio data chunks
+     * @return stream to append text to; must be ended with commit() or cancel()
+     */
+    public TtsStream openStream(String voice, Consumer<byte[]> onAudioData) {
+        Objects.requireNonNull(onAudioData, "Audio data callback is required");
+        return openStream(voice, true, TtsOutputSink.of(onAudioData));
+    }
+
+    /**
+     * Open an incremental synthesis on a pooled session.
+     *
+     * @param voice          voice name (optional)
+     * @param chunkSentences commit every complete sentence as soon as it is appended
+     * @param sink           destination of the audio, closed when the stream ends
+     * @return stream to append text to; must be ended with commit() or cancel()
+     */
+    public TtsStream openStream(String voice, boolean chunkSentences, TtsOutputSink sink) {
+        Objects.requireNonNull(sink, "Output sink is required");
+        TtsSession session = sessionPool.acquire(sessionKey(voice));
+        TtsStream stream = new TtsStream(sessionPool, session, sink, chunkSentences);
+        stream.start();
+        return stream;
+    }
+
+    /**
+     * Make sure the text is in the cache, synthesizing it if needed. Admission rules are bypassed
+     * because prefetched texts are known to be reused.
+     *
+     * @return true if the text had to be synthesized, false if it was already cached
+     */
+    public boolean prefetch(String text, String voice) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("Text to synthesize must be provided");
+        }
+        if (audioCache == null) {
+            throw new IllegalStateException("TTS cache is disabled, nothing to prefetch into");
+        }
+        TtsSessionKey key = sessionKey(voice);
+        if (audioCache.contains(text, key)) {
+            return false;
+        }
+        ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+        runOnSession(text, key, audio -> append(recorded, audio));
+        audioCache.put(text, key, recorded.toByteArray());
+        return true;
+    }
+
+    public TtsSessionPool.Stats getPoolStats() {
+        return sessionPool.getStats();
+    }
+
+    /**
+     * @return cache counters, or null if caching is disabled
+     */
+    public TtsAudioCache.Stats getCacheStats() {
+        return audioCache != null ? audioCache.getStats() : null;
+    }
+
+    @Override
+    public void close() {
+        if (segmentExecutor != null) {
+            segmentExecutor.shutdownNow();
+        }
+        sessionPool.close();
+    }
+
+    /**
+     * Replay the text from the cache, or run one synthesis on a pooled session and block until
+     * the response is done.
+     */
+    private void synthesize(String text, String voice, Consumer<ByteBuffer> onAudio) {
+        TtsSessionKey key = sessionKey(voice);
+        long startNanos = System.nanoTime();
+        if (audioCache != null && audioCache.replay(text, key, timeFirstAudio(onAudio, "cache", startNanos))) {
+            LOG.debug("TTS cache hit ({} chars, {})", text.length(), key);
+            return;
+        }
+        ByteArrayOutputStream recorded = audioCache != null && audioCache.shouldAdmit(text, key)
+                ? new ByteArrayOutputStream() : null;
+        Consumer<ByteBuffer> timed = timeFirstAudio(onAudio, "service", startNanos);
+        Consumer<ByteBuffer> sink = recorded == null ? timed : audio -> {
+            append(recorded, audio);
+            timed.accept(audio);
+        };
         try {
-            ObjectNode config = OBJECT_MAPPER.createObjectNode();
-            config.put("type", "session.update");
-            ObjectNode session = OBJECT_MAPPER.createObjectNode();
-            ObjectNode model = OBJECT_MAPPER.createObjectNode();
-            model.put("model", ttsConfig.getModel());
-            model.put("voice", voice);
-            model.put("sample_rate", ttsConfig.getSampleRate());
-            model.put("format", ttsConfig.getFormat());
-            session.set("model", model);
-            config.set("session", session);
-            
-            String configJson = OBJECT_MAPPER.writeValueAsString(config);
-            webSocket.send(configJson);
-        } catch (Exception e) {
-            LOG.error("Failed to send session config", e);
+            runSegmented(text, key, sink);
+        } catch (RuntimeException e) {
+            SpeechMetrics.upstreamError("tts", e);
+            throw e;
+        }
+        if (recorded != null) {
+            audioCache.put(text, key, recorded.toByteArray());
         }
     }
 
-    private void sendText(WebSocket webSocket, String text) {
+    /**
+     * Synthesize a long text as concurrent segments, or in one go if it is short or
+     * segmentation is disabled. Audio reaches {@code onAudio} in text order.
+     */
+    private void runSegmented(String text, TtsSessionKey key, Consumer<ByteBuffer> onAudio) {
+        int parallelism = ttsConfig.getSegmentParallelism();
+        if (segmentExecutor == null || text.length() <= ttsConfig.getSegmentThreshold()) {
+            runOnSession(text, key, onAudio);
+            return;
+        }
+        // Twice as many segments as workers keeps them busy when segments synthesize unevenly
+        int targetLength = Math.max(MIN_SEGMENT_LENGTH, text.length() / (parallelism * 2));
+        List<String> segments = TtsTextSegmenter.split(text, targetLength);
+        if (segments.size() < 2) {
+            runOnSession(text, key, onAudio);
+            return;
+        }
+        LOG.debug("Synthesizing {} chars as {} segments ({})", text.length(), segments.size(), key);
+
+        OrderedAssembler assembler = new OrderedAssembler(segments.size(), onAudio);
+        List<Future<?>> futures = new ArrayList<>(segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            int index = i;
+            String segment = segments.get(i);
+            futures.add(segmentExecutor.submit(() -> {
+                runOnSession(segment, key, audio -> assembler.onAudio(index, audio));
+                assembler.onDone(index);
+            }));
+        }
         try {
-            ObjectNode request = OBJECT_MAPPER.createObjectNode();
-            request.put("type", "input.text");
-            request.put("text", text);
-            
-            String requestJson = OBJECT_MAPPER.writeValueAsString(request);
-            webSocket.send(requestJson);
-        } catch (Exception e) {
-            LOG.error("Failed to send text", e);
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause
+                    : new IllegalStateException("TTS segment failed: " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("TTS synthesis interrupted", e);
+        }
+    }
+
+    private void runOnSession(String text, TtsSessionKey key, Consumer<ByteBuffer> onAudio) {
+        TtsSession session = sessionPool.acquire(key);
+        if (session.isReused()) {
+            PendingSynthesis first = new PendingSynthesis(onAudio);
+            String error = runOnSession(session, text, first);
+            if (error == null) {
+                return;
+            }
+            if (first.audioSeen) {
+                throw new IllegalStateException("TTS synthesis failed: " + error);
+            }
+            // The pooled socket died before producing audio; retry once on a new connection
+            LOG.debug("Pooled TTS session failed before audio ({}), retrying on a new session: {}", key, error);
+            session = sessionPool.acquireNew(key);
+        }
+        String error = runOnSession(session, text, new PendingSynthesis(onAudio));
+        if (error != null) {
+            throw new IllegalStateException("TTS synthesis failed: " + error);
+        }
+    }
+
+    /**
+     * Run one synthesis and hand the session back to the pool.
+     *
+     * @return null on success, otherwise the error reported by the session
+     */
+    private String runOnSession(TtsSession session, String text, PendingSynthesis pending) {
+        if (!session.start(text, pending)) {
+            sessionPool.invalidate(session);
+            return "TTS session is not writable";
+        }
+        try {
+            boolean completed = pending.latch.await(SYNTHESIS_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (!completed) {
+                sessionPool.invalidate(session);
+                throw new IllegalStateException("TTS synthesis timeout");
+            }
+            if (pending.errorMessage.length() > 0) {
+                sessionPool.invalidate(session);
+                return pending.errorMessage.toString();
+            }
+            sessionPool.release(session);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sessionPool.invalidate(session);
+            throw new IllegalStateException("TTS synthesis interrupted", e);
         }
     }
 
+    private static Consumer<ByteBuffer> timeFirstAudio(Consumer<ByteBuffer> onAudio, String source, long startNanos) {
+        boolean[] seen = new boolean[1];
+        return audio -> {
+            if (!seen[0]) {
+                seen[0] = true;
+                SpeechMetrics.ttsFirstAudio("realtime", source, System.nanoTime() - startNanos);
+            }
+            onAudio.accept(audio);
+        };
+    }
+
+    /**
+     * Copy a delta into the recording buffer without moving the buffer's position.
+     */
+    private static void append(ByteArrayOutputStream out, ByteBuffer audio) {
+        if (audio.hasArray()) {
+            out.write(audio.array(), audio.arrayOffset() + audio.position(), audio.remaining());
+        } else {
+            byte[] copy = new byte[audio.remaining()];
+            audio.duplicate().get(copy);
+            out.write(copy, 0, copy.length);
+        }
+    }
+
+    private TtsSessionKey sessionKey(String voice) {
+        return new TtsSessionKey(ttsConfig.getModel(), voice != null ? voice : ttsConfig.getVoice(),
+                ttsConfig.getSampleRate(), ttsConfig.getFormat());
+    }
+
     private void validate(String text, Path outputFile) {
         if (text == null || text.isBlank()) {
             throw new IllegalArgumentException("Text to synthesize must be provided");
@@ -202,161 +490,145 @@ public class TtsRealtimeClient {
     }
 
     /**
-     * WebSocket listener for file-based synthesis.
+     * Emits the audio of concurrently synthesized segments in order. The head segment is passed
+     * through as it arrives; later segments are buffered until every segment before them is done.
      */
-    private class TtsWebSocketListener extends WebSocketListener {
-        private final String text;
-        private final String voice;
-        private final Path outputFile;
-        private final CountDownLatch latch;
-        private final AtomicBoolean success;
-        private final StringBuilder errorMessage;
-
-        public TtsWebSocketListener(String text, String voice, Path outputFile,
-                                   CountDownLatch latch, AtomicBoolean success, StringBuilder errorMessage) {
-            this.text = text;
-            this.voice = voice;
-            this.outputFile = outputFile;
-            this.latch = latch;
-            this.success = success;
-            this.errorMessage = errorMessage;
-        }
+    private static class OrderedAssembler {
+        private final Consumer<ByteBuffer> onAudio;
+        private final ByteArrayOutputStream[] buffered;
+        private final boolean[] done;
+        private int head;
 
-        @Override
-        public void onOpen(WebSocket webSocket, Response response) {
-            LOG.debug("TTS WebSocket connection opened");
-            sendSessionConfig(webSocket, voice);
+        OrderedAssembler(int segments, Consumer<ByteBuffer> onAudio) {
+            this.onAudio = onAudio;
+            this.buffered = new ByteArrayOutputStream[segments];
+            this.done = new boolean[segments];
         }
 
-        @Override
-        public void onMessage(WebSocket webSocket, String text) {
-            try {
-                ObjectNode event = (ObjectNode) OBJECT_MAPPER.readTree(text);
-                String type = event.get("type").asText();
-                
-                if ("session.created".equals(type)) {
-                    LOG.debug("TTS session created: {}", event.get("session").get("id").asText());
-                    // Send text after session is created
-                    sendText(webSocket, this.text);
-                    // Commit
-                    ObjectNode commit = OBJECT_MAPPER.createObjectNode();
-                    commit.put("type", "input.text.done");
-                    webSocket.send(OBJECT_MAPPER.writeValueAsString(commit));
-                } else if ("response.audio.delta".equals(type)) {
-                    // Decode base64 audio data
-                    String delta = event.get("delta").asText();
-                    if (delta != null && !delta.isEmpty()) {
-                        byte[] audioData = Base64.getDecoder().decode(delta);
-                        Files.write(outputFile, audioData, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
-                    }
-                } else if ("response.done".equals(type)) {
-                    LOG.debug("TTS response done: {}", event.get("id").asText());
-                } else if ("session.finished".equals(type)) {
-                    LOG.debug("TTS session finished");
-                    success.set(true);
-                    webSocket.close(1000, "Done");
-                    latch.countDown();
-                } else if ("error".equals(type)) {
-                    String error = event.has("message") ? event.get("message").asText() : "Unknown error";
-                    errorMessage.append(error);
-                    LOG.error("TTS error: {}", error);
-                    webSocket.close(1000, "Error");
-                    latch.countDown();
-                }
-            } catch (Exception e) {
-                LOG.error("Error processing TTS WebSocket message", e);
-                errorMessage.append("Error processing message: ").append(e.getMessage());
-                webSocket.close(1000, "Error");
-                latch.countDown();
+        synchronized void onAudio(int index, ByteBuffer audio) {
+            if (index == head) {
+                onAudio.accept(audio);
+                return;
             }
+            if (buffered[index] == null) {
+                buffered[index] = new ByteArrayOutputStream();
+            }
+            append(buffered[index], audio);
         }
 
-        @Override
-        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
-            LOG.error("TTS WebSocket failure", t);
-            errorMessage.append("WebSocket failure: ").append(t.getMessage());
-            latch.countDown();
-        }
-
-        @Override
-        public void onClosed(WebSocket webSocket, int code, String reason) {
-            LOG.debug("TTS WebSocket closed: code={}, reason={}", code, reason);
+        synchronized void onDone(int index) {
+            done[index] = true;
+            while (head < done.length && done[head]) {
+                head++;
+                if (head < done.length && buffered[head] != null) {
+                    onAudio.accept(ByteBuffer.wrap(buffered[head].toByteArray()));
+                    buffered[head] = null;
+                }
+            }
         }
     }
 
     /**
-     * WebSocket listener for streaming synthesis.
+     * Listener for a socket returned by {@link #startStreaming}: forwards audio as byte arrays and
+     * runs one of the callbacks once, when the session finishes, fails or the socket closes.
      */
-    private class TtsStreamWebSocketListener extends WebSocketListener {
-        private final String voice;
+    private static class StreamingSocketListener extends WebSocketListener {
         private final Consumer<byte[]> onAudioData;
         private final Runnable onError;
         private final Runnable onComplete;
+        private final TtsEventDecoder decoder = new TtsEventDecoder();
+        private final AtomicBoolean ended = new AtomicBoolean();
 
-        public TtsStreamWebSocketListener(String voice, Consumer<byte[]> onAudioData,
-                                         Runnable onError, Runnable onComplete) {
-            this.voice = voice;
+        StreamingSocketListener(Consumer<byte[]> onAudioData, Runnable onError, Runnable onComplete) {
             this.onAudioData = onAudioData;
             this.onError = onError;
             this.onComplete = onComplete;
         }
 
-        @Override
-        public void onOpen(WebSocket webSocket, Response response) {
-            LOG.debug("TTS streaming WebSocket connection opened");
-        }
-
         @Override
         public void onMessage(WebSocket webSocket, String text) {
             try {
-                ObjectNode event = (ObjectNode) OBJECT_MAPPER.readTree(text);
-                String type = event.get("type").asText();
-                
-                if ("session.created".equals(type)) {
-                    LOG.debug("TTS streaming session created: {}", event.get("session").get("id").asText());
-                } else if ("response.audio.delta".equals(type)) {
-                    // Decode base64 audio data and call callback
-                    String delta = event.get("delta").asText();
-                    if (delta != null && !delta.isEmpty()) {
-                        byte[] audioData = Base64.getDecoder().decode(delta);
-                        onAudioData.accept(audioData);
-                    }
-                } else if ("response.done".equals(type)) {
-                    LOG.debug("TTS response done: {}", event.get("id").asText());
-                } else if ("session.finished".equals(type)) {
-                    LOG.debug("TTS session finished");
-                    if (onComplete != null) {
-                        onComplete.run();
-                    }
-                } else if ("error".equals(type)) {
-                    String error = event.has("message") ? event.get("message").asText() : "Unknown error";
-                    LOG.error("TTS error: {}", error);
-                    if (onError != null) {
-                        onError.run();
-                    }
+                switch (decoder.decode(text)) {
+                    case AUDIO_DELTA:
+                        ByteBuffer audio = decoder.audio();
+                        if (audio.hasRemaining()) {
+                            byte[] bytes = new byte[audio.remaining()];
+                            audio.get(bytes);
+                            onAudioData.accept(bytes);
+                        }
+                        break;
+                    case SESSION_FINISHED:
+                        LOG.debug("TTS streaming session finished");
+                        end(onComplete);
+                        break;
+                    case ERROR:
+                        LOG.error("TTS error: {}", decoder.message() != null ? decoder.message() : "Unknown error");
+                        end(onError);
+                        break;
+                    default:
+                        break;
                 }
             } catch (Exception e) {
                 LOG.error("Error processing TTS streaming WebSocket message", e);
-                if (onError != null) {
-                    onError.run();
-                }
+                end(onError);
             }
         }
 
         @Override
         public void onFailure(WebSocket webSocket, Throwable t, Response response) {
             LOG.error("TTS streaming WebSocket failure", t);
-            if (onError != null) {
-                onError.run();
-            }
+            end(onError);
         }
 
         @Override
         public void onClosed(WebSocket webSocket, int code, String reason) {
             LOG.debug("TTS streaming WebSocket closed: code={}, reason={}", code, reason);
-            if (onComplete != null) {
-                onComplete.run();
+            end(onComplete);
+        }
+
+        private void end(Runnable callback) {
+            if (ended.compareAndSet(false, true) && callback != null) {
+                callback.run();
+            }
+        }
+    }
+
+    /**
+     * Listener for a blocking synthesis: forwards audio and releases the waiting caller.
+     */
+    private static class PendingSynthesis implements TtsSession.Listener {
+        private final Consumer<ByteBuffer> onAudio;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final StringBuffer errorMessage = new StringBuffer();
+        private volatile boolean audioSeen;
+
+        PendingSynthesis(Consumer<ByteBuffer> onAudio) {
+            this.onAudio = onAudio;
+        }
+
+        @Override
+        public void onAudio(ByteBuffer audio) {
+            if (errorMessage.length() > 0) {
+                return;
             }
+            audioSeen = true;
+            try {
+                onAudio.accept(audio);
+            } catch (Exception e) {
+                errorMessage.append(e.getMessage());
+                latch.countDown();
+            }
+        }
+
+        @Override
+        public void onDone() {
+            latch.countDown();
+        }
+
+        @Override
+        public void onError(String message) {
+            errorMessage.append(message);
+            latch.countDown();
         }
     }
 }
@@ -0,0 +1,336 @@
+package com.example.tangyu.speech;
+
+import com.example.tangyu.metrics.TtsDeltaEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One Qwen TTS realtime WebSocket session. The session is configured once (model, voice, sample
+ * rate, format) and then runs syntheses one at a time. {@code session.finished} ends the session,
+ * not a synthesis: a listener still waiting for a response when it arrives is failed.
+ * Instances are created and recycled by {@link TtsSessionPool}. Each audio delta can be recorded as a JFR
+ * {@link TtsDeltaEvent} with its decode time.
+ */
+final class TtsSession extends WebSocketListener {
+    private static final Logger LOG = LoggerFactory.getLogger(TtsSession.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * Callbacks for the synthesis currently running on the session.
+     */
+    interface Listener {
+        /**
+         * @param audio decoded delta; only valid for the duration of the call
+         */
+        void onAudio(ByteBuffer audio);
+
+        void onDone();
+
+        void onError(String message);
+    }
+
+    private final TtsSessionKey key;
+    private final CompletableFuture<TtsSession> ready = new CompletableFuture<>();
+    private final AtomicReference<Listener> listener = new AtomicReference<>();
+    private final TtsEventDecoder decoder = new TtsEventDecoder();
+    private volatile WebSocket webSocket;
+    private volatile boolean closed;
+    private volatile long lastUsedNanos = System.nanoTime();
+    private volatile String sessionId;
+    private volatile boolean reused;
+    private int useCount;
+    // Guarded by this: responses committed but not yet done, and whether more text may follow
+    private int pendingResponses;
+    private boolean inputOpen;
+
+    TtsSession(TtsSessionKey key) {
+        this.key = key;
+    }
+
+    TtsSessionKey getKey() {
+        return key;
+    }
+
+    /**
+     * Completes once the server has sent {@code session.created}.
+     */
+    CompletableFuture<TtsSession> ready() {
+        return ready;
+    }
+
+    void attach(WebSocket webSocket) {
+        this.webSocket = webSocket;
+    }
+
+    boolean isUsable() {
+        return !closed && ready.isDone() && !ready.isCompletedExceptionally() && listener.get() == null;
+    }
+
+    long idleNanos() {
+        return System.nanoTime() - lastUsedNanos;
+    }
+
+    int getUseCount() {
+        return useCount;
+    }
+
+    /**
+     * Mark the session as taken from the idle pool rather than freshly opened.
+     */
+    void markReused() {
+        reused = true;
+    }
+
+    /**
+     * Whether the session sat idle in the pool before its current use, so it may have been
+     * closed by the server in the meantime.
+     */
+    boolean isReused() {
+        return reused;
+    }
+
+    /**
+     * Bind a listener for a single commit; the listener is done after the first
+     * {@code response.done}.
+     */
+    void bind(Listener l) {
+        bind(l, false);
+    }
+
+    /**
+     * Bind a listener for incremental input: the session may commit several times and the
+     * listener is only done once {@link #closeInput()} was called and every commit got its
+     * {@code response.done}.
+     */
+    void bindStream(Listener l) {
+        bind(l, true);
+    }
+
+    private void bind(Listener l, boolean streaming) {
+        if (!listener.compareAndSet(null, l)) {
+            throw new IllegalStateException("TTS session is busy");
+        }
+        synchronized (this) {
+            pendingResponses = 0;
+            inputOpen = streaming;
+        }
+        useCount++;
+    }
+
+    /**
+     * Send text and commit it on this session.
+     *
+     * @return false if the socket is no longer writable; the listener is then unbound again
+     */
+    boolean start(String text, Listener l) {
+        bind(l);
+        if (!sendText(text) || !sendCommit()) {
+            listener.compareAndSet(l, null);
+            closed = true;
+            return false;
+        }
+        return true;
+    }
+
+    boolean sendText(String text) {
+        ObjectNode request = OBJECT_MAPPER.createObjectNode();
+        request.put("type", "input.text");
+        request.put("text", text);
+        return send(request);
+    }
+
+    boolean sendCommit() {
+        synchronized (this) {
+            pendingResponses++;
+        }
+        ObjectNode commit = OBJECT_MAPPER.createObjectNode();
+        commit.put("type", "input.text.done");
+        return send(commit);
+    }
+
+    /**
+     * Mark the end of incremental input. If no response is outstanding the listener is done
+     * right away.
+     */
+    void closeInput() {
+        boolean idle;
+        synchronized (this) {
+            inputOpen = false;
+            idle = pendingResponses <= 0;
+        }
+        if (idle) {
+            finish();
+        }
+    }
+
+    void close() {
+        closed = true;
+        WebSocket ws = webSocket;
+        if (ws != null) {
+            try {
+                ws.close(1000, "Done");
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+    private boolean send(ObjectNode message) {
+        WebSocket ws = webSocket;
+        if (closed || ws == null) {
+            return false;
+        }
+        try {
+            return ws.send(OBJECT_MAPPER.writeValueAsString(message));
+        } catch (Exception e) {
+            LOG.error("Failed to send TTS message", e);
+            return false;
+        }
+    }
+
+    private void sendSessionConfig(WebSocket ws) {
+        try {
+            ws.send(sessionUpdate(key));
+        } catch (Exception e) {
+            LOG.error("Failed to send session config", e);
+        }
+    }
+
+    /**
+     * The {@code session.update} event configuring a session for the key.
+     */
+    static String sessionUpdate(TtsSessionKey key) throws JsonProcessingException {
+        ObjectNode config = OBJECT_MAPPER.createObjectNode();
+        config.put("type", "session.update");
+        ObjectNode session = OBJECT_MAPPER.createObjectNode();
+        ObjectNode model = OBJECT_MAPPER.createObjectNode();
+        model.put("model", key.getModel());
+        model.put("voice", key.getVoice());
+        model.put("sample_rate", key.getSampleRate());
+        model.put("format", key.getFormat());
+        session.set("model", model);
+        config.set("session", session);
+        return OBJECT_MAPPER.writeValueAsString(config);
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket, Response response) {
+        LOG.debug("TTS WebSocket connection opened ({})", key);
+        this.webSocket = webSocket;
+        sendSessionConfig(webSocket);
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+        try {
+            TtsDeltaEvent delta = new TtsDeltaEvent();
+            long decodeStart = delta.isEnabled() ? System.nanoTime() : 0;
+            switch (decoder.decode(text)) {
+                case SESSION_CREATED:
+                    sessionId = decoder.sessionId();
+                    LOG.debug("TTS session created: {}", sessionId);
+                    ready.complete(this);
+                    break;
+                case AUDIO_DELTA:
+                    ByteBuffer audio = decoder.audio();
+                    Listener l = listener.get();
+                    if (decodeStart != 0) {
+                        delta.decodeTime = System.nanoTime() - decodeStart;
+                        delta.bytes = audio.remaining();
+                        delta.begin();
+                    }
+                    if (l != null && audio.hasRemaining()) {
+                        l.onAudio(audio);
+                    }
+                    if (decodeStart != 0) {
+                        delta.end();
+                        if (delta.shouldCommit()) {
+                            delta.sessionId = sessionId;
+                            delta.commit();
+                        }
+                    }
+                    break;
+                case RESPONSE_DONE:
+                    LOG.debug("TTS response done: {}", sessionId);
+                    if (responseDone()) {
+                        finish();
+                    }
+                    break;
+                case SESSION_FINISHED:
+                    LOG.debug("TTS session finished: {}", sessionId);
+                    closed = true;
+                    // No-op when idle; otherwise the bound listener's response can no longer arrive
+                    fail("TTS session finished before the response was done");
+                    webSocket.close(1000, "Done");
+                    break;
+                case ERROR:
+                    String error = decoder.message() != null ? decoder.message() : "Unknown error";
+                    LOG.error("TTS error: {}", error);
+                    fail(error);
+                    webSocket.close(1000, "Error");
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            LOG.error("Error processing TTS WebSocket message", e);
+            fail("Error processing message: " + e.getMessage());
+            webSocket.close(1000, "Error");
+        }
+    }
+
+    @Override
+    public void onClosing(WebSocket webSocket, int code, String reason) {
+        closed = true;
+        webSocket.close(1000, null);
+    }
+
+    @Override
+    public void onClosed(WebSocket webSocket, int code, String reason) {
+        LOG.debug("TTS WebSocket closed: code={}, reason={}", code, reason);
+        fail("TTS session closed: code=" + code + ", reason=" + reason);
+    }
+
+    @Override
+    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+        LOG.error("TTS WebSocket failure", t);
+        ready.completeExceptionally(t);
+        fail("WebSocket failure: " + t.getMessage());
+    }
+
+    /**
+     * @return true if this was the last outstanding response of the bound listener
+     */
+    private synchronized boolean responseDone() {
+        pendingResponses--;
+        return !inputOpen && pendingResponses <= 0;
+    }
+
+    private void finish() {
+        lastUsedNanos = System.nanoTime();
+        Listener l = listener.getAndSet(null);
+        if (l != null) {
+            l.onDone();
+        }
+    }
+
+    private void fail(String message) {
+        closed = true;
+        if (!ready.isDone()) {
+            ready.completeExceptionally(new IllegalStateException(message));
+        }
+        Listener l = listener.getAndSet(null);
+        if (l != null) {
+            l.onError(message);
+        }
+    }
+}
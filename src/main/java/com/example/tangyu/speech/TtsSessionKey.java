@@ -0,0 +1,62 @@
+package com.example.tangyu.speech;
+
+import java.util.Objects;
+
+/**
+ * Identifies a TTS realtime session configuration. Sessions configured with the same key
+ * are interchangeable and can be reused across syntheses.
+ */
+public final class TtsSessionKey {
+    private final String model;
+    private final String voice;
+    private final int sampleRate;
+    private final String format;
+
+    public TtsSessionKey(String model, String voice, int sampleRate, String format) {
+        this.model = Objects.requireNonNull(model, "model");
+        this.voice = Objects.requireNonNull(voice, "voice");
+        this.sampleRate = sampleRate;
+        this.format = Objects.requireNonNull(format, "format");
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getVoice() {
+        return voice;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof TtsSessionKey)) {
+            return false;
+        }
+        TtsSessionKey other = (TtsSessionKey) o;
+        return sampleRate == other.sampleRate
+                && model.equals(other.model)
+                && voice.equals(other.voice)
+                && format.equals(other.format);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(model, voice, sampleRate, format);
+    }
+
+    @Override
+    public String toString() {
+        return model + "/" + voice + "/" + sampleRate + "/" + format;
+    }
+}
@@ -0,0 +1,302 @@
+package com.example.tangyu.speech;
+
+import com.example.tangyu.config.TtsConfig;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of warm Qwen TTS realtime sessions keyed by {@link TtsSessionKey}.
+ *
+ * Sessions opened ahead of time by {@link #prewarm} let a synthesis skip the TLS handshake and the
+ * {@code session.created} round trip. A session that already ran a synthesis is only returned to the
+ * pool when {@link TtsConfig#isPoolReuseSessions()} confirms the service accepts further commits on
+ * it; otherwise it is closed after use. Idle sessions are kept alive with WebSocket pings and closed
+ * after the configured idle timeout.
+ */
+public class TtsSessionPool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(TtsSessionPool.class);
+    private static final long CONNECT_TIMEOUT_SECONDS = 10;
+
+    private final TtsConfig ttsConfig;
+    private final OkHttpClient httpClient;
+    private final Map<TtsSessionKey, Deque<TtsSession>> idle = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+    private final long idleTimeoutNanos;
+    private volatile boolean closed;
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final LongAdder created = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public TtsSessionPool(TtsConfig ttsConfig) {
+        this.ttsConfig = Objects.requireNonNull(ttsConfig);
+        this.httpClient = new OkHttpClient.Builder()
+                .readTimeout(30, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .pingInterval(ttsConfig.getPingIntervalSeconds(), TimeUnit.SECONDS)
+                .build();
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(ttsConfig.getPoolIdleTimeoutSeconds());
+        this.evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "tts-pool-evictor");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, ttsConfig.getPoolIdleTimeoutSeconds() / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Take a ready session for the key, opening a new connection if no warm one is available.
+     * The caller must hand the session back via {@link #release} or {@link #invalidate}.
+     */
+    TtsSession acquire(TtsSessionKey key) {
+        if (closed) {
+            throw new IllegalStateException("TTS session pool is closed");
+        }
+        Deque<TtsSession> deque = idle.get(key);
+        if (deque != null) {
+            TtsSession session;
+            while ((session = deque.pollFirst()) != null) {
+                if (session.isUsable()) {
+                    session.markReused();
+                    reused.increment();
+                    inUse.incrementAndGet();
+                    LOG.debug("Reusing TTS session ({}), uses={}", key, session.getUseCount());
+                    return session;
+                }
+                discarded.increment();
+                session.close();
+            }
+        }
+        TtsSession session = open(key);
+        inUse.incrementAndGet();
+        return session;
+    }
+
+    /**
+     * Open a new session for the key, bypassing idle ones; used to retry after a pooled session
+     * turned out to be dead. Handed back like {@link #acquire}.
+     */
+    TtsSession acquireNew(TtsSessionKey key) {
+        if (closed) {
+            throw new IllegalStateException("TTS session pool is closed");
+        }
+        TtsSession session = open(key);
+        inUse.incrementAndGet();
+        return session;
+    }
+
+    /**
+     * Return a session after a successful synthesis so the next caller can reuse it.
+     */
+    void release(TtsSession session) {
+        inUse.decrementAndGet();
+        if (closed || !session.isUsable()) {
+            discarded.increment();
+            session.close();
+            return;
+        }
+        if (session.getUseCount() > 0 && !ttsConfig.isPoolReuseSessions()) {
+            session.close();
+            return;
+        }
+        Deque<TtsSession> deque = idle.computeIfAbsent(session.getKey(), k -> new ConcurrentLinkedDeque<>());
+        if (deque.size() >= ttsConfig.getPoolMaxIdle()) {
+            evicted.increment();
+            session.close();
+            return;
+        }
+        // LIFO: the most recently used session stays hot, surplus ones age out at the tail
+        deque.offerFirst(session);
+    }
+
+    /**
+     * Drop a session after a failure or timeout; it is never handed out again.
+     */
+    void invalidate(TtsSession session) {
+        inUse.decrementAndGet();
+        discarded.increment();
+        session.close();
+    }
+
+    /**
+     * Open a socket to the TTS endpoint outside the pool; the caller owns and closes it.
+     */
+    WebSocket connect(WebSocketListener listener) {
+        return httpClient.newWebSocket(new Request.Builder().url(websocketUrl()).build(), listener);
+    }
+
+    /**
+     * Open sessions ahead of time so the first syntheses for the key skip the handshake.
+     */
+    public void prewarm(TtsSessionKey key, int count) {
+        for (int i = 0; i < count; i++) {
+            try {
+                TtsSession session = open(key);
+                inUse.incrementAndGet();
+                release(session);
+            } catch (Exception e) {
+                LOG.warn("Failed to prewarm TTS session ({}): {}", key, e.getMessage());
+                return;
+            }
+        }
+    }
+
+    public Stats getStats() {
+        int idleCount = 0;
+        for (Deque<TtsSession> deque : idle.values()) {
+            idleCount += deque.size();
+        }
+        return new Stats(created.sum(), reused.sum(), evicted.sum(), discarded.sum(), failed.sum(),
+                inUse.get(), idleCount);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        for (Deque<TtsSession> deque : idle.values()) {
+            TtsSession session;
+            while ((session = deque.pollFirst()) != null) {
+                session.close();
+            }
+        }
+    }
+
+    private TtsSession open(TtsSessionKey key) {
+        TtsSession session = new TtsSession(key);
+        Request request = new Request.Builder()
+                .url(websocketUrl())
+                .build();
+        session.attach(httpClient.newWebSocket(request, session));
+        try {
+            session.ready().get(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            created.increment();
+            LOG.debug("Opened TTS session ({})", key);
+            return session;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed.increment();
+            session.close();
+            throw new IllegalStateException("Interrupted while opening TTS session", e);
+        } catch (ExecutionException e) {
+            failed.increment();
+            session.close();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IllegalStateException("Failed to open TTS session: " + cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            failed.increment();
+            session.close();
+            throw new IllegalStateException("Timed out opening TTS session", e);
+        }
+    }
+
+    private String websocketUrl() {
+        String wsUrl = ttsConfig.getBaseWebsocketUrl().replace("https://", "wss://").replace("http://", "ws://");
+        if (!wsUrl.contains("/api-ws/v1/inference")) {
+            wsUrl = wsUrl + "/api-ws/v1/inference";
+        }
+        return wsUrl;
+    }
+
+    private void evictIdle() {
+        for (Deque<TtsSession> deque : idle.values()) {
+            for (TtsSession session : deque) {
+                boolean expired = session.idleNanos() > idleTimeoutNanos;
+                if ((expired || !session.isUsable()) && deque.remove(session)) {
+                    if (expired) {
+                        evicted.increment();
+                    } else {
+                        discarded.increment();
+                    }
+                    session.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Point-in-time pool counters.
+     */
+    public static final class Stats {
+        private final long created;
+        private final long reused;
+        private final long evicted;
+        private final long discarded;
+        private final long failed;
+        private final int inUse;
+        private final int idle;
+
+        Stats(long created, long reused, long evicted, long discarded, long failed, int inUse, int idle) {
+            this.created = created;
+            this.reused = reused;
+            this.evicted = evicted;
+            this.discarded = discarded;
+            this.failed = failed;
+            this.inUse = inUse;
+            this.idle = idle;
+        }
+
+        public long getCreated() {
+            return created;
+        }
+
+        public long getReused() {
+            return reused;
+        }
+
+        public long getEvicted() {
+            return evicted;
+        }
+
+        public long getDiscarded() {
+            return discarded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public int getInUse() {
+            return inUse;
+        }
+
+        public int getIdle() {
+            return idle;
+        }
+
+        /**
+         * Share of acquisitions served by a warm session.
+         */
+        public double getReuseRatio() {
+            long total = created + reused;
+            return total == 0 ? 0.0 : (double) reused / total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("created=%d, reused=%d, evicted=%d, discarded=%d, failed=%d, inUse=%d, idle=%d, reuseRatio=%.2f",
+                    created, reused, evicted, discarded, failed, inUse, idle, getReuseRatio());
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.tangyu.speech;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Incremental text input for one synthesis, e.g. an LLM reply that is fed in as it is generated.
+ * Obtained from {@link TtsRealtimeClient#openStream}.
+ *
+ * With sentence chunking enabled, appended text is buffered and every complete sentence (or long
+ * enough clause) is committed as soon as it is seen, so audio for the first sentence starts while
+ * the rest of the reply is still being produced. Without chunking, text is forwarded as-is and
+ * committed once by {@link #commit()}.
+ *
+ * The stream holds a pooled session until it completes; callers must end it with either
+ * {@link #commit()} or {@link #cancel()}. There is no built-in timeout, use
+ * {@code completion().orTimeout(...)} where one is needed.
+ *
+ * If a session taken from the pool dies before the first audio arrives, the text sent so far is
+ * replayed once on a new session.
+ */
+public final class TtsStream implements TtsEngine.Synthesis {
+    private static final Logger LOG = LoggerFactory.getLogger(TtsStream.class);
+
+    private final TtsSessionPool sessionPool;
+    private final TtsOutputSink sink;
+    private final boolean chunkSentences;
+    private final StringBuilder pending = new StringBuilder();
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+    private final AtomicBoolean ended = new AtomicBoolean();
+    // Text sent to the session, null marking a commit; kept until the first audio for a replay
+    private final List<String> sent = new ArrayList<>();
+    private volatile TtsSession session;
+    private volatile boolean audioSeen;
+    private boolean uncommitted;
+    private boolean committed;
+    private boolean retried;
+
+    TtsStream(TtsSessionPool sessionPool, TtsSession session, TtsOutputSink sink, boolean chunkSentences) {
+        this.sessionPool = sessionPool;
+        this.session = session;
+        this.sink = sink;
+        this.chunkSentences = chunkSentences;
+    }
+
+    void start() {
+        bind(session);
+    }
+
+    private void bind(TtsSession owner) {
+        owner.bindStream(new TtsSession.Listener() {
+            @Override
+            public void onAudio(ByteBuffer audio) {
+                if (ended.get() || owner != session) {
+                    return;
+                }
+                audioSeen = true;
+                try {
+                    sink.write(audio);
+                } catch (Exception e) {
+                    fail(new IllegalStateException("TTS output failed: " + e.getMessage(), e));
+                }
+            }
+
+            @Override
+            public void onDone() {
+                if (owner == session) {
+                    end(true, null);
+                }
+            }
+
+            @Override
+            public void onError(String message) {
+                sessionFailed(owner, message);
+            }
+        });
+    }
+
+    /**
+     * Replay on a new session if a pooled one failed before producing audio, otherwise fail.
+     */
+    private synchronized void sessionFailed(TtsSession failed, String message) {
+        if (failed != session || ended.get()) {
+            return;
+        }
+        if (retried || audioSeen || !failed.isReused()) {
+            fail(new IllegalStateException("TTS synthesis failed: " + message));
+            return;
+        }
+        retried = true;
+        LOG.debug("Pooled TTS session failed before audio ({}), retrying on a new session: {}",
+                failed.getKey(), message);
+        session = null;
+        sessionPool.invalidate(failed);
+        TtsSession replacement;
+        try {
+            replacement = sessionPool.acquireNew(failed.getKey());
+        } catch (RuntimeException e) {
+            fail(e);
+            return;
+        }
+        if (ended.get()) {
+            // Cancelled while the new session was opening
+            sessionPool.invalidate(replacement);
+            return;
+        }
+        session = replacement;
+        bind(replacement);
+        for (String text : sent) {
+            if (!(text == null ? replacement.sendCommit() : replacement.sendText(text))) {
+                fail(new IllegalStateException("TTS session is not writable"));
+                return;
+            }
+        }
+        if (committed) {
+            replacement.closeInput();
+        }
+    }
+
+    /**
+     * Add text to the utterance. Ignored once the stream has failed or was cancelled.
+     *
+     * @throws IllegalStateException if the stream was already committed
+     */
+    public synchronized TtsStream append(CharSequence text) {
+        if (committed) {
+            throw new IllegalStateException("TTS stream already committed");
+        }
+        if (text == null || text.length() == 0 || completion.isDone()) {
+            return this;
+        }
+        if (!chunkSentences) {
+            send(text.toString(), false);
+            return this;
+        }
+        pending.append(text);
+        int boundary = TtsTextSegmenter.lastBoundary(pending);
+        if (boundary > 0) {
+            String chunk = pending.substring(0, boundary);
+            pending.delete(0, boundary);
+            send(chunk, true);
+        }
+        return this;
+    }
+
+    /**
+     * End the input: pending text is flushed and committed. Calling it again is a no-op.
+     *
+     * @return the completion future
+     */
+    public synchronized CompletableFuture<Void> commit() {
+        if (committed || completion.isDone()) {
+            return completion;
+        }
+        committed = true;
+        if (pending.length() > 0) {
+            send(pending.toString(), true);
+            pending.setLength(0);
+        } else if (uncommitted) {
+            sendCommit();
+        }
+        if (!completion.isDone()) {
+            session.closeInput();
+        }
+        return completion;
+    }
+
+    /**
+     * Abort the synthesis. Audio still in flight is dropped and the completion future fails
+     * with a {@link CancellationException}.
+     */
+    @Override
+    public void cancel() {
+        fail(new CancellationException("TTS stream cancelled"));
+    }
+
+    /**
+     * Completes when all committed text has been synthesized and the sink is closed.
+     */
+    @Override
+    public CompletableFuture<Void> completion() {
+        return completion;
+    }
+
+    public boolean isDone() {
+        return completion.isDone();
+    }
+
+    private void send(String text, boolean commitNow) {
+        if (text.isBlank()) {
+            return;
+        }
+        // Recorded before sending so a replay after a write failure includes it
+        record(text);
+        uncommitted = true;
+        if (!session.sendText(text)) {
+            sessionFailed(session, "TTS session is not writable");
+        }
+        if (commitNow && !completion.isDone()) {
+            sendCommit();
+        }
+    }
+
+    private void sendCommit() {
+        record(null);
+        uncommitted = false;
+        if (!session.sendCommit()) {
+            sessionFailed(session, "TTS session is not writable");
+        }
+    }
+
+    private void record(String text) {
+        if (!audioSeen) {
+            sent.add(text);
+        } else if (!sent.isEmpty()) {
+            sent.clear();
+        }
+    }
+
+    private void fail(Throwable error) {
+        end(false, error);
+    }
+
+    /**
+     * Return the session, close the sink and complete the future; only the first call counts.
+     */
+    private void end(boolean reusable, Throwable error) {
+        if (!ended.compareAndSet(false, true)) {
+            return;
+        }
+        // Null while a failed session is being replaced; the old one was already invalidated
+        TtsSession owner = session;
+        if (owner != null && reusable) {
+            sessionPool.release(owner);
+        } else if (owner != null) {
+            sessionPool.invalidate(owner);
+        }
+        try {
+            sink.close();
+        } catch (Exception e) {
+            LOG.warn("Failed to close TTS output sink: {}", e.getMessage());
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error == null) {
+            completion.complete(null);
+        } else {
+            if (!(error instanceof CancellationException)) {
+                LOG.error("TTS stream failed: {}", error.getMessage());
+            }
+            completion.completeExceptionally(error);
+        }
+    }
+}
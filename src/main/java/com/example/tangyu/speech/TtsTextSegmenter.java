@@ -0,0 +1,122 @@
+package com.example.tangyu.speech;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds sentence and clause boundaries in text headed for TTS, so that text can be committed to
+ * the service in natural units instead of all at once.
+ */
+final class TtsTextSegmenter {
+    /**
+     * Clause boundaries are only used once this much text is pending, so short phrases such as
+     * "好的，" are not committed (and prosodically cut off) on their own.
+     */
+    static final int MIN_CLAUSE_LENGTH = 12;
+
+    private TtsTextSegmenter() {
+    }
+
+    /**
+     * Index just past the last complete sentence in {@code text}, falling back to the last clause
+     * boundary when at least {@link #MIN_CLAUSE_LENGTH} characters precede it.
+     *
+     * @return the split position, or 0 if the text has no usable boundary yet
+     */
+    static int lastBoundary(CharSequence text) {
+        int clause = 0;
+        for (int i = text.length() - 1; i >= 0; i--) {
+            char c = text.charAt(i);
+            if (isSentenceEnd(text, i)) {
+                return i + 1;
+            }
+            if (clause == 0 && isClauseEnd(c) && i + 1 >= MIN_CLAUSE_LENGTH) {
+                clause = i + 1;
+            }
+        }
+        return clause;
+    }
+
+    /**
+     * Split text into segments of roughly {@code targetLength} characters. Segments end at
+     * sentence boundaries where possible; consecutive short sentences are merged, and a sentence
+     * longer than twice the target is cut at clause boundaries, or hard-cut as a last resort.
+     */
+    static List<String> split(String text, int targetLength) {
+        int target = Math.max(1, targetLength);
+        List<String> segments = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            boolean last = i == text.length() - 1;
+            if (!last && !isSentenceEnd(text, i)) {
+                continue;
+            }
+            String sentence = text.substring(start, i + 1);
+            start = i + 1;
+            if (current.length() > 0 && current.length() + sentence.length() > target) {
+                add(segments, current);
+            }
+            if (sentence.length() > target * 2) {
+                splitLong(sentence, target, segments);
+            } else {
+                current.append(sentence);
+            }
+        }
+        add(segments, current);
+        return segments;
+    }
+
+    private static void splitLong(String sentence, int target, List<String> segments) {
+        int start = 0;
+        while (sentence.length() - start > target * 2) {
+            int cut = -1;
+            for (int i = Math.min(sentence.length() - 1, start + target * 2 - 1); i >= start + target / 2; i--) {
+                if (isClauseEnd(sentence.charAt(i))) {
+                    cut = i + 1;
+                    break;
+                }
+            }
+            if (cut < 0) {
+                cut = start + target;
+            }
+            segments.add(sentence.substring(start, cut));
+            start = cut;
+        }
+        if (start < sentence.length()) {
+            segments.add(sentence.substring(start));
+        }
+    }
+
+    private static void add(List<String> segments, StringBuilder current) {
+        if (!current.toString().isBlank()) {
+            segments.add(current.toString());
+        }
+        current.setLength(0);
+    }
+
+    private static boolean isSentenceEnd(CharSequence text, int i) {
+        char c = text.charAt(i);
+        switch (c) {
+            case '。':
+            case '！':
+            case '？':
+            case '；':
+            case '…':
+            case '!':
+            case '?':
+            case ';':
+            case '\n':
+                return true;
+            case '.':
+                // Only a period followed by whitespace ends a sentence; "3.5" and "e.g" do not
+                return i + 1 < text.length() && Character.isWhitespace(text.charAt(i + 1));
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isClauseEnd(char c) {
+        return c == '，' || c == '、' || c == '：' || c == ',' || c == ':';
+    }
+}